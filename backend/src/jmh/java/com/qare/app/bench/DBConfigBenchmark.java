@@ -0,0 +1,112 @@
+package com.qare.app.bench;
+
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.StockOutlook;
+import com.qare.app.model.SupplyPage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Raw DAO cost per call against in-memory H2, without Spring transactions. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DBConfigBenchmark {
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    private final AtomicLong created = new AtomicLong();
+    private H2Fixture h2;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        h2 = new H2Fixture(tableSize, 32);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        h2.close();
+    }
+
+    private String randomName() {
+        return H2Fixture.name(ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> read() {
+        return h2.db.read(randomName());
+    }
+
+    /** A picking list fetched one name at a time; compare with {@link #readByNames100()}. */
+    @Benchmark
+    public void readOneByOne100(Blackhole bh) {
+        for (String name : randomNames(100)) bh.consume(h2.db.read(name));
+    }
+
+    @Benchmark
+    public List<MedicalSupply> readByNames100() {
+        return h2.db.readByNames(randomNames(100));
+    }
+
+    private List<String> randomNames(int n) {
+        List<String> names = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) names.add(randomName());
+        return names;
+    }
+
+    @Benchmark
+    public SupplyPage readPage() {
+        return h2.db.readPage(randomName(), 100);
+    }
+
+    @Benchmark
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public void forEach(Blackhole bh) {
+        h2.db.forEach(bh::consume);
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> update() {
+        return h2.db.update(new MedicalSupply(randomName(), ThreadLocalRandom.current().nextInt(1000), "box"), SupplyStore.ANY_VERSION);
+    }
+
+    /** Net-zero pair, each with its ledger row; the consumption half also bumps a day total. */
+    @Benchmark
+    public Optional<MedicalSupply> addToAmount() {
+        String name = randomName();
+        h2.db.addToAmount(name, 1);
+        return h2.db.addToAmount(name, -1);
+    }
+
+    /** Reads per-day totals, so the cost does not grow with the ledger that addToAmount fills. */
+    @Benchmark
+    public Optional<StockOutlook> readOutlook() {
+        return h2.db.readOutlook(randomName());
+    }
+
+    /** Insert of a fresh name; the table grows during the trial. */
+    @Benchmark
+    public void create() {
+        h2.db.create(new MedicalSupply("new-" + created.incrementAndGet(), 1, "box"));
+    }
+
+    /** Delete measured together with the insert that makes it possible. */
+    @Benchmark
+    public boolean createThenDelete() {
+        String name = "tmp-" + created.incrementAndGet();
+        h2.db.create(new MedicalSupply(name, 1, "box"));
+        return h2.db.delete(name, SupplyStore.ANY_VERSION);
+    }
+}
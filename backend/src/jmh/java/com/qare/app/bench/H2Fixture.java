@@ -0,0 +1,50 @@
+package com.qare.app.bench;
+
+import com.qare.app.config.DBConfig;
+import com.qare.app.model.MedicalSupply;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/** A private in-memory H2 database holding {@code tableSize} supplies named {@link #name(int)}. */
+final class H2Fixture implements AutoCloseable {
+
+    final HikariDataSource dataSource;
+    final JdbcTemplate jdbc;
+    final DBConfig db;
+
+    H2Fixture(int tableSize, int poolSize) {
+        var config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setMaximumPoolSize(poolSize);
+        dataSource = new HikariDataSource(config);
+        jdbc = new JdbcTemplate(dataSource);
+        db = new DBConfig(jdbc, 1000, 4);
+        db.initDB();
+
+        List<MedicalSupply> chunk = new ArrayList<>(1000);
+        for (int i = 0; i < tableSize; i++) {
+            chunk.add(new MedicalSupply(name(i), 100, "box"));
+            if (chunk.size() == 1000) {
+                db.upsertAll(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) db.upsertAll(chunk);
+    }
+
+    static String name(int i) {
+        return "supply-%08d".formatted(i);
+    }
+
+    @Override
+    public void close() {
+        db.shutdown();
+        dataSource.close();
+    }
+}
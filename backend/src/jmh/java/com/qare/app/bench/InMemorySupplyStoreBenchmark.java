@@ -0,0 +1,59 @@
+package com.qare.app.bench;
+
+import com.qare.app.config.InMemorySupplyStore;
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.SupplyPage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** The same DAO calls as {@link DBConfigBenchmark}, against the in-memory engine. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemorySupplyStoreBenchmark {
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    private InMemorySupplyStore db;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        db = new InMemorySupplyStore();
+        for (int i = 0; i < tableSize; i++) db.create(new MedicalSupply(H2Fixture.name(i), 100, "box"));
+    }
+
+    private String randomName() {
+        return H2Fixture.name(ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> read() {
+        return db.read(randomName());
+    }
+
+    @Benchmark
+    public SupplyPage readPage() {
+        return db.readPage(randomName(), 100);
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> update() {
+        return db.update(new MedicalSupply(randomName(), ThreadLocalRandom.current().nextInt(1000), "box"), SupplyStore.ANY_VERSION);
+    }
+
+    /** Net-zero pair so amounts stay put over the trial. */
+    @Benchmark
+    public Optional<MedicalSupply> addToAmount() {
+        String name = randomName();
+        db.addToAmount(name, 1);
+        return db.addToAmount(name, -1);
+    }
+}
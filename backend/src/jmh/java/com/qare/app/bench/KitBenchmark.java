@@ -0,0 +1,87 @@
+package com.qare.app.bench;
+
+import com.qare.app.model.MedicalSupply;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Procedure kits: {@code kitSize} supplies drawn from the first {@code hot} names, so kits
+ * applied at once overlap. Each operation consumes one of every item in one transaction and
+ * restocks it in another. {@code addToAmounts} locks the kit in name order and writes it as
+ * one batch; {@code addToAmountEach} issues one conditional UPDATE per item, also in name
+ * order, since any other order could deadlock against a concurrent kit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KitBenchmark {
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    @Param({"20"})
+    int kitSize;
+
+    @Param({"200"})
+    int hot;
+
+    private H2Fixture h2;
+    private TransactionTemplate tx;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        h2 = new H2Fixture(tableSize, 32);
+        h2.jdbc.update("UPDATE supplies SET amount = 1000000");
+        tx = new TransactionTemplate(new DataSourceTransactionManager(h2.dataSource));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        h2.close();
+    }
+
+    private SortedMap<String, Integer> kit(int delta) {
+        SortedMap<String, Integer> kit = new TreeMap<>();
+        var random = ThreadLocalRandom.current();
+        while (kit.size() < kitSize) kit.put(H2Fixture.name(random.nextInt(Math.min(hot, tableSize))), delta);
+        return kit;
+    }
+
+    private static SortedMap<String, Integer> negated(SortedMap<String, Integer> kit) {
+        SortedMap<String, Integer> back = new TreeMap<>();
+        kit.forEach((name, delta) -> back.put(name, -delta));
+        return back;
+    }
+
+    @Benchmark
+    public Optional<List<MedicalSupply>> addToAmounts() {
+        var kit = kit(-1);
+        tx.execute(status -> h2.db.addToAmounts(kit));
+        return tx.execute(status -> h2.db.addToAmounts(negated(kit)));
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> addToAmountEach() {
+        var kit = kit(-1);
+        tx.execute(status -> {
+            kit.forEach(h2.db::addToAmount);
+            return null;
+        });
+        return tx.execute(status -> {
+            Optional<MedicalSupply> last = Optional.empty();
+            for (var d : negated(kit).entrySet()) last = h2.db.addToAmount(d.getKey(), d.getValue());
+            return last;
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package com.qare.app.bench;
+
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.LocationStock;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.SupplyTotal;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-location writes next to the single-row {@code update} they should cost the same as,
+ * and the parallel totals over every location. Each supply starts stocked in every location.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocationStockBenchmark {
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    @Param({"4"})
+    int locations;
+
+    private H2Fixture h2;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        h2 = new H2Fixture(tableSize, 32);
+        h2.jdbc.update("""
+            INSERT INTO supply_stock (location, name, amount, version)
+            SELECT 'wh-' || x, name, 100, 0 FROM supplies, SYSTEM_RANGE(1, ?)
+        """, locations);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        h2.close();
+    }
+
+    private String randomName() {
+        return H2Fixture.name(ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    private String randomLocation() {
+        return "wh-" + (1 + ThreadLocalRandom.current().nextInt(locations));
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> update() {
+        return h2.db.update(new MedicalSupply(randomName(), ThreadLocalRandom.current().nextInt(1000), "box"), SupplyStore.ANY_VERSION);
+    }
+
+    @Benchmark
+    public Optional<LocationStock> setLocationStock() {
+        return h2.db.setLocationStock(randomName(), randomLocation(), ThreadLocalRandom.current().nextInt(1000));
+    }
+
+    /** Net-zero pair on one location's row. */
+    @Benchmark
+    public Optional<LocationStock> addToLocationStock() {
+        String name = randomName(), location = randomLocation();
+        h2.db.addToLocationStock(name, location, 1);
+        return h2.db.addToLocationStock(name, location, -1);
+    }
+
+    @Benchmark
+    public List<LocationStock> readLocationStock() {
+        return h2.db.readLocationStock(randomName());
+    }
+
+    @Benchmark
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public List<SupplyTotal> readTotals() {
+        return h2.db.readTotals();
+    }
+}
@@ -0,0 +1,93 @@
+package com.qare.app.bench;
+
+import com.qare.app.model.LotPage;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.service.LotExpirySweeper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expiry sweeps over {@code lotsPerSupply} lots per supply, expiries spread over three
+ * years, so about one lot in 36 is due within the 30-day window. {@code expiringCount} and
+ * {@code expiringCountScan} run the same count with and without the expiry index;
+ * {@code sweep} is a whole {@link LotExpirySweeper} pass. {@code addToAmount} is the
+ * net-zero pair of {@code DBConfigBenchmark}, here drawing its decrement from lots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LotBenchmark {
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    @Param({"10"})
+    int lotsPerSupply;
+
+    private H2Fixture h2;
+    private LotExpirySweeper sweeper;
+    private LocalDate today;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        h2 = new H2Fixture(tableSize, 32);
+        h2.jdbc.update("""
+            INSERT INTO supply_lots (name, lot, expires_on, amount)
+            SELECT name, 'L' || x, DATEADD(DAY, CAST(RAND() * 1095 AS INT) - 30, CURRENT_DATE), 1000000
+            FROM supplies, SYSTEM_RANGE(1, ?)
+        """, lotsPerSupply);
+        h2.jdbc.execute("ANALYZE");
+        sweeper = new LotExpirySweeper(h2.db, new SimpleMeterRegistry(), Duration.ZERO, 30);
+        today = LocalDate.now();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        h2.close();
+    }
+
+    /** A window of 25 to 35 days: H2 reuses the result of a repeated query on an unchanged table. */
+    private LocalDate through() {
+        return today.plusDays(25 + ThreadLocalRandom.current().nextInt(11));
+    }
+
+    @Benchmark
+    public LotPage expiringPage() {
+        return h2.db.readExpiringLots(null, through(), null, 100);
+    }
+
+    @Benchmark
+    public Integer expiringCount() {
+        return h2.jdbc.queryForObject("SELECT COUNT(*) FROM supply_lots WHERE expires_on <= ?", Integer.class, through());
+    }
+
+    @Benchmark
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public Integer expiringCountScan() {
+        return h2.jdbc.queryForObject("SELECT COUNT(*) FROM supply_lots USE INDEX () WHERE expires_on <= ?", Integer.class, through());
+    }
+
+    @Benchmark
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public LotExpirySweeper.Sweep sweep() {
+        return sweeper.sweep();
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> addToAmount() {
+        String name = H2Fixture.name(ThreadLocalRandom.current().nextInt(tableSize));
+        h2.db.addToAmount(name, 1);
+        return h2.db.addToAmount(name, -1);
+    }
+}
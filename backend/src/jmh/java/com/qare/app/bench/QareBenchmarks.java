@@ -0,0 +1,35 @@
+package com.qare.app.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Runs every benchmark once per thread count in {@code -Dqare.bench.threads} (default
+ * {@code 1,4,16}) with the GC profiler, so each result carries throughput and
+ * {@code gc.alloc.rate.norm}. Any other arguments are passed to JMH unchanged.
+ * {@link ThreadModelBenchmark} boots the whole application and drives its own client
+ * concurrency, and {@link StartupBenchmark} launches the packaged jar, so both only run
+ * when named explicitly.
+ */
+public final class QareBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        // Maven hands ${jmh.args} over as a single argument
+        var cli = new CommandLineOptions(Arrays.stream(args)
+                .flatMap(a -> Arrays.stream(a.strip().split("\\s+")))
+                .filter(a -> !a.isEmpty())
+                .toArray(String[]::new));
+        for (String t : System.getProperty("qare.bench.threads", "1,4,16").split(",")) {
+            var options = new OptionsBuilder()
+                    .parent(cli)
+                    .threads(Integer.parseInt(t.strip()))
+                    .addProfiler(GCProfiler.class);
+            if (cli.getIncludes().isEmpty()) options.include("com\\.qare\\.app\\.bench\\.(?!ThreadModel|Startup).*");
+            new Runner(options.build()).run();
+        }
+    }
+}
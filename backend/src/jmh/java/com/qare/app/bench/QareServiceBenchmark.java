@@ -0,0 +1,152 @@
+package com.qare.app.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.InventoryStats;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.SupplyPage;
+import com.qare.app.service.CatalogSnapshot;
+import com.qare.app.service.DataVersion;
+import com.qare.app.service.QareService;
+import com.qare.app.service.SupplyCache;
+import com.qare.app.service.SupplyChangeFeed;
+import com.qare.app.service.SupplyReadModel;
+import com.qare.app.service.SupplySearchIndex;
+import com.qare.app.service.SupplyStatistics;
+import com.qare.app.service.WriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QareService through a real {@code @Transactional} proxy, next to the bare DAO call it
+ * wraps, so the difference is the normalization and transaction overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QareServiceBenchmark {
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    private H2Fixture h2;
+    private QareService service;
+    private QareService buffered;
+    private WriteBehindBuffer bufferedWrites;
+    private SupplyChangeFeed feed;
+    private SupplyStatistics stats;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        h2 = new H2Fixture(tableSize, 32);
+        var registry = new SimpleMeterRegistry();
+        feed = new SupplyChangeFeed(1000, Duration.ZERO, registry);
+        var transactions = new DataSourceTransactionManager(h2.dataSource);
+        var writes = new WriteBehindBuffer(h2.db, transactions, new ObjectMapper(), false, Path.of("target", "bench-wal"), 1, Duration.ZERO);
+        var cache = new SupplyCache(10_000, Duration.ZERO, registry);
+        var snapshot = new CatalogSnapshot(h2.db, cache, writes, transactions, false, Path.of("target", "bench-snapshot.bin"), Duration.ZERO);
+        stats = new SupplyStatistics(h2.db, writes, transactions, registry, Duration.ZERO);
+        var target = new QareService(h2.db, cache, new SupplySearchIndex(), new DataVersion(), feed, writes, snapshot, stats,
+                new SupplyReadModel(h2.db, writes, registry, false, Duration.ZERO), transactions);
+        stats.reconcile(); // counts the fixture rows, as warm-up would
+
+        var proxy = new ProxyFactory(target);
+        proxy.setProxyTargetClass(true);
+        proxy.addAdvice(new TransactionInterceptor(transactions, new AnnotationTransactionAttributeSource()));
+        service = (QareService) proxy.getProxy();
+
+        bufferedWrites = new WriteBehindBuffer(h2.db, transactions, new ObjectMapper(), true,
+                Path.of("target", "bench-wal"), 500, Duration.ofMillis(200));
+        var bufferedCache = new SupplyCache(10_000, Duration.ZERO, registry);
+        var bufferedTarget = new QareService(h2.db, bufferedCache, new SupplySearchIndex(), new DataVersion(), feed,
+                bufferedWrites, new CatalogSnapshot(h2.db, bufferedCache, bufferedWrites, transactions, false,
+                        Path.of("target", "bench-snapshot.bin"), Duration.ZERO),
+                new SupplyStatistics(h2.db, bufferedWrites, transactions, registry, Duration.ZERO),
+                new SupplyReadModel(h2.db, bufferedWrites, registry, false, Duration.ZERO), transactions);
+        var bufferedProxy = new ProxyFactory(bufferedTarget);
+        bufferedProxy.setProxyTargetClass(true);
+        bufferedProxy.addAdvice(new TransactionInterceptor(transactions, new AnnotationTransactionAttributeSource()));
+        buffered = (QareService) bufferedProxy.getProxy();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bufferedWrites.shutdown();
+        h2.close();
+    }
+
+    private String randomName() {
+        return H2Fixture.name(ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> daoUpdate() {
+        return h2.db.update(new MedicalSupply(randomName(), 5, "box"), SupplyStore.ANY_VERSION);
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> serviceUpdate() {
+        return service.update(new MedicalSupply("  " + randomName() + " ", 5, " box "), SupplyStore.ANY_VERSION);
+    }
+
+    /**
+     * A PUT with write-behind on: acknowledged after the log append's fsync. Run with
+     * {@code -t 8} to see concurrent writers share fsyncs.
+     */
+    @Benchmark
+    public Optional<MedicalSupply> bufferedUpdate() {
+        return buffered.update(new MedicalSupply(randomName(), 5, "box"), SupplyStore.ANY_VERSION);
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> daoRead() {
+        return h2.db.read(randomName());
+    }
+
+    /** Mostly cache hits once warm; compare with {@link #daoRead()}. */
+    @Benchmark
+    public Optional<MedicalSupply> serviceRead() {
+        return service.read(" " + randomName());
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> serviceAdjustAmount() {
+        return service.adjustAmount(randomName(), 1);
+    }
+
+    /** The page every terminal asks for at once; run with {@code -t 16} to compare with {@link #serviceFirstPage()}. */
+    @Benchmark
+    public SupplyPage daoFirstPage() {
+        return h2.db.readPage(null, 100);
+    }
+
+    /** Read model off, so identical concurrent requests share one query instead of running their own. */
+    @Benchmark
+    public SupplyPage serviceFirstPage() {
+        return service.readPage(null, 100);
+    }
+
+    /** Counters only; compare with {@link #reconcileStats()}, the full read that checks them. */
+    @Benchmark
+    public InventoryStats serviceStats() {
+        return service.stats();
+    }
+
+    @Benchmark
+    public int reconcileStats() {
+        return stats.reconcile();
+    }
+}
@@ -0,0 +1,82 @@
+package com.qare.app.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.SupplyPage;
+import com.qare.app.service.SupplyReadModel;
+import com.qare.app.service.WriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads answered by {@link SupplyReadModel} next to the queries they replace. Every read
+ * that falls back fails the run, so the model numbers never include a query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadModelBenchmark {
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    private H2Fixture h2;
+    private SupplyReadModel model;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        h2 = new H2Fixture(tableSize, 32);
+        var writes = new WriteBehindBuffer(h2.db, new DataSourceTransactionManager(h2.dataSource), new ObjectMapper(),
+                false, Path.of("target", "bench-wal"), 1, Duration.ZERO);
+        model = new SupplyReadModel(h2.db, writes, new SimpleMeterRegistry(), true, Duration.ofMinutes(1));
+        List<MedicalSupply> rows = new ArrayList<>(tableSize);
+        h2.db.forEach(rows::add);
+        model.load(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        model.shutdown();
+        h2.close();
+    }
+
+    private static <T> T fellBack() {
+        throw new IllegalStateException("read model fell back to the database");
+    }
+
+    private String randomName() {
+        return H2Fixture.name(ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> dbRead() {
+        return h2.db.read(randomName());
+    }
+
+    @Benchmark
+    public Optional<MedicalSupply> modelRead() {
+        return model.read(randomName(), ReadModelBenchmark::fellBack);
+    }
+
+    @Benchmark
+    public SupplyPage dbReadPage() {
+        return h2.db.readPage(randomName(), 100);
+    }
+
+    @Benchmark
+    public SupplyPage modelReadPage() {
+        return model.readPage(randomName(), 100, ReadModelBenchmark::fellBack);
+    }
+}
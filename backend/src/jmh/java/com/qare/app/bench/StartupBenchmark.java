@@ -0,0 +1,111 @@
+package com.qare.app.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from launching a fresh JVM to the first {@code 200} from {@code GET /api/supplies},
+ * for the plain jar and for the AOT + CDS build with the {@code startup} profile. Needs
+ * {@code ./mvnw -Pstartup package} first. Each invocation is one cold start against its own
+ * empty file database; run it by name with one JMH thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final Path TARGET = Path.of("target");
+    private static final Path STARTUP = TARGET.resolve("startup");
+    private static final String JAR = "qare-backend-0.0.1-SNAPSHOT.jar";
+    private static final Duration GIVE_UP = Duration.ofMinutes(2);
+
+    /** {@code jar}: java -jar on the packaged jar; {@code startup}: extracted AOT build with CDS and lazy init. */
+    @Param({"jar", "startup"})
+    String mode;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Path workDir;
+    private Process app;
+
+    @Setup(Level.Invocation)
+    public void workDir() throws IOException {
+        workDir = Files.createTempDirectory("qare-startup");
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws IOException, InterruptedException {
+        if (app != null) {
+            app.destroy();
+            if (!app.waitFor(30, TimeUnit.SECONDS)) app.destroyForcibly().waitFor();
+        }
+        try (var files = Files.walk(workDir)) {
+            for (Path p : files.sorted((a, b) -> b.compareTo(a)).toList()) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    public int firstSuccessfulList() throws Exception {
+        int port = freePort();
+        app = new ProcessBuilder(command(port))
+                .directory((mode.equals("startup") ? STARTUP : TARGET).toFile()) // CDS checks the class path as given
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve("app.log").toFile())
+                .start();
+
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/supplies"))
+                .timeout(Duration.ofSeconds(5)).build();
+        long deadline = System.nanoTime() + GIVE_UP.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!app.isAlive()) throw new IllegalStateException("app exited, see " + workDir.resolve("app.log"));
+            try {
+                var response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) return response.statusCode();
+            } catch (IOException notListeningYet) {
+                // keep polling
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("no 200 within " + GIVE_UP);
+    }
+
+    private List<String> command(int port) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(ProcessHandle.current().info().command().orElse("java"));
+        if (mode.equals("startup")) {
+            if (!Files.exists(STARTUP.resolve("qare-backend.jsa"))) throw new IllegalStateException("run ./mvnw -Pstartup package first");
+            cmd.add("-XX:SharedArchiveFile=qare-backend.jsa");
+            cmd.add("-Dspring.aot.enabled=true");
+            cmd.add("-jar");
+            cmd.add(JAR);
+            cmd.add("--spring.profiles.active=startup");
+        } else {
+            cmd.add("-jar");
+            cmd.add(JAR);
+        }
+        cmd.add("--server.port=" + port);
+        cmd.add("--spring.datasource.url=jdbc:h2:file:" + workDir.toAbsolutePath().resolve("qaredb"));
+        cmd.add("--qare.snapshot.file=" + workDir.toAbsolutePath().resolve("qare-snapshot.bin"));
+        return cmd;
+    }
+
+    private static int freePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.qare.app.bench;
+
+import com.qare.app.QareBackendApplication;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.service.QareService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load comparison of platform-thread and virtual-thread request handling. Each
+ * trial boots the application on a random port against its own in-memory H2 database and
+ * each invocation fires {@code concurrency} HTTP requests at once (80% single reads, 20%
+ * stock adjustments), returning when all have answered. Requests per second is the score
+ * times {@code concurrency}. Client concurrency is set here, so run it with one JMH thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ThreadModelBenchmark {
+
+    private static final int TABLE_SIZE = 10_000;
+
+    @Param({"false", "true"})
+    boolean virtual;
+
+    @Param({"64", "1024"})
+    int concurrency;
+
+    private ConfigurableApplicationContext app;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private String base;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        app = new SpringApplicationBuilder(QareBackendApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:load-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "spring.threads.virtual.enabled=" + virtual,
+                        "spring.datasource.hikari.maximum-pool-size=20",
+                        "qare.db.bulkhead.max-concurrent=20",
+                        "qare.db.bulkhead.timeout=30s",
+                        "logging.level.root=WARN")
+                .run();
+        base = "http://localhost:" + ((WebServerApplicationContext) app).getWebServer().getPort() + "/api/supplies/";
+
+        List<MedicalSupply> seed = new ArrayList<>(TABLE_SIZE);
+        for (int i = 0; i < TABLE_SIZE; i++) seed.add(new MedicalSupply(H2Fixture.name(i), 1_000_000, "box"));
+        app.getBean(QareService.class).upsertAll(seed);
+
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder().executor(clientExecutor).version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        clientExecutor.close();
+        app.close();
+    }
+
+    @Benchmark
+    public int mixedLoad() {
+        var random = ThreadLocalRandom.current();
+        var responses = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            var uri = URI.create(base + H2Fixture.name(random.nextInt(TABLE_SIZE)));
+            HttpRequest request = random.nextInt(5) == 0
+                    ? HttpRequest.newBuilder(URI.create(uri + "/amount"))
+                        .header("Content-Type", "application/json")
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"delta\":-1}"))
+                        .build()
+                    : HttpRequest.newBuilder(uri).build();
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        }
+        CompletableFuture.allOf(responses).join();
+        return responses.length;
+    }
+}
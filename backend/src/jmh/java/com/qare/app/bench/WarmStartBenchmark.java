@@ -0,0 +1,95 @@
+package com.qare.app.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qare.app.service.CatalogSnapshot;
+import com.qare.app.service.SupplyCache;
+import com.qare.app.service.SupplySearchIndex;
+import com.qare.app.service.WriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup warm-up: the search index built from a full table scan versus from a mapped
+ * snapshot after a catalog version check, plus the read side of each on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WarmStartBenchmark {
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    private H2Fixture h2;
+    private Path dir;
+    private CatalogSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        h2 = new H2Fixture(tableSize, 4);
+        dir = Files.createTempDirectory("qare-snapshot-bench");
+        var transactions = new DataSourceTransactionManager(h2.dataSource);
+        var writes = new WriteBehindBuffer(h2.db, transactions, new ObjectMapper(), false, dir.resolve("wal"), 1, Duration.ZERO);
+        var cache = new SupplyCache(10_000, Duration.ZERO, new SimpleMeterRegistry());
+        snapshot = new CatalogSnapshot(h2.db, cache, writes, transactions, true, dir.resolve("catalog.bin"), Duration.ofHours(1));
+        snapshot.write();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        snapshot.shutdown();
+        h2.close();
+        try (var files = Files.list(dir)) {
+            for (Path f : files.toList()) Files.delete(f);
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public long scanTable() {
+        long[] n = {0};
+        h2.db.forEach(s -> n[0]++);
+        return n[0];
+    }
+
+    @Benchmark
+    public long scanSnapshot() {
+        long[] n = {0};
+        snapshot.restore((s, hot) -> n[0]++);
+        return n[0];
+    }
+
+    @Benchmark
+    public long catalogVersion() {
+        return h2.db.catalogVersion();
+    }
+
+    @Benchmark
+    public SupplySearchIndex fromTable() {
+        var names = new ArrayList<String>(tableSize);
+        h2.db.forEach(s -> names.add(s.name()));
+        var index = new SupplySearchIndex();
+        index.addAll(names);
+        return index;
+    }
+
+    @Benchmark
+    public SupplySearchIndex fromSnapshot() {
+        var names = new ArrayList<String>(tableSize);
+        if (!snapshot.restore((s, hot) -> names.add(s.name()))) throw new IllegalStateException("snapshot rejected");
+        var index = new SupplySearchIndex();
+        index.addAll(names);
+        return index;
+    }
+}
@@ -0,0 +1,117 @@
+package com.qare.app.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps how many callers may hold a JDBC connection at once when request handling runs on
+ * virtual threads. Without it thousands of virtual threads pile onto the pool; with it
+ * they queue fairly on a semaphore and give up after {@code qare.db.bulkhead.timeout}
+ * with a {@link SQLTransientConnectionException}, which the API reports as 503.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class ConnectionBulkhead implements BeanPostProcessor {
+
+    private final int maxConcurrent;
+    private final Duration timeout;
+
+    public ConnectionBulkhead(@Value("${qare.db.bulkhead.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrent,
+                              @Value("${qare.db.bulkhead.timeout:2s}") Duration timeout) {
+        if (maxConcurrent < 1) throw new IllegalArgumentException("qare.db.bulkhead.max-concurrent must be positive");
+        this.maxConcurrent = maxConcurrent;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource ds && !(bean instanceof Bulkheaded)
+                ? new Bulkheaded(ds, maxConcurrent, timeout)
+                : bean;
+    }
+
+    static final class Bulkheaded extends DelegatingDataSource {
+        private final Semaphore permits;
+        private final long timeoutNanos;
+
+        Bulkheaded(DataSource target, int maxConcurrent, Duration timeout) {
+            super(target);
+            this.permits = new Semaphore(maxConcurrent, true);
+            this.timeoutNanos = timeout.toNanos();
+        }
+
+        int available() {
+            return permits.availablePermits();
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            try {
+                return guard(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            try {
+                return guard(super.getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private void acquire() throws SQLException {
+            try {
+                if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                    throw new SQLTransientConnectionException("Connection bulkhead full, gave up after " + Duration.ofNanos(timeoutNanos));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrupted waiting for connection bulkhead", e);
+            }
+        }
+
+        /** Returns the permit exactly once, when the caller closes the connection. */
+        private Connection guard(Connection target) {
+            var released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("close")) {
+                            if (!released.compareAndSet(false, true)) return null;
+                            try {
+                                target.close();
+                            } finally {
+                                permits.release();
+                            }
+                            return null;
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
@@ -14,7 +14,8 @@ public class CorsConfig {
             public void addCorsMappings(CorsRegistry registry) {
                 registry.addMapping("/api/**")
                         .allowedOrigins("http://localhost:5173")
-                        .allowedMethods("GET","POST","PUT","PATCH","DELETE","OPTIONS");
+                        .allowedMethods("GET","POST","PUT","PATCH","DELETE","OPTIONS")
+                        .exposedHeaders("ETag");
             }
         };
     }
@@ -1,23 +1,197 @@
 package com.qare.app.config;
 
+import com.qare.app.model.LocationStock;
+import com.qare.app.model.Lot;
+import com.qare.app.model.LotPage;
 import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.StockMovement;
+import com.qare.app.model.StockOutlook;
+import com.qare.app.model.SupplyPage;
+import com.qare.app.model.SupplyTotal;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * The H2 {@link SupplyStore}, on JdbcTemplate. Each write and its ledger rows share one
+ * transaction: the caller's, or a new one when called outside of any.
+ */
 @Component // singleton
-public class DBConfig {
+@ConditionalOnProperty(name = "qare.storage.engine", havingValue = "h2", matchIfMissing = true)
+@Transactional
+public class DBConfig implements SupplyStore {
+
+    /** Names bound per lookup query in {@link #readByNames}. */
+    static final int READ_CHUNK_SIZE = 500;
+
+    /** Longest name, unit or location the columns hold; longer values are rejected, never cut. */
+    static final int MAX_TEXT_LENGTH = 255;
+
+    /** Longest lot code. */
+    static final int MAX_LOT_LENGTH = 64;
+
+    /** SQLSTATE H2 raises for a foreign key whose parent row is gone. */
+    private static final String PARENT_MISSING = "23506";
+
+    /** Rows of {@code catalog_changes}; a committing write bumps the one its thread maps to. */
+    static final int CATALOG_STRIPES = 16;
+
+    // replaces an existing row as a change (version + 1), inserts a new one at the version
+    // CREATED_VERSION gives. Text is cast without a length: H2 cuts a value down to a cast's
+    // length without an error.
+    private static final String UPSERT = """
+        MERGE INTO supplies t
+        USING (VALUES (CAST(? AS VARCHAR), CAST(? AS INT), CAST(? AS VARCHAR))) AS s(name, amount, unit)
+        ON t.name = s.name
+        WHEN MATCHED THEN UPDATE SET amount = s.amount, "unitName" = s.unit, version = t.version + 1
+        WHEN NOT MATCHED THEN INSERT (name, amount, "unitName", version)
+            VALUES (s.name, s.amount, s.unit, COALESCE((SELECT version + 1 FROM supply_tombstones WHERE name = s.name), 0))
+    """;
+
+    // a new row starts at 0, or after the last version of the supply of that name that was
+    // deleted, so an ETag of the deleted row never matches the new one
+    private static final String CREATED_VERSION = """
+        SELECT COALESCE(MAX(version) + 1, 0) FROM supply_tombstones WHERE name = ?
+    """;
+
+    // adds to a supply's consumption for the day; rows of one name are serialized by its supplies row lock
+    private static final String CONSUME = """
+        MERGE INTO supply_consumption t
+        USING (VALUES (CAST(? AS VARCHAR), CAST(? AS DATE), CAST(? AS BIGINT))) AS s(name, on_day, consumed)
+        ON t.name = s.name AND t.on_day = s.on_day
+        WHEN MATCHED THEN UPDATE SET consumed = t.consumed + s.consumed
+        WHEN NOT MATCHED THEN INSERT (name, on_day, consumed) VALUES (s.name, s.on_day, s.consumed)
+    """;
+
+    // drops the days that fell out of the outlook window: a seek on the primary key that finds
+    // at most the one day that left since the supply was last consumed
+    private static final String PRUNE_CONSUMPTION = """
+        DELETE FROM supply_consumption WHERE name = ? AND on_day <= ?
+    """;
+
+    // one location's row: a single-row write, like update, and never the supplies row. The
+    // source is empty for an unknown supply; FINAL TABLE is not used because H2 keeps the
+    // row of a delta-table statement that fails on the foreign key inside a transaction.
+    private static final String SET_STOCK = """
+        MERGE INTO supply_stock t
+        USING (SELECT CAST(? AS VARCHAR) AS location, name, CAST(? AS INT) AS amount FROM supplies WHERE name = ?) AS s
+        ON t.location = s.location AND t.name = s.name
+        WHEN MATCHED THEN UPDATE SET amount = s.amount, version = t.version + 1
+        WHEN NOT MATCHED THEN INSERT (location, name, amount, version) VALUES (s.location, s.name, s.amount, 0)
+    """;
+
+    private static final String ADD_STOCK = """
+        MERGE INTO supply_stock t
+        USING (SELECT CAST(? AS VARCHAR) AS location, name, CAST(? AS INT) AS delta FROM supplies WHERE name = ?) AS s
+        ON t.location = s.location AND t.name = s.name
+        WHEN MATCHED AND CAST(t.amount AS BIGINT) + s.delta BETWEEN 0 AND 2147483647
+            THEN UPDATE SET amount = t.amount + s.delta, version = t.version + 1
+        WHEN NOT MATCHED AND s.delta >= 0 THEN INSERT (location, name, amount, version) VALUES (s.location, s.name, s.delta, 0)
+    """;
+
+    /** Amount and version a row had before a write, read from the write's {@code OLD TABLE}. */
+    private record Prior(int amount, long version) {}
+
+    private static final RowMapper<Prior> PRIOR_MAPPER = (rs, rowNum) -> new Prior(rs.getInt("amount"), rs.getLong("version"));
+
+    private static final RowMapper<StockMovement> MOVEMENT_MAPPER = (rs, rowNum) -> new StockMovement(
+            rs.getString("name"),
+            rs.getInt("delta"),
+            rs.getObject("moved_at", OffsetDateTime.class).toInstant());
+
+    private static final RowMapper<LocationStock> STOCK_MAPPER = (rs, rowNum) -> new LocationStock(
+            rs.getString("name"),
+            rs.getString("location"),
+            rs.getInt("amount"),
+            rs.getLong("version"));
+
+    private static final RowMapper<Lot> LOT_MAPPER = (rs, rowNum) -> new Lot(
+            rs.getString("name"),
+            rs.getString("lot"),
+            rs.getObject("expires_on", LocalDate.class),
+            rs.getInt("amount"));
+
+    private static final RowMapper<MedicalSupply> ROW_MAPPER = new RowMapper<>() {
+        @Override public MedicalSupply mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new MedicalSupply(
+                    rs.getString("name"),
+                    rs.getInt("amount"),
+                    rs.getString("unitName"), // quoted in DDL, readable without quotes
+                    rs.getLong("version"));
+        }
+    };
 
     private final JdbcTemplate jdbc;
+    private final int exportFetchSize;
+    private final Clock clock;
+    private final ExecutorService aggregator; // one location per task, each on its own connection
+
+    // bumps the catalog version as the last statement before commit, so the stripe's row
+    // lock is held only while the commit completes and never while waiting on a supply row
+    private final TransactionSynchronization catalogChanged = new TransactionSynchronization() {
+        @Override public void beforeCommit(boolean readOnly) {
+            bumpCatalogVersion();
+        }
+    };
 
-    public DBConfig(JdbcTemplate jdbc) {
+    @Autowired
+    public DBConfig(JdbcTemplate jdbc,
+                    @Value("${qare.export.fetch-size:1000}") int exportFetchSize,
+                    @Value("${qare.locations.parallelism:4}") int totalsParallelism) {
+        this(jdbc, exportFetchSize, totalsParallelism, Clock.systemDefaultZone());
+    }
+
+    /** With the clock that stamps movements and decides which day consumption counts for. */
+    DBConfig(JdbcTemplate jdbc, int exportFetchSize, int totalsParallelism, Clock clock) {
+        if (totalsParallelism < 1) throw new IllegalArgumentException("qare.locations.parallelism must be positive");
         this.jdbc = jdbc;
+        this.exportFetchSize = exportFetchSize;
+        this.clock = clock;
+        this.aggregator = Executors.newFixedThreadPool(totalsParallelism,
+                Thread.ofPlatform().name("stock-totals-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        aggregator.shutdownNow();
     }
 
     @PostConstruct
@@ -26,70 +200,692 @@ public class DBConfig {
             CREATE TABLE IF NOT EXISTS supplies (
                 name VARCHAR(255) PRIMARY KEY,
                 amount INT NOT NULL CHECK (amount >= 0),
-                "unitName" VARCHAR(255) NOT NULL
+                "unitName" VARCHAR(255) NOT NULL,
+                version BIGINT NOT NULL DEFAULT 0
+            )
+        """);
+        // databases created before rows were versioned
+        jdbc.execute("""
+            ALTER TABLE supplies ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0
+        """);
+        // low-stock scans are range scans on amount; name makes the keyset order unique
+        jdbc.execute("""
+            CREATE INDEX IF NOT EXISTS idx_supplies_amount ON supplies (amount, name)
+        """);
+        // append-only stock ledger, read newest first per name
+        jdbc.execute("""
+            CREATE TABLE IF NOT EXISTS supply_movements (
+                id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                name VARCHAR(255) NOT NULL,
+                delta INT NOT NULL,
+                moved_at TIMESTAMP WITH TIME ZONE NOT NULL
+            )
+        """);
+        jdbc.execute("""
+            CREATE INDEX IF NOT EXISTS idx_movements_name ON supply_movements (name, id)
+        """);
+        // consumption per supply and day, kept current by every write
+        jdbc.execute("""
+            CREATE TABLE IF NOT EXISTS supply_consumption (
+                name VARCHAR(255) NOT NULL,
+                on_day DATE NOT NULL,
+                consumed BIGINT NOT NULL,
+                PRIMARY KEY (name, on_day)
+            )
+        """);
+        // stock per location, keyed location first so each location is one contiguous key range
+        jdbc.execute("""
+            CREATE TABLE IF NOT EXISTS supply_stock (
+                location VARCHAR(255) NOT NULL,
+                name VARCHAR(255) NOT NULL REFERENCES supplies (name) ON DELETE CASCADE,
+                amount INT NOT NULL CHECK (amount >= 0),
+                version BIGINT NOT NULL DEFAULT 0,
+                PRIMARY KEY (location, name)
             )
         """);
+        jdbc.execute("""
+            CREATE INDEX IF NOT EXISTS idx_stock_name ON supply_stock (name, location)
+        """);
+        // lots received per supply; emptied lots are deleted
+        jdbc.execute("""
+            CREATE TABLE IF NOT EXISTS supply_lots (
+                name VARCHAR(255) NOT NULL REFERENCES supplies (name) ON DELETE CASCADE,
+                lot VARCHAR(64) NOT NULL,
+                expires_on DATE NOT NULL,
+                amount INT NOT NULL CHECK (amount > 0),
+                PRIMARY KEY (name, lot)
+            )
+        """);
+        // FEFO picking reads one supply's lots in expiry order
+        jdbc.execute("""
+            CREATE INDEX IF NOT EXISTS idx_lots_name_expiry ON supply_lots (name, expires_on, lot)
+        """);
+        // expiry sweeps are range scans on expiry; lot and name make the keyset order unique
+        jdbc.execute("""
+            CREATE INDEX IF NOT EXISTS idx_lots_expiry ON supply_lots (expires_on, lot, name)
+        """);
+        // last version of each deleted supply; see CREATED_VERSION
+        jdbc.execute("""
+            CREATE TABLE IF NOT EXISTS supply_tombstones (
+                name VARCHAR(255) PRIMARY KEY,
+                version BIGINT NOT NULL
+            )
+        """);
+        // the catalog version, striped so committing writers rarely wait on each other
+        jdbc.execute("""
+            CREATE TABLE IF NOT EXISTS catalog_changes (
+                stripe INT PRIMARY KEY,
+                changes BIGINT NOT NULL
+            )
+        """);
+        if (jdbc.queryForObject("SELECT COUNT(*) FROM catalog_changes", Integer.class) == 0) {
+            // a random start, so a fresh database never matches a snapshot of another one
+            long start = ThreadLocalRandom.current().nextLong(1L << 62);
+            List<Object[]> stripes = new ArrayList<>(CATALOG_STRIPES);
+            for (int i = 0; i < CATALOG_STRIPES; i++) stripes.add(new Object[] {i, i == 0 ? start : 0L});
+            jdbc.batchUpdate("INSERT INTO catalog_changes (stripe, changes) VALUES (?, ?)", stripes);
+        }
     }
 
-    public void create(MedicalSupply s) {
+    @Override
+    public MedicalSupply create(MedicalSupply s) {
         validate(s);
-
+        var created = s.withVersion(jdbc.queryForObject(CREATED_VERSION, Long.class, s.name()));
         jdbc.update("""
-            INSERT INTO supplies (name, amount, "unitName") VALUES (?,?,?)
-        """, s.name(), s.amount(), s.unitName());
+            INSERT INTO supplies (name, amount, "unitName", version) VALUES (?,?,?,?)
+        """, s.name(), s.amount(), s.unitName(), created.version());
+        changing();
+        record(Map.of(s.name(), s.amount()), true);
+        return created;
     }
 
+    /**
+     * Inserts or replaces every row with one JDBC batch, then reads the stored rows back
+     * with one query; rows are validated up front. Existing rows are locked first so each
+     * name's ledger delta is exact.
+     */
+    @Override
+    public List<MedicalSupply> upsertAll(List<MedicalSupply> rows) {
+        rows.forEach(DBConfig::validate);
+        var names = rows.stream().map(MedicalSupply::name).distinct().toList();
+        Map<String, Integer> before = lockAmounts(names);
+        jdbc.batchUpdate(UPSERT, rows, rows.size(), (ps, s) -> {
+            ps.setString(1, s.name());
+            ps.setInt(2, s.amount());
+            ps.setString(3, s.unitName());
+        });
+        Map<String, MedicalSupply> stored = new HashMap<>();
+        readByNames(names).forEach(s -> stored.put(s.name(), s));
+        Map<String, Integer> deltas = new LinkedHashMap<>();
+        for (String name : names) {
+            MedicalSupply s = stored.get(name);
+            if (s == null) throw new DataRetrievalFailureException("upserted supply '" + name + "' could not be read back");
+            deltas.put(name, s.amount() - before.getOrDefault(name, 0));
+        }
+        changing();
+        record(deltas, true);
+        return rows.stream().map(s -> stored.get(s.name())).toList();
+    }
+
+    @Override
+    public MedicalSupply upsert(MedicalSupply s) {
+        validate(s);
+        var prior = jdbc.query("SELECT amount, version FROM OLD TABLE (" + UPSERT + ")",
+                PRIOR_MAPPER, s.name(), s.amount(), s.unitName());
+        changing();
+        if (prior.isEmpty()) {
+            record(Map.of(s.name(), s.amount()), true);
+            return s.withVersion(jdbc.queryForObject(CREATED_VERSION, Long.class, s.name()));
+        }
+        record(Map.of(s.name(), s.amount() - prior.getFirst().amount()), true);
+        return s.withVersion(prior.getFirst().version() + 1);
+    }
+
+    @Override
     public Optional<MedicalSupply> read(String name) {
+        return jdbc.query("""
+            SELECT name, amount, "unitName", version FROM supplies WHERE name = ?
+        """, rs -> rs.next() ? Optional.of(ROW_MAPPER.mapRow(rs, 1)) : Optional.empty(), name);
+    }
+
+    /**
+     * One primary-key lookup per {@value #READ_CHUNK_SIZE} names. Each chunk is bound as a
+     * single array parameter, so the statement text, and its cached plan, never changes.
+     */
+    @Override
+    public List<MedicalSupply> readByNames(Collection<String> names) {
+        List<MedicalSupply> found = new ArrayList<>(names.size());
+        forEachChunk(names, chunk -> found.addAll(jdbc.query("""
+            SELECT name, amount, "unitName", version FROM supplies WHERE name = ANY(?)
+        """, ROW_MAPPER, (Object) chunk)));
+        return found;
+    }
+
+    /** Amounts of the existing rows among {@code names}, locked until the transaction ends. */
+    private Map<String, Integer> lockAmounts(Collection<String> names) {
+        Map<String, Integer> amounts = new HashMap<>();
+        lockRows(names).forEach((name, s) -> amounts.put(name, s.amount()));
+        return amounts;
+    }
+
+    /**
+     * The existing rows among {@code names}, locked until the transaction ends. Rows are
+     * locked in name order, chunk after chunk, so two callers locking overlapping sets wait
+     * on each other rather than deadlock.
+     */
+    private Map<String, MedicalSupply> lockRows(Collection<String> names) {
+        Map<String, MedicalSupply> rows = new TreeMap<>();
+        forEachChunk(new TreeSet<>(names), chunk -> jdbc.query("""
+            SELECT name, amount, "unitName", version FROM supplies WHERE name = ANY(?) ORDER BY name FOR UPDATE
+        """, (RowCallbackHandler) rs -> rows.put(rs.getString("name"), ROW_MAPPER.mapRow(rs, rs.getRow())), (Object) chunk));
+        return rows;
+    }
+
+    private static void forEachChunk(Collection<String> names, Consumer<String[]> action) {
+        String[] all = names.toArray(String[]::new);
+        for (int from = 0; from < all.length; from += READ_CHUNK_SIZE) {
+            action.accept(Arrays.copyOfRange(all, from, Math.min(from + READ_CHUNK_SIZE, all.length)));
+        }
+    }
+
+    @Override
+    public SupplyPage readPage(String after, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        // fetch one extra row to know whether another page follows
+        List<MedicalSupply> rows = after == null
+                ? jdbc.query("""
+                    SELECT name, amount, "unitName", version FROM supplies ORDER BY name LIMIT ?
+                """, ROW_MAPPER, limit + 1)
+                : jdbc.query("""
+                    SELECT name, amount, "unitName", version FROM supplies WHERE name > ? ORDER BY name LIMIT ?
+                """, ROW_MAPPER, after, limit + 1);
+        return toPage(rows, limit, MedicalSupply::name);
+    }
+
+    /**
+     * Supplies with {@code amount < below}, lowest stock first, read as an index range scan
+     * on {@code (amount, name)}. The cursor is {@code "<amount>:<name>"} of the last row.
+     */
+    @Override
+    public SupplyPage readLowStock(int below, String after, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        List<MedicalSupply> rows;
+        if (after == null) {
+            rows = jdbc.query("""
+                SELECT name, amount, "unitName", version FROM supplies
+                WHERE amount < ?
+                ORDER BY amount, name LIMIT ?
+            """, ROW_MAPPER, below, limit + 1);
+        } else {
+            int afterAmount = cursorAmount(after);
+            String afterName = cursorName(after);
+            rows = jdbc.query("""
+                SELECT name, amount, "unitName", version FROM supplies
+                WHERE amount < ? AND amount >= ? AND (amount > ? OR name > ?)
+                ORDER BY amount, name LIMIT ?
+            """, ROW_MAPPER, below, afterAmount, afterAmount, afterName, limit + 1);
+        }
+        return toPage(rows, limit, s -> s.amount() + ":" + s.name());
+    }
+
+    /**
+     * Streams every row in name order to {@code sink} straight off a forward-only cursor,
+     * without collecting them into a list.
+     */
+    @Override
+    public void forEach(Consumer<MedicalSupply> sink) {
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement("""
+                SELECT name, amount, "unitName", version FROM supplies ORDER BY name
+            """, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(exportFetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> sink.accept(ROW_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    /** The sum of {@value #CATALOG_STRIPES} rows; it never reads the supplies table. */
+    @Override
+    public long catalogVersion() {
+        return jdbc.queryForObject("SELECT SUM(changes) FROM catalog_changes", Long.class);
+    }
+
+    /**
+     * Marks the transaction as one that changes the catalog: its commit bumps the catalog
+     * version. Without a transaction, as on an unproxied instance, the version moves at once.
+     */
+    private void changing() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(catalogChanged); // once per transaction
+        } else {
+            bumpCatalogVersion();
+        }
+    }
+
+    private void bumpCatalogVersion() {
+        jdbc.update("UPDATE catalog_changes SET changes = changes + 1 WHERE stripe = ?",
+                (int) (Thread.currentThread().threadId() % CATALOG_STRIPES));
+    }
+
+    @Override
+    public Optional<MedicalSupply> update(MedicalSupply s, long expectedVersion) {
+        validate(s);
+        var prior = jdbc.query("""
+            SELECT amount, version FROM OLD TABLE (
+                UPDATE supplies SET amount = ?, "unitName" = ?, version = version + 1
+                WHERE name = ? AND (version = ? OR ? = -1)
+            )
+        """, PRIOR_MAPPER, s.amount(), s.unitName(), s.name(), expectedVersion, expectedVersion);
+        if (prior.isEmpty()) return Optional.empty();
+        changing();
+        record(Map.of(s.name(), s.amount() - prior.getFirst().amount()), true);
+        return Optional.of(s.withVersion(prior.getFirst().version() + 1));
+    }
+
+    /** Each UPDATE carries the version check too, so the batch matches what the locked rows decided. */
+    @Override
+    public int updateAll(List<MedicalSupply> rows) {
+        rows.forEach(DBConfig::validate);
+        Map<String, MedicalSupply> current = lockRows(rows.stream().map(MedicalSupply::name).distinct().toList());
+        Map<String, Integer> deltas = new LinkedHashMap<>();
+        for (MedicalSupply s : rows) {
+            MedicalSupply previous = current.get(s.name());
+            if (previous == null || previous.version() >= s.version()) continue; // missing or already past it
+            current.put(s.name(), s);
+            deltas.merge(s.name(), s.amount() - previous.amount(), Integer::sum);
+        }
+        int[][] counts = jdbc.batchUpdate("""
+            UPDATE supplies SET amount = ?, "unitName" = ?, version = ? WHERE name = ? AND version < ?
+        """, rows, rows.size(), (ps, s) -> {
+            ps.setInt(1, s.amount());
+            ps.setString(2, s.unitName());
+            ps.setLong(3, s.version());
+            ps.setString(4, s.name());
+            ps.setLong(5, s.version());
+        });
+        int updated = 0;
+        for (int[] batch : counts) for (int c : batch) if (c > 0) updated += c;
+        changing();
+        record(deltas, true);
+        return updated;
+    }
+
+    /**
+     * Atomically adds {@code delta} to the amount in one conditional UPDATE, so concurrent
+     * callers never lose each other's changes. Empty when the row is missing or the result
+     * would be negative. The bounds are checked on the current amount, so {@code amount + ?}
+     * is never evaluated out of INT range; a row left unchanged by an increase was too full.
+     */
+    @Override
+    public Optional<MedicalSupply> addToAmount(String name, int delta) {
         var list = jdbc.query("""
-            SELECT name, amount, "unitName" FROM supplies WHERE name = ?
-        """, rowMapper(), name);
-        return list.stream().findFirst();
+            SELECT name, amount, "unitName", version FROM FINAL TABLE (
+                UPDATE supplies SET amount = amount + ?, version = version + 1
+                WHERE name = ? AND amount BETWEEN ? AND ?
+            )
+        """, ROW_MAPPER, delta, name, Math.max(0L, -(long) delta), Integer.MAX_VALUE - Math.max(0L, delta));
+        if (list.isEmpty()) {
+            if (delta > 0 && read(name).isPresent()) throw new IllegalArgumentException("amount would overflow");
+            return Optional.empty();
+        }
+        changing();
+        record(Map.of(name, delta), true);
+        if (delta < 0) drawLots(Map.of(name, -delta));
+        return Optional.of(list.getFirst());
+    }
+
+    /**
+     * Locks every row in name order, checks the whole set, and only then writes it with one
+     * JDBC batch. The locks keep the checked rows current, so the result is computed from
+     * them rather than read back.
+     */
+    @Override
+    public Optional<List<MedicalSupply>> addToAmounts(SortedMap<String, Integer> deltas) {
+        Map<String, MedicalSupply> locked = lockRows(deltas.keySet());
+        List<MedicalSupply> updated = new ArrayList<>(deltas.size());
+        for (var d : deltas.entrySet()) {
+            MedicalSupply current = locked.get(d.getKey());
+            if (current == null) return Optional.empty();
+            long amount = (long) current.amount() + d.getValue();
+            if (amount < 0) return Optional.empty();
+            if (amount > Integer.MAX_VALUE) throw new IllegalArgumentException("amount would overflow");
+            updated.add(new MedicalSupply(current.name(), (int) amount, current.unitName(), current.version() + 1));
+        }
+        var entries = List.copyOf(deltas.entrySet());
+        jdbc.batchUpdate("""
+            UPDATE supplies SET amount = amount + ?, version = version + 1 WHERE name = ?
+        """, entries, entries.size(), (ps, d) -> {
+            ps.setInt(1, d.getValue());
+            ps.setString(2, d.getKey());
+        });
+        changing();
+        record(deltas, true);
+        Map<String, Integer> taken = new HashMap<>();
+        deltas.forEach((name, delta) -> {
+            if (delta < 0) taken.put(name, -delta);
+        });
+        drawLots(taken);
+        return Optional.of(updated);
+    }
+
+    /**
+     * Takes {@code taken} units per name off the unexpired lots, first to expire first, with
+     * one query for the lots and one batch each for the lots emptied and the lots reduced.
+     * Callers hold the supplies row locks, which serialize every write to a supply's lots.
+     */
+    private void drawLots(Map<String, Integer> taken) {
+        if (taken.isEmpty()) return;
+        Map<String, Integer> left = new HashMap<>(taken);
+        List<Object[]> emptied = new ArrayList<>();
+        List<Object[]> reduced = new ArrayList<>();
+        LocalDate today = LocalDate.now(clock);
+        // expired lots are skipped here: H2 gives up the index for ANY(?) next to a range on expires_on
+        forEachChunk(new TreeSet<>(taken.keySet()), chunk -> jdbc.query("""
+            SELECT name, lot, expires_on, amount FROM supply_lots
+            WHERE name = ANY(?)
+            ORDER BY name, expires_on, lot
+        """, (RowCallbackHandler) rs -> {
+            String name = rs.getString("name");
+            int need = left.get(name);
+            if (need == 0 || rs.getObject("expires_on", LocalDate.class).isBefore(today)) return;
+            int amount = rs.getInt("amount");
+            int take = Math.min(need, amount);
+            left.put(name, need - take);
+            if (take == amount) emptied.add(new Object[] {name, rs.getString("lot")});
+            else reduced.add(new Object[] {take, name, rs.getString("lot")});
+        }, (Object) chunk));
+        if (!emptied.isEmpty()) jdbc.batchUpdate("DELETE FROM supply_lots WHERE name = ? AND lot = ?", emptied);
+        if (!reduced.isEmpty()) jdbc.batchUpdate("UPDATE supply_lots SET amount = amount - ? WHERE name = ? AND lot = ?", reduced);
+    }
+
+    /**
+     * Locks the supply row first, so the lot's expiry check and the write see the same
+     * lots, then adds to the supply as {@link #addToAmount} and merges the lot.
+     */
+    @Override
+    public Optional<MedicalSupply> receiveLot(String name, String lot, LocalDate expiresOn, int amount) {
+        if (amount < 1) throw new IllegalArgumentException("lot amount must be positive");
+        validateLot(lot);
+        if (lockRows(List.of(name)).isEmpty()) return Optional.empty();
+        var onHand = jdbc.queryForList("""
+            SELECT expires_on FROM supply_lots WHERE name = ? AND lot = ?
+        """, LocalDate.class, name, lot);
+        if (!onHand.isEmpty() && !onHand.getFirst().equals(expiresOn)) {
+            throw new IllegalArgumentException("lot " + lot + " of " + name + " expires on " + onHand.getFirst());
+        }
+        var updated = addToAmount(name, amount);
+        jdbc.update("""
+            MERGE INTO supply_lots t
+            USING (VALUES (CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS DATE), CAST(? AS INT))) AS s(name, lot, expires_on, amount)
+            ON t.name = s.name AND t.lot = s.lot
+            WHEN MATCHED THEN UPDATE SET amount = t.amount + s.amount
+            WHEN NOT MATCHED THEN INSERT (name, lot, expires_on, amount) VALUES (s.name, s.lot, s.expires_on, s.amount)
+        """, name, lot, expiresOn, amount);
+        return updated;
     }
 
-    public List<MedicalSupply> readAll() {
+    /** The supply is never taken below zero, even if an absolute write left it under its lots. */
+    @Override
+    public Optional<MedicalSupply> writeOffLot(String name, String lot) {
+        MedicalSupply current = lockRows(List.of(name)).get(name);
+        if (current == null) return Optional.empty();
+        var remaining = jdbc.queryForList("""
+            SELECT amount FROM supply_lots WHERE name = ? AND lot = ?
+        """, Integer.class, name, lot);
+        if (remaining.isEmpty()) return Optional.empty();
+        jdbc.update("DELETE FROM supply_lots WHERE name = ? AND lot = ?", name, lot);
+        int removed = Math.min(remaining.getFirst(), current.amount());
+        jdbc.update("UPDATE supplies SET amount = amount - ?, version = version + 1 WHERE name = ?", removed, name);
+        changing();
+        record(Map.of(name, -removed), false);
+        return Optional.of(new MedicalSupply(name, current.amount() - removed, current.unitName(), current.version() + 1));
+    }
+
+    @Override
+    public List<Lot> readLots(String name) {
         return jdbc.query("""
-            SELECT name, amount, "unitName" FROM supplies ORDER BY name
-        """, rowMapper());
+            SELECT name, lot, expires_on, amount FROM supply_lots WHERE name = ? ORDER BY expires_on, lot
+        """, LOT_MAPPER, name);
     }
 
-    public boolean update(MedicalSupply s) {
-        validate(s);
-        int rows = jdbc.update("""
-            UPDATE supplies SET amount = ?, "unitName" = ? WHERE name = ?
-        """, s.amount(), s.unitName(), s.name());
-        return rows == 1;
+    @Override
+    public LotPage readExpiringLots(LocalDate from, LocalDate through, String after, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        // fetch one extra row to know whether another page follows
+        if (after == null && from == null) {
+            return LotPage.of(jdbc.query("""
+                SELECT name, lot, expires_on, amount FROM supply_lots
+                WHERE expires_on <= ?
+                ORDER BY expires_on, lot, name LIMIT ?
+            """, LOT_MAPPER, through, limit + 1), limit);
+        }
+        if (after == null) {
+            return LotPage.of(jdbc.query("""
+                SELECT name, lot, expires_on, amount FROM supply_lots
+                WHERE expires_on <= ? AND expires_on >= ?
+                ORDER BY expires_on, lot, name LIMIT ?
+            """, LOT_MAPPER, through, from, limit + 1), limit);
+        }
+        var c = LotPage.Cursor.parse(after); // already at or past from
+        return LotPage.of(jdbc.query("""
+            SELECT name, lot, expires_on, amount FROM supply_lots
+            WHERE expires_on <= ? AND expires_on >= ?
+              AND (expires_on > ? OR lot > ? OR (lot = ? AND name > ?))
+            ORDER BY expires_on, lot, name LIMIT ?
+        """, LOT_MAPPER, through, c.expiresOn(), c.expiresOn(), c.lot(), c.lot(), c.name(), limit + 1), limit);
+    }
+
+    /**
+     * Records the remaining stock as removed, not consumed, drops the consumption history
+     * and keeps the row's last version, which a re-created supply carries on from.
+     */
+    @Override
+    public boolean delete(String name, long expectedVersion) {
+        var prior = jdbc.query("""
+            SELECT amount, version FROM OLD TABLE (
+                DELETE FROM supplies WHERE name = ? AND (version = ? OR ? = -1)
+            )
+        """, PRIOR_MAPPER, name, expectedVersion, expectedVersion);
+        if (prior.isEmpty()) return false;
+        jdbc.update("MERGE INTO supply_tombstones KEY (name) VALUES (?, ?)", name, prior.getFirst().version());
+        changing();
+        record(Map.of(name, -prior.getFirst().amount()), false);
+        jdbc.update("DELETE FROM supply_consumption WHERE name = ?", name); // a re-created supply starts afresh
+        return true;
+    }
+
+    @Override
+    public List<StockMovement> readMovements(String name, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        return jdbc.query("""
+            SELECT name, delta, moved_at FROM supply_movements WHERE name = ? ORDER BY id DESC LIMIT ?
+        """, MOVEMENT_MAPPER, name, limit);
+    }
+
+    /** The row plus at most {@value StockOutlook#WINDOW_DAYS} per-day totals, whatever the ledger size. */
+    @Override
+    public Optional<StockOutlook> readOutlook(String name) {
+        LocalDate today = LocalDate.now(clock);
+        return jdbc.query("""
+            SELECT s.amount,
+                   COALESCE((SELECT consumed FROM supply_consumption WHERE name = s.name AND on_day = ?), 0) AS today,
+                   COALESCE((SELECT SUM(consumed) FROM supply_consumption WHERE name = s.name AND on_day > ?), 0) AS week
+            FROM supplies s WHERE s.name = ?
+        """, rs -> rs.next()
+                ? Optional.of(StockOutlook.of(name, rs.getInt("amount"), rs.getLong("today"), rs.getLong("week")))
+                : Optional.empty(),
+                today, today.minusDays(StockOutlook.WINDOW_DAYS), name);
+    }
+
+    @Override
+    public Optional<LocationStock> setLocationStock(String name, String location, int amount) {
+        validateLocation(location);
+        if (amount < 0) throw new IllegalArgumentException("amount must be non-negative");
+        return writeStock(SET_STOCK, location, name, amount);
+    }
+
+    /** An increase that leaves an existing supply unchanged could only have overflowed. */
+    @Override
+    public Optional<LocationStock> addToLocationStock(String name, String location, int delta) {
+        validateLocation(location);
+        var written = writeStock(ADD_STOCK, location, name, delta);
+        if (written.isEmpty() && delta > 0 && read(name).isPresent()) {
+            throw new IllegalArgumentException("amount would overflow");
+        }
+        return written;
     }
 
-    public boolean delete(String name) {
-        int rows = jdbc.update("""
-            DELETE FROM supplies WHERE name = ?
-        """, name);
-        return rows == 1;
+    /** Runs the merge, then reads the row back under the lock the merge took. */
+    private Optional<LocationStock> writeStock(String sql, String location, String name, int value) {
+        try {
+            if (jdbc.update(sql, location, value, name) == 0) return Optional.empty();
+        } catch (DataIntegrityViolationException e) {
+            if (e.getMostSpecificCause() instanceof SQLException cause && PARENT_MISSING.equals(cause.getSQLState())) {
+                return Optional.empty(); // the supply was deleted after the merge read it
+            }
+            throw e;
+        }
+        return jdbc.query("""
+            SELECT name, location, amount, version FROM supply_stock WHERE location = ? AND name = ?
+        """, STOCK_MAPPER, location, name).stream().findFirst();
+    }
+
+    @Override
+    public List<LocationStock> readLocationStock(String name) {
+        return jdbc.query("""
+            SELECT name, location, amount, version FROM supply_stock WHERE name = ? ORDER BY location
+        """, STOCK_MAPPER, name);
     }
 
+    /**
+     * Sums each location's key range on a pool thread with its own connection and merges
+     * the partials by name. Runs outside any transaction, so the caller holds no connection
+     * while the partitions are read; a write committing meanwhile may be seen by some
+     * partitions and not others.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<SupplyTotal> readTotals() {
+        List<String> locations = jdbc.queryForList("SELECT DISTINCT location FROM supply_stock", String.class);
+        List<Future<Map<String, Integer>>> partials = new ArrayList<>(locations.size());
+        for (String location : locations) {
+            partials.add(aggregator.submit(() -> {
+                Map<String, Integer> amounts = new HashMap<>();
+                jdbc.query("SELECT name, amount FROM supply_stock WHERE location = ?",
+                        (RowCallbackHandler) rs -> amounts.put(rs.getString(1), rs.getInt(2)), location);
+                return amounts;
+            }));
+        }
+        Map<String, long[]> totals = new TreeMap<>(); // name -> {total, locations}
+        for (var partial : partials) {
+            await(partial).forEach((name, amount) -> {
+                long[] t = totals.computeIfAbsent(name, k -> new long[2]);
+                t[0] += amount;
+                t[1]++;
+            });
+        }
+        List<SupplyTotal> result = new ArrayList<>(totals.size());
+        totals.forEach((name, t) -> result.add(new SupplyTotal(name, t[0], (int) t[1])));
+        return result;
+    }
 
-    private static void validate(MedicalSupply s) {
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while reading stock totals", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Appends a ledger row for every non-zero delta and, if they {@code consume}, adds the
+     * decreases to today's consumption and drops the consumed supplies' days older than
+     * {@value StockOutlook#WINDOW_DAYS}, as the in-memory store does.
+     */
+    private void record(Map<String, Integer> deltas, boolean consume) {
+        var moved = deltas.entrySet().stream().filter(e -> e.getValue() != 0).toList();
+        if (moved.isEmpty()) return;
+        var at = OffsetDateTime.ofInstant(clock.instant(), ZoneOffset.UTC);
+        jdbc.batchUpdate("""
+            INSERT INTO supply_movements (name, delta, moved_at) VALUES (?,?,?)
+        """, moved, moved.size(), (ps, e) -> {
+            ps.setString(1, e.getKey());
+            ps.setInt(2, e.getValue());
+            ps.setObject(3, at);
+        });
+        if (!consume) return;
+        var consumed = moved.stream().filter(e -> e.getValue() < 0).toList();
+        if (consumed.isEmpty()) return;
+        LocalDate today = LocalDate.now(clock);
+        jdbc.batchUpdate(CONSUME, consumed, consumed.size(), (ps, e) -> {
+            ps.setString(1, e.getKey());
+            ps.setObject(2, today);
+            ps.setLong(3, -(long) e.getValue());
+        });
+        LocalDate cutoff = today.minusDays(StockOutlook.WINDOW_DAYS);
+        jdbc.batchUpdate(PRUNE_CONSUMPTION, consumed, consumed.size(), (ps, e) -> {
+            ps.setString(1, e.getKey());
+            ps.setObject(2, cutoff);
+        });
+    }
+
+
+    static void validate(MedicalSupply s) {
         if (s == null) throw new IllegalArgumentException("Supply must not be null");
         if (s.name() == null || s.name().isBlank()) {
             throw new IllegalArgumentException("name must not be blank");
         }
+        if (s.name().length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("name must be at most " + MAX_TEXT_LENGTH + " characters");
+        }
         if (s.amount() < 0) {
             throw new IllegalArgumentException("amount must be non-negative");
         }
         if (s.unitName() == null || s.unitName().isBlank()) {
             throw new IllegalArgumentException("unitName must not be blank");
         }
+        if (s.unitName().length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("unitName must be at most " + MAX_TEXT_LENGTH + " characters");
+        }
     }
 
-    private static RowMapper<MedicalSupply> rowMapper() {
-        return new RowMapper<>() {
-            @Override public MedicalSupply mapRow(ResultSet rs, int rowNum) throws SQLException {
-                return new MedicalSupply(
-                        rs.getString("name"),
-                        rs.getInt("amount"),
-                        rs.getString("unitName")); // quoted in DDL, readable without quotes
-            }
-        };
+    static void validateLocation(String location) {
+        if (location == null || location.isBlank()) throw new IllegalArgumentException("location must not be blank");
+        if (location.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("location must be at most " + MAX_TEXT_LENGTH + " characters");
+        }
+    }
+
+    static void validateLot(String lot) {
+        if (lot == null || lot.isBlank()) throw new IllegalArgumentException("lot must not be blank");
+        if (lot.length() > MAX_LOT_LENGTH) {
+            throw new IllegalArgumentException("lot must be at most " + MAX_LOT_LENGTH + " characters");
+        }
+    }
+
+    /** Amount part of a low-stock cursor {@code "<amount>:<name>"}. */
+    static int cursorAmount(String cursor) {
+        int sep = cursor.indexOf(':');
+        try {
+            return Integer.parseInt(cursor.substring(0, Math.max(sep, 0)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("malformed low-stock cursor: " + cursor);
+        }
+    }
+
+    static String cursorName(String cursor) {
+        return cursor.substring(cursor.indexOf(':') + 1);
+    }
+
+    /** Trims a limit+1 fetch to {@code limit} rows and derives the next cursor if one was cut. */
+    static SupplyPage toPage(List<MedicalSupply> rows, int limit,
+                                     Function<MedicalSupply, String> cursorOf) {
+        if (rows.size() <= limit) return new SupplyPage(rows, null);
+        List<MedicalSupply> items = rows.subList(0, limit);
+        return new SupplyPage(items, cursorOf.apply(items.get(limit - 1)));
     }
 }
 
@@ -0,0 +1,563 @@
+package com.qare.app.config;
+
+import com.qare.app.model.LocationStock;
+import com.qare.app.model.Lot;
+import com.qare.app.model.LotPage;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.StockMovement;
+import com.qare.app.model.StockOutlook;
+import com.qare.app.model.SupplyPage;
+import com.qare.app.model.SupplyTotal;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link SupplyStore} held in a {@link ConcurrentSkipListMap} keyed by name, for edge
+ * deployments and test rigs. Nothing survives a restart.
+ * <p>
+ * Reads are lock-free; writes are not. A write holds the lock its supply's name hashes to,
+ * one of {@value #LOCK_STRIPES}, and a kit holds the locks of all its supplies at once, so
+ * a kit is checked and applied with no other write to those supplies in between. The cost
+ * is that writes to one supply, or to supplies sharing a stripe, queue behind each other
+ * instead of retrying a compare-and-set; writes on different stripes still run in parallel.
+ * <p>
+ * Low-stock reads walk a second skip list ordered by {@code (amount, name)}. Readers do
+ * not wait for the writes that keep it current, so it may briefly hold keys for amounts a
+ * supply no longer has; reads check every key against the primary map and prune stale ones.
+ * <p>
+ * The ledger keeps the latest {@value #MOVEMENT_HISTORY} movements per supply, and only
+ * the days inside the outlook window are kept as consumption totals.
+ * <p>
+ * Location stock is one hash map per location, written with atomic per-key computes.
+ * <p>
+ * Each supply's lots are a small map, changed under the supply's lock and guarded by itself
+ * for readers; a skip list ordered by
+ * {@code (expiresOn, lot, name)} answers expiry sweeps as a range read.
+ */
+@Component
+@ConditionalOnProperty(name = "qare.storage.engine", havingValue = "memory")
+public class InMemorySupplyStore implements SupplyStore {
+
+    private record StockKey(int amount, String name) {}
+
+    private record LotKey(LocalDate expiresOn, String lot, String name) {}
+
+    private static final Comparator<StockKey> BY_STOCK =
+            Comparator.comparingInt(StockKey::amount).thenComparing(StockKey::name);
+
+    private static final Comparator<LotKey> BY_EXPIRY =
+            Comparator.comparing(LotKey::expiresOn).thenComparing(LotKey::lot).thenComparing(LotKey::name);
+
+    private static final Comparator<Lot> FEFO = Comparator.comparing(Lot::expiresOn).thenComparing(Lot::lot);
+
+    static final int MOVEMENT_HISTORY = 1000;
+
+    static final int LOCK_STRIPES = 64;
+
+    private final ConcurrentSkipListMap<String, MedicalSupply> supplies = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListSet<StockKey> byStock = new ConcurrentSkipListSet<>(BY_STOCK);
+    private final Map<String, Deque<StockMovement>> movements = new ConcurrentHashMap<>(); // newest first
+    private final Map<String, ConcurrentSkipListMap<LocalDate, LongAdder>> consumption = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, ConcurrentHashMap<String, LocationStock>> stock = new ConcurrentSkipListMap<>(); // location -> name -> row
+    private final Map<String, Map<String, Lot>> lots = new ConcurrentHashMap<>(); // name -> lot -> row, each map guarded by itself
+    private final ConcurrentSkipListMap<LotKey, Lot> byExpiry = new ConcurrentSkipListMap<>(BY_EXPIRY);
+    private final Map<String, Long> tombstones = new ConcurrentHashMap<>(); // name -> last version of the deleted supply
+    private final AtomicLong catalogVersion = new AtomicLong(ThreadLocalRandom.current().nextLong());
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final Clock clock;
+
+    public InMemorySupplyStore() {
+        this(Clock.systemDefaultZone());
+    }
+
+    InMemorySupplyStore(Clock clock) {
+        this.clock = clock;
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    private static int stripe(String name) {
+        return Math.floorMod(name.hashCode(), LOCK_STRIPES);
+    }
+
+    /** Runs {@code write} holding the supply's lock. */
+    private <T> T locked(String name, Supplier<T> write) {
+        ReentrantLock lock = locks[stripe(name)];
+        lock.lock();
+        try {
+            return write.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Runs {@code write} holding the locks of all {@code names}, taken in stripe order so kits never deadlock. */
+    private <T> T locked(Collection<String> names, Supplier<T> write) {
+        int[] stripes = names.stream().mapToInt(InMemorySupplyStore::stripe).distinct().sorted().toArray();
+        for (int i : stripes) locks[i].lock();
+        try {
+            return write.get();
+        } finally {
+            for (int i : stripes) locks[i].unlock();
+        }
+    }
+
+    @Override
+    public MedicalSupply create(MedicalSupply s) {
+        DBConfig.validate(s);
+        return locked(s.name(), () -> {
+            var created = s.withVersion(createdVersion(s.name()));
+            if (supplies.putIfAbsent(created.name(), created) != null) {
+                throw new DuplicateKeyException("Supply already exists: " + created.name());
+            }
+            changed(null, created);
+            return created;
+        });
+    }
+
+    /** 0, or one past the last version of a deleted supply of that name. */
+    private long createdVersion(String name) {
+        Long deleted = tombstones.get(name);
+        return deleted == null ? 0 : deleted + 1;
+    }
+
+    @Override
+    public List<MedicalSupply> upsertAll(List<MedicalSupply> rows) {
+        rows.forEach(DBConfig::validate);
+        return rows.stream().map(this::put).toList();
+    }
+
+    @Override
+    public MedicalSupply upsert(MedicalSupply s) {
+        DBConfig.validate(s);
+        return put(s);
+    }
+
+    @Override
+    public Optional<MedicalSupply> read(String name) {
+        return Optional.ofNullable(supplies.get(name));
+    }
+
+    @Override
+    public List<MedicalSupply> readByNames(Collection<String> names) {
+        List<MedicalSupply> found = new ArrayList<>(names.size());
+        for (String name : names) {
+            var s = supplies.get(name);
+            if (s != null) found.add(s);
+        }
+        return found;
+    }
+
+    @Override
+    public SupplyPage readPage(String after, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        ConcurrentNavigableMap<String, MedicalSupply> tail = after == null ? supplies : supplies.tailMap(after, false);
+        List<MedicalSupply> rows = new ArrayList<>(Math.min(limit + 1, 1024));
+        for (MedicalSupply s : tail.values()) {
+            rows.add(s);
+            if (rows.size() > limit) break;
+        }
+        return DBConfig.toPage(rows, limit, MedicalSupply::name);
+    }
+
+    @Override
+    public SupplyPage readLowStock(int below, String after, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        var from = after == null
+                ? byStock
+                : byStock.tailSet(new StockKey(DBConfig.cursorAmount(after), DBConfig.cursorName(after)), false);
+        List<MedicalSupply> rows = new ArrayList<>(Math.min(limit + 1, 1024));
+        for (StockKey key : from) {
+            if (key.amount() >= below) break;
+            MedicalSupply s = supplies.get(key.name());
+            if (s == null || s.amount() != key.amount()) {
+                byStock.remove(key); // superseded by a later write
+                continue;
+            }
+            rows.add(s);
+            if (rows.size() > limit) break;
+        }
+        return DBConfig.toPage(rows, limit, s -> s.amount() + ":" + s.name());
+    }
+
+    @Override
+    public void forEach(Consumer<MedicalSupply> sink) {
+        supplies.values().forEach(sink);
+    }
+
+    @Override
+    public long catalogVersion() {
+        return catalogVersion.get();
+    }
+
+    @Override
+    public Optional<MedicalSupply> update(MedicalSupply s, long expectedVersion) {
+        DBConfig.validate(s);
+        return locked(s.name(), () -> {
+            MedicalSupply current = supplies.get(s.name());
+            if (current == null) return Optional.empty();
+            if (expectedVersion != ANY_VERSION && current.version() != expectedVersion) return Optional.empty();
+            var next = s.withVersion(current.version() + 1);
+            supplies.put(s.name(), next);
+            changed(current, next);
+            return Optional.of(next);
+        });
+    }
+
+    @Override
+    public int updateAll(List<MedicalSupply> rows) {
+        rows.forEach(DBConfig::validate);
+        int updated = 0;
+        for (MedicalSupply s : rows) {
+            boolean found = locked(s.name(), () -> {
+                MedicalSupply current = supplies.get(s.name());
+                if (current == null || current.version() >= s.version()) return false;
+                supplies.put(s.name(), s);
+                changed(current, s);
+                return true;
+            });
+            if (found) updated++;
+        }
+        return updated;
+    }
+
+    @Override
+    public Optional<MedicalSupply> addToAmount(String name, int delta) {
+        return locked(name, () -> {
+            var updated = add(name, delta);
+            if (updated.isPresent() && delta < 0) drawLots(name, -delta);
+            return updated;
+        });
+    }
+
+    /** Adds {@code delta} to the amount, leaving lots alone. Callers hold the supply's lock. */
+    private Optional<MedicalSupply> add(String name, int delta) {
+        MedicalSupply current = supplies.get(name);
+        if (current == null) return Optional.empty();
+        long amount = (long) current.amount() + delta;
+        if (amount < 0) return Optional.empty();
+        if (amount > Integer.MAX_VALUE) throw new IllegalArgumentException("amount would overflow");
+        var next = new MedicalSupply(name, (int) amount, current.unitName(), current.version() + 1);
+        supplies.put(name, next);
+        changed(current, next);
+        return Optional.of(next);
+    }
+
+    /**
+     * Holds the locks of every supply in the kit, checks the whole set and only then applies
+     * it, as {@link DBConfig#addToAmounts} does under row locks. Writes to those supplies
+     * wait for the kit; readers may see part of it while it is applied.
+     */
+    @Override
+    public Optional<List<MedicalSupply>> addToAmounts(SortedMap<String, Integer> deltas) {
+        return locked(deltas.keySet(), () -> {
+            for (var d : deltas.entrySet()) {
+                MedicalSupply current = supplies.get(d.getKey());
+                if (current == null) return Optional.empty();
+                long amount = (long) current.amount() + d.getValue();
+                if (amount < 0) return Optional.empty();
+                if (amount > Integer.MAX_VALUE) throw new IllegalArgumentException("amount would overflow");
+            }
+            List<MedicalSupply> updated = new ArrayList<>(deltas.size());
+            deltas.forEach((name, delta) -> {
+                updated.add(add(name, delta).orElseThrow()); // checked above, under the same locks
+                if (delta < 0) drawLots(name, -delta);
+            });
+            return Optional.of(List.copyOf(updated));
+        });
+    }
+
+    /** Takes {@code taken} units off the supply's unexpired lots, first to expire first. */
+    private void drawLots(String name, int taken) {
+        var held = lots.get(name);
+        if (held == null) return;
+        LocalDate today = LocalDate.now(clock);
+        synchronized (held) {
+            var fefo = held.values().stream().filter(l -> !l.expiresOn().isBefore(today)).sorted(FEFO).toList();
+            for (Lot l : fefo) {
+                if (taken == 0) break;
+                int take = Math.min(taken, l.amount());
+                taken -= take;
+                putLot(held, l, take == l.amount() ? null : new Lot(name, l.lot(), l.expiresOn(), l.amount() - take));
+            }
+        }
+    }
+
+    /** Replaces {@code before} with {@code after} (either may be null) in the supply's lots and the expiry index. */
+    private void putLot(Map<String, Lot> held, Lot before, Lot after) {
+        if (before != null) byExpiry.remove(keyOf(before));
+        if (after == null) {
+            held.remove(before.lot());
+        } else {
+            held.put(after.lot(), after);
+            byExpiry.put(keyOf(after), after);
+        }
+    }
+
+    private static LotKey keyOf(Lot l) {
+        return new LotKey(l.expiresOn(), l.lot(), l.name());
+    }
+
+    /** Under the supply's lock, so the lot and the amount change together and a delete waits for both. */
+    @Override
+    public Optional<MedicalSupply> receiveLot(String name, String lot, LocalDate expiresOn, int amount) {
+        if (amount < 1) throw new IllegalArgumentException("lot amount must be positive");
+        DBConfig.validateLot(lot);
+        return locked(name, () -> {
+            if (!supplies.containsKey(name)) return Optional.empty();
+            var held = lots.computeIfAbsent(name, n -> new HashMap<>());
+            synchronized (held) {
+                Lot onHand = held.get(lot);
+                if (onHand != null && !onHand.expiresOn().equals(expiresOn)) {
+                    throw new IllegalArgumentException("lot " + lot + " of " + name + " expires on " + onHand.expiresOn());
+                }
+                var updated = add(name, amount);
+                putLot(held, onHand, new Lot(name, lot, expiresOn, (onHand == null ? 0 : onHand.amount()) + amount));
+                return updated;
+            }
+        });
+    }
+
+    @Override
+    public Optional<MedicalSupply> writeOffLot(String name, String lot) {
+        return locked(name, () -> {
+            MedicalSupply current = supplies.get(name);
+            var held = lots.get(name);
+            if (current == null || held == null) return Optional.empty();
+            synchronized (held) {
+                Lot l = held.get(lot);
+                if (l == null) return Optional.empty();
+                var next = new MedicalSupply(name, current.amount() - Math.min(l.amount(), current.amount()),
+                        current.unitName(), current.version() + 1);
+                supplies.put(name, next);
+                putLot(held, l, null);
+                changed(current, next, false);
+                return Optional.of(next);
+            }
+        });
+    }
+
+    @Override
+    public List<Lot> readLots(String name) {
+        var held = lots.get(name);
+        if (held == null) return List.of();
+        synchronized (held) {
+            return held.values().stream().sorted(FEFO).toList();
+        }
+    }
+
+    @Override
+    public LotPage readExpiringLots(LocalDate from, LocalDate through, String after, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        NavigableMap<LotKey, Lot> range = byExpiry.headMap(new LotKey(through.plusDays(1), "", ""), false);
+        if (after != null) {
+            var c = LotPage.Cursor.parse(after);
+            range = range.tailMap(new LotKey(c.expiresOn(), c.lot(), c.name()), false);
+        } else if (from != null) {
+            range = range.tailMap(new LotKey(from, "", ""), true);
+        }
+        List<Lot> rows = new ArrayList<>(Math.min(limit + 1, 1024));
+        for (Lot l : range.values()) {
+            rows.add(l);
+            if (rows.size() > limit) break; // one extra row tells whether another page follows
+        }
+        return LotPage.of(rows, limit);
+    }
+
+    @Override
+    public boolean delete(String name, long expectedVersion) {
+        return locked(name, () -> {
+            MedicalSupply current = supplies.get(name);
+            if (current == null) return false;
+            if (expectedVersion != ANY_VERSION && current.version() != expectedVersion) return false;
+            supplies.remove(name);
+            tombstones.put(name, current.version());
+            changed(current, null);
+            return true;
+        });
+    }
+
+    @Override
+    public List<StockMovement> readMovements(String name, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        Deque<StockMovement> ledger = movements.get(name);
+        if (ledger == null) return List.of();
+        synchronized (ledger) {
+            return ledger.stream().limit(limit).toList();
+        }
+    }
+
+    @Override
+    public Optional<StockOutlook> readOutlook(String name) {
+        MedicalSupply s = supplies.get(name);
+        if (s == null) return Optional.empty();
+        LocalDate today = LocalDate.now(clock);
+        long consumedToday = 0, consumedLastWeek = 0;
+        var days = consumption.get(name);
+        if (days != null) {
+            for (var day : days.tailMap(today.minusDays(StockOutlook.WINDOW_DAYS), false).entrySet()) {
+                long consumed = day.getValue().sum();
+                consumedLastWeek += consumed;
+                if (day.getKey().equals(today)) consumedToday = consumed;
+            }
+        }
+        return Optional.of(StockOutlook.of(name, s.amount(), consumedToday, consumedLastWeek));
+    }
+
+    @Override
+    public Optional<LocationStock> setLocationStock(String name, String location, int amount) {
+        DBConfig.validateLocation(location);
+        if (amount < 0) throw new IllegalArgumentException("amount must be non-negative");
+        return writeStock(name, location, current ->
+                new LocationStock(name, location, amount, current == null ? 0 : current.version() + 1));
+    }
+
+    @Override
+    public Optional<LocationStock> addToLocationStock(String name, String location, int delta) {
+        DBConfig.validateLocation(location);
+        return writeStock(name, location, current -> {
+            long amount = (long) (current == null ? 0 : current.amount()) + delta;
+            if (amount < 0) return null;
+            if (amount > Integer.MAX_VALUE) throw new IllegalArgumentException("amount would overflow");
+            return new LocationStock(name, location, (int) amount, current == null ? 0 : current.version() + 1);
+        });
+    }
+
+    /** Applies {@code next} to the row atomically; {@code next} returns null to leave it as it is. */
+    private Optional<LocationStock> writeStock(String name, String location, UnaryOperator<LocationStock> next) {
+        if (!supplies.containsKey(name)) return Optional.empty();
+        var partition = stock.computeIfAbsent(location, l -> new ConcurrentHashMap<>());
+        LocationStock[] written = {null};
+        partition.compute(name, (n, current) -> {
+            LocationStock updated = next.apply(current);
+            if (updated == null) return current;
+            written[0] = updated;
+            return updated;
+        });
+        if (written[0] != null && !supplies.containsKey(name)) { // deleted meanwhile
+            partition.remove(name, written[0]);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(written[0]);
+    }
+
+    @Override
+    public List<LocationStock> readLocationStock(String name) {
+        List<LocationStock> rows = new ArrayList<>();
+        for (var partition : stock.values()) {
+            LocationStock row = partition.get(name);
+            if (row != null) rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public List<SupplyTotal> readTotals() {
+        List<Map<String, Integer>> partials = stock.values().parallelStream()
+                .map(partition -> {
+                    Map<String, Integer> amounts = new HashMap<>();
+                    partition.forEach((name, row) -> amounts.put(name, row.amount()));
+                    return amounts;
+                })
+                .toList();
+        Map<String, long[]> totals = new TreeMap<>(); // name -> {total, locations}
+        for (var partial : partials) {
+            partial.forEach((name, amount) -> {
+                long[] t = totals.computeIfAbsent(name, k -> new long[2]);
+                t[0] += amount;
+                t[1]++;
+            });
+        }
+        List<SupplyTotal> result = new ArrayList<>(totals.size());
+        totals.forEach((name, t) -> result.add(new SupplyTotal(name, t[0], (int) t[1])));
+        return result;
+    }
+
+    private MedicalSupply put(MedicalSupply s) {
+        return locked(s.name(), () -> {
+            MedicalSupply current = supplies.get(s.name());
+            var next = s.withVersion(current == null ? createdVersion(s.name()) : current.version() + 1);
+            supplies.put(s.name(), next);
+            changed(current, next);
+            return next;
+        });
+    }
+
+    private void changed(MedicalSupply before, MedicalSupply after) {
+        changed(before, after, true);
+    }
+
+    /**
+     * Applies the side effects of a successful write from {@code before} to {@code after};
+     * a decrease counts as consumption if {@code consume}.
+     */
+    private void changed(MedicalSupply before, MedicalSupply after, boolean consume) {
+        catalogVersion.incrementAndGet();
+        reindex(before, after);
+        String name = after != null ? after.name() : before.name();
+        int delta = (after == null ? 0 : after.amount()) - (before == null ? 0 : before.amount());
+        if (delta != 0) {
+            Deque<StockMovement> ledger = movements.computeIfAbsent(name, n -> new ArrayDeque<>());
+            synchronized (ledger) {
+                ledger.addFirst(new StockMovement(name, delta, clock.instant()));
+                if (ledger.size() > MOVEMENT_HISTORY) ledger.removeLast();
+            }
+        }
+        if (after == null) {
+            consumption.remove(name); // removed, not consumed; a re-created supply starts afresh
+            stock.values().forEach(partition -> partition.remove(name));
+            var held = lots.remove(name);
+            if (held != null) {
+                synchronized (held) {
+                    held.values().forEach(l -> byExpiry.remove(keyOf(l)));
+                    held.clear();
+                }
+            }
+        } else if (delta < 0 && consume) {
+            LocalDate today = LocalDate.now(clock);
+            var days = consumption.computeIfAbsent(name, n -> new ConcurrentSkipListMap<>());
+            days.computeIfAbsent(today, d -> new LongAdder()).add(-delta);
+            days.headMap(today.minusDays(StockOutlook.WINDOW_DAYS), true).clear();
+        }
+    }
+
+    /**
+     * Moves the stock key from {@code before} to {@code after}, then re-adds the key of
+     * whatever is current, in case a low-stock read pruned it in between.
+     */
+    private void reindex(MedicalSupply before, MedicalSupply after) {
+        if (after != null) byStock.add(new StockKey(after.amount(), after.name()));
+        if (before != null && (after == null || before.amount() != after.amount())) {
+            byStock.remove(new StockKey(before.amount(), before.name()));
+        }
+        String name = after != null ? after.name() : before.name();
+        MedicalSupply current = supplies.get(name);
+        if (current != null) byStock.add(new StockKey(current.amount(), current.name()));
+    }
+}
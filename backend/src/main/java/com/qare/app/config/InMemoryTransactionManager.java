@@ -0,0 +1,41 @@
+package com.qare.app.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+/**
+ * Transaction manager for the in-memory engine. There is nothing to commit or roll back,
+ * since each {@link InMemorySupplyStore} write is atomic on its own. What remains is
+ * transaction synchronization, so after-commit hooks and transaction metrics behave as
+ * they do on H2, without borrowing a JDBC connection per call.
+ */
+@Component("transactionManager")
+@ConditionalOnProperty(name = "qare.storage.engine", havingValue = "memory")
+public class InMemoryTransactionManager extends AbstractPlatformTransactionManager {
+
+    public InMemoryTransactionManager(ObjectProvider<TransactionManagerCustomizers> customizers) {
+        customizers.ifAvailable(c -> c.customize(this));
+    }
+
+    @Override
+    protected Object doGetTransaction() {
+        return new Object();
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.qare.app.config;
+
+import com.qare.app.model.SupplyPage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every public {@code QareService} method ({@code qare.service}) and every
+ * {@code SupplyStore} call ({@code qare.db}), tagged by method and outcome, and records
+ * how many rows each DAO read returned ({@code qare.db.rows}). Percentiles and histograms
+ * are switched on for these names in {@code application.yml}.
+ */
+@Aspect
+@Component
+public class MetricsAspect {
+
+    private final MeterRegistry registry;
+
+    public MetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(public * com.qare.app.service.QareService.*(..))")
+    public Object timeService(ProceedingJoinPoint call) throws Throwable {
+        return time("qare.service", call);
+    }
+
+    @Around("execution(public * com.qare.app.config.SupplyStore+.*(..))")
+    public Object timeDb(ProceedingJoinPoint call) throws Throwable {
+        Object result = time("qare.db", call);
+        int rows = rowCount(result);
+        if (rows >= 0) {
+            DistributionSummary.builder("qare.db.rows")
+                    .description("Rows returned per DAO read")
+                    .tag("method", call.getSignature().getName())
+                    .register(registry)
+                    .record(rows);
+        }
+        return result;
+    }
+
+    private Object time(String name, ProceedingJoinPoint call) throws Throwable {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return call.proceed();
+        } catch (Throwable t) {
+            outcome = t.getClass().getSimpleName();
+            throw t;
+        } finally {
+            Timer.builder(name)
+                    .tag("method", call.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static int rowCount(Object result) {
+        if (result instanceof Collection<?> c) return c.size();
+        if (result instanceof SupplyPage p) return p.items().size();
+        if (result instanceof Optional<?> o) return o.isPresent() ? 1 : 0;
+        return -1; // not a read
+    }
+}
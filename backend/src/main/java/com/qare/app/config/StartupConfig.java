@@ -0,0 +1,23 @@
+package com.qare.app.config;
+
+import com.qare.app.service.CatalogSnapshot;
+import com.qare.app.service.QareService;
+import com.qare.app.service.WriteBehindBuffer;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Beans that are created at startup even with {@code spring.main.lazy-initialization}
+ * (the {@code startup} profile): write-behind replays its log, the snapshot writer
+ * schedules itself and the service warms the search index, and none of that may wait
+ * for the first request. Creating the service also runs the schema check in the store.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerAtStartup() {
+        return LazyInitializationExcludeFilter.forBeanTypes(WriteBehindBuffer.class, CatalogSnapshot.class, QareService.class);
+    }
+}
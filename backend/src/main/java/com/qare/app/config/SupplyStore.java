@@ -0,0 +1,173 @@
+package com.qare.app.config;
+
+import com.qare.app.model.LocationStock;
+import com.qare.app.model.Lot;
+import com.qare.app.model.LotPage;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.StockMovement;
+import com.qare.app.model.StockOutlook;
+import com.qare.app.model.SupplyPage;
+import com.qare.app.model.SupplyTotal;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
+/**
+ * Storage engine behind {@code QareService}, keyed by supply name. Picked with
+ * {@code qare.storage.engine}: {@code h2} ({@link DBConfig}, the default) or {@code memory}
+ * ({@link InMemorySupplyStore}). Every method validates its input and throws
+ * {@link IllegalArgumentException} for a malformed supply, limit or cursor.
+ * <p>
+ * Rows carry a version: 0 on first insert, one past the deleted row's on a re-insert (see
+ * {@link #create}), plus one on every change. The version of a supply passed in is ignored,
+ * except by {@link #updateAll}.
+ * <p>
+ * Every write that changes an amount also appends a {@link StockMovement} to a ledger,
+ * atomically with the write. Decreases other than deletions count as consumption and are
+ * added to per-day totals as they happen, so {@link #readOutlook} never scans the ledger.
+ * <p>
+ * Stock can also be held per location. Those rows are partitioned by location, so writes
+ * at different locations never contend, and they are not part of the ledger. Deleting a
+ * supply deletes its location rows.
+ * <p>
+ * Stock received in lots keeps each lot's expiry. Lots are part of the supply's amount:
+ * receipts add to both, decreases draw lots down first-expired-first-out (FEFO), skipping
+ * expired ones, and writes that set an absolute amount leave lots alone. Deleting a supply
+ * deletes its lots.
+ */
+public interface SupplyStore {
+
+    /** Expected version that matches any row, for unconditional writes. */
+    long ANY_VERSION = -1;
+
+    /**
+     * Inserts a new supply and returns it with its version; a name that already exists is a
+     * {@code DuplicateKeyException}. The version is 0 for a name never seen before, and one
+     * past the last version of a deleted supply of the same name, so no version of the new
+     * row ever matches one the old row had.
+     */
+    MedicalSupply create(MedicalSupply s);
+
+    /**
+     * Inserts or replaces every row; rows are validated before any is written. Returns the
+     * stored rows, with their versions, in input order.
+     */
+    List<MedicalSupply> upsertAll(List<MedicalSupply> rows);
+
+    /** Inserts or replaces one row and returns it as stored. */
+    MedicalSupply upsert(MedicalSupply s);
+
+    Optional<MedicalSupply> read(String name);
+
+    /** The supplies among {@code names} that exist, in no particular order. */
+    List<MedicalSupply> readByNames(Collection<String> names);
+
+    /** Up to {@code limit} supplies with names after {@code after} (exclusive), in name order. */
+    SupplyPage readPage(String after, int limit);
+
+    /**
+     * Supplies with {@code amount < below}, lowest stock first and then by name. The cursor
+     * is {@code "<amount>:<name>"} of the last row.
+     */
+    SupplyPage readLowStock(int below, String after, int limit);
+
+    /** Hands every supply to {@code sink} in name order without collecting them first. */
+    void forEach(Consumer<MedicalSupply> sink);
+
+    /**
+     * Moves on with every committed write to a supply and never with a read, so an equal
+     * value means an unchanged catalog. It starts from a random value, so two stores do not
+     * share one by chance, and it is kept by the writes rather than computed from the rows.
+     */
+    long catalogVersion();
+
+    /**
+     * Compare-and-set: replaces amount and unit if the row is at {@code expectedVersion}
+     * (or {@link #ANY_VERSION}) and returns it with its new version. Empty when the supply
+     * is missing or has moved on.
+     */
+    Optional<MedicalSupply> update(MedicalSupply s, long expectedVersion);
+
+    /**
+     * Writes amount, unit and version of every row exactly as given, in one batch, where
+     * the stored row is at an older version; rows are validated before any is written, and
+     * names that do not exist or have already moved past the given version are skipped.
+     * Returns rows updated. For replaying writes whose versions were already assigned: a
+     * write replayed twice never takes a row back.
+     */
+    int updateAll(List<MedicalSupply> rows);
+
+    /**
+     * Atomically adds {@code delta} to the amount, so concurrent callers never lose each
+     * other's changes. Empty when the supply is missing or the result would be negative;
+     * {@link IllegalArgumentException} when it would overflow. A decrease draws down the
+     * supply's unexpired lots, first to expire first.
+     */
+    Optional<MedicalSupply> addToAmount(String name, int delta);
+
+    /**
+     * Adds every delta, keyed by name, all or nothing: empty, with nothing written, when a
+     * supply is missing or any result would be negative. Returns the rows in name order.
+     * Decreases draw down lots as in {@link #addToAmount}.
+     */
+    Optional<List<MedicalSupply>> addToAmounts(SortedMap<String, Integer> deltas);
+
+    /**
+     * Adds {@code amount} to the supply and to its lot {@code lot}, created with
+     * {@code expiresOn} if new. Returns the supply; empty if it does not exist. Throws
+     * {@link IllegalArgumentException} if the lot is on hand with another expiry.
+     */
+    Optional<MedicalSupply> receiveLot(String name, String lot, LocalDate expiresOn, int amount);
+
+    /**
+     * Removes the lot and takes what is left of it off the supply's amount, recorded as
+     * removed rather than consumed. Returns the supply; empty if there is no such lot.
+     */
+    Optional<MedicalSupply> writeOffLot(String name, String lot);
+
+    /** The supply's lots, first to expire first. */
+    List<Lot> readLots(String name);
+
+    /**
+     * Lots of every supply expiring on or before {@code through}, and on or after
+     * {@code from} unless it is {@code null}, soonest first, read as a range scan on the
+     * expiry index, so the cost follows the lots returned rather than the lots held. Paged
+     * with the cursor of {@link LotPage}.
+     */
+    LotPage readExpiringLots(LocalDate from, LocalDate through, String after, int limit);
+
+    /** Deletes the supply if it is at {@code expectedVersion} (or {@link #ANY_VERSION}). */
+    boolean delete(String name, long expectedVersion);
+
+    /** The latest {@code limit} ledger entries for {@code name}, newest first. */
+    List<StockMovement> readMovements(String name, int limit);
+
+    /** Stock and consumption over the last week; empty if the supply does not exist. */
+    Optional<StockOutlook> readOutlook(String name);
+
+    /**
+     * Sets the supply's stock at {@code location}, creating the row at version 0 or bumping
+     * its version. Empty if the supply does not exist.
+     */
+    Optional<LocationStock> setLocationStock(String name, String location, int amount);
+
+    /**
+     * Atomically adds {@code delta} to the supply's stock at {@code location}; a location
+     * without a row counts as 0. Empty when the supply is missing or the result would be
+     * negative; {@link IllegalArgumentException} when it would not fit an {@code int}.
+     */
+    Optional<LocationStock> addToLocationStock(String name, String location, int delta);
+
+    /** The supply's rows at every location, in location order. */
+    List<LocationStock> readLocationStock(String name);
+
+    /**
+     * Stock per supply summed across locations, in name order, for supplies held at one
+     * location at least. Each location is aggregated on its own and the partials merged.
+     */
+    List<SupplyTotal> readTotals();
+}
@@ -0,0 +1,61 @@
+package com.qare.app.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each database transaction stays open, from begin until commit or
+ * rollback completes, as {@code qare.tx} tagged by transaction name and outcome. Spring
+ * Boot attaches listener beans like this one to the auto-configured transaction manager.
+ */
+@Component
+public class TransactionMetrics implements TransactionExecutionListener {
+
+    private final MeterRegistry registry;
+    private final Map<TransactionExecution, Long> started = new ConcurrentHashMap<>();
+
+    public TransactionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void afterBegin(TransactionExecution tx, @Nullable Throwable beginFailure) {
+        if (beginFailure == null) started.put(tx, System.nanoTime());
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution tx, @Nullable Throwable commitFailure) {
+        record(tx, commitFailure == null ? "committed" : "commit_failed");
+    }
+
+    @Override
+    public void afterRollback(TransactionExecution tx, @Nullable Throwable rollbackFailure) {
+        record(tx, "rolled_back");
+    }
+
+    private void record(TransactionExecution tx, String outcome) {
+        Long start = started.remove(tx);
+        if (start == null) return;
+        Timer.builder("qare.tx")
+                .tag("name", shortName(tx.getTransactionName()))
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /** {@code com.qare.app.service.QareService.update} becomes {@code QareService.update}. */
+    private static String shortName(String name) {
+        if (name == null || name.isEmpty()) return "unnamed";
+        int method = name.lastIndexOf('.');
+        int type = method > 0 ? name.lastIndexOf('.', method - 1) : -1;
+        return name.substring(type + 1);
+    }
+}
@@ -0,0 +1,55 @@
+package com.qare.app.controller;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.qare.app.model.MedicalSupply;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/** Line formats supported by {@code GET /api/supplies/export}. */
+enum ExportFormat {
+
+    NDJSON(MediaType.APPLICATION_NDJSON, null) {
+        @Override void writeRow(Writer out, ObjectWriter json, MedicalSupply s) throws IOException {
+            out.write(json.writeValueAsString(s));
+            out.write('\n');
+        }
+    },
+
+    CSV(new MediaType("text", "csv"), "name,amount,unitName") {
+        @Override void writeRow(Writer out, ObjectWriter json, MedicalSupply s) throws IOException {
+            out.write(csv(s.name()));
+            out.write(',');
+            out.write(Integer.toString(s.amount()));
+            out.write(',');
+            out.write(csv(s.unitName()));
+            out.write('\n');
+        }
+    };
+
+    final MediaType mediaType;
+    final String header;
+
+    ExportFormat(MediaType mediaType, String header) {
+        this.mediaType = mediaType;
+        this.header = header;
+    }
+
+    abstract void writeRow(Writer out, ObjectWriter json, MedicalSupply s) throws IOException;
+
+    static ExportFormat of(String name) {
+        for (ExportFormat f : values()) {
+            if (f.name().equalsIgnoreCase(name)) return f;
+        }
+        throw new IllegalArgumentException("format must be one of ndjson, csv");
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
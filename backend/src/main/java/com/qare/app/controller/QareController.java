@@ -1,23 +1,83 @@
 package com.qare.app.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.BulkResult;
+import com.qare.app.model.InventoryStats;
+import com.qare.app.model.LocationAmount;
+import com.qare.app.model.LocationStock;
+import com.qare.app.model.Lot;
+import com.qare.app.model.LotPage;
+import com.qare.app.model.LotReceipt;
 import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.MultiGetRequest;
+import com.qare.app.model.MultiGetResult;
+import com.qare.app.model.StockAdjustments;
+import com.qare.app.model.StockDelta;
+import com.qare.app.model.StockMovement;
+import com.qare.app.model.StockOutlook;
+import com.qare.app.model.SupplyLocations;
+import com.qare.app.model.SupplyPage;
+import com.qare.app.model.SupplyTotal;
 import com.qare.app.service.QareService;
+import com.qare.app.service.SingleFlight;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/supplies")
 public class QareController {
 
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    static final int BULK_CHUNK_SIZE = 1000;
+
     private final QareService service;
+    private final ObjectWriter json;
+    private final ObjectWriter pageJson;
+    private final ObjectReader bulkReader;
+    private final Validator validator;
+    private final SingleFlight<PageKey, byte[]> pageBodies = new SingleFlight<>();
 
-    public QareController(QareService service) {
+    /** A page as of one data version; identical keys render identical bodies. */
+    private record PageKey(String etag, String after, int limit) {}
+
+    public QareController(QareService service, ObjectMapper objectMapper, Validator validator) {
         this.service = service;
+        this.json = objectMapper.writerFor(MedicalSupply.class);
+        this.pageJson = objectMapper.writerFor(SupplyPage.class);
+        this.bulkReader = objectMapper.readerFor(MedicalSupply.class);
+        this.validator = validator;
     }
 
 
@@ -28,35 +88,304 @@ public class QareController {
         URI location = uri.path("/api/supplies/{name}")
                 .buildAndExpand(created.name())
                 .toUri();
-        return ResponseEntity.created(location).body(created); // 201
+        return ResponseEntity.created(location).eTag(etagOf(created)).body(created); // 201
+    }
+
+    /**
+     * Upserts a JSON array or NDJSON stream of supplies. The body is read incrementally and
+     * written in batched chunks of {@value #BULK_CHUNK_SIZE}, one transaction per chunk.
+     */
+    @PostMapping(value = "/_bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkResult> bulk(InputStream body) throws IOException {
+        List<BulkResult.Failure> failures = new ArrayList<>();
+        List<MedicalSupply> chunk = new ArrayList<>(BULK_CHUNK_SIZE);
+        int[] chunkIndex = new int[BULK_CHUNK_SIZE];
+        int received = 0;
+        boolean malformed = false;
+
+        try (MappingIterator<MedicalSupply> rows = bulkReader.readValues(body)) {
+            while (rows.hasNextValue()) {
+                MedicalSupply s = rows.nextValue();
+                int index = received++;
+                var violations = validator.validate(s);
+                if (!violations.isEmpty()) {
+                    var v = violations.iterator().next();
+                    failures.add(new BulkResult.Failure(index, s.name(), v.getPropertyPath() + " " + v.getMessage()));
+                    continue;
+                }
+                chunkIndex[chunk.size()] = index;
+                chunk.add(s);
+                if (chunk.size() == BULK_CHUNK_SIZE) flushChunk(chunk, chunkIndex, failures);
+            }
+        } catch (JsonProcessingException e) {
+            failures.add(new BulkResult.Failure(received, null, "malformed row: " + e.getOriginalMessage()));
+            malformed = true;
+        }
+        flushChunk(chunk, chunkIndex, failures);
+
+        failures.sort(Comparator.comparingInt(BulkResult.Failure::index));
+        int rejected = malformed ? failures.size() - 1 : failures.size(); // the malformed row was never received
+        var result = new BulkResult(received, received - rejected, failures);
+        return malformed ? ResponseEntity.badRequest().body(result)   // 400, earlier chunks are kept
+                : ResponseEntity.ok(result);                          // 200
+    }
+
+    private void flushChunk(List<MedicalSupply> chunk, int[] chunkIndex, List<BulkResult.Failure> failures) {
+        if (chunk.isEmpty()) return;
+        for (var f : service.upsertAll(List.copyOf(chunk))) {
+            failures.add(new BulkResult.Failure(chunkIndex[f.index()], f.name(), f.error()));
+        }
+        chunk.clear();
+    }
+
+    /** Fetches up to {@value MultiGetRequest#MAX_NAMES} supplies by name in one call. */
+    @PostMapping("/_mget")
+    public MultiGetResult readMany(@RequestBody @Valid MultiGetRequest body) {
+        return service.readMany(body.names()); // 200, missing names listed, never 404
     }
 
+    /**
+     * Requests for the same page at the same data version that arrive together share one
+     * read and one serialized body.
+     */
     @GetMapping
-    public List<MedicalSupply> readAll() {
-        return service.readAll(); // 200
+    public ResponseEntity<byte[]> readAll(@RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) @Min(1) @Max(MAX_PAGE_SIZE) int limit,
+                                          @RequestParam(required = false) String after,
+                                          WebRequest request) {
+        String etag = service.dataVersion();
+        if (request.checkNotModified(etag)) return notModified(etag); // 304, no query
+        byte[] body = pageBodies.run(new PageKey(etag, after, limit), () -> render(service.readPage(after, limit)));
+        return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(body); // 200
+    }
+
+    private byte[] render(SupplyPage page) {
+        try {
+            return pageJson.writeValueAsBytes(page);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @GetMapping("/low-stock")
+    public SupplyPage readLowStock(@RequestParam @Min(0) int below,
+                                   @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) @Min(1) @Max(MAX_PAGE_SIZE) int limit,
+                                   @RequestParam(required = false) String after) {
+        return service.readLowStock(below, after, limit); // 200
     }
 
+    /** Lots of every supply that expired or expire within {@code days}, soonest first; an index range scan. */
+    @GetMapping("/expiring")
+    public LotPage readExpiring(@RequestParam(defaultValue = "30") @Min(0) @Max(3650) int days,
+                                @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) @Min(1) @Max(MAX_PAGE_SIZE) int limit,
+                                @RequestParam(required = false) String after) {
+        return service.expiring(LocalDate.now().plusDays(days), after, limit); // 200, 400 on a malformed cursor
+    }
+
+    /** Every supply held at some location, with its stock summed across locations, in name order. */
+    @GetMapping("/_totals")
+    public List<SupplyTotal> totals() {
+        return service.totals(); // 200
+    }
+
+    /** Supplies, units per unit name and status colour counts, without reading the table. */
+    @GetMapping("/_stats")
+    public InventoryStats stats() {
+        return service.stats(); // 200
+    }
+
+    /** Server-Sent Events feed of committed creates, updates and deletes. */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return service.subscribe(); // 200, stays open
+    }
+
+    @GetMapping("/search")
+    public List<String> search(@RequestParam String q,
+                               @RequestParam(defaultValue = "10") @Min(1) @Max(100) int limit) {
+        return service.search(q, limit); // 200
+    }
+
+    /**
+     * Streams the whole catalog as NDJSON or CSV. Rows are written as the JDBC cursor
+     * advances, so memory stays flat and the first row goes out immediately.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        ExportFormat f;
+        try {
+            f = ExportFormat.of(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build(); // 400
+        }
+        StreamingResponseBody body = out -> {
+            var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (f.header != null) {
+                writer.write(f.header);
+                writer.write('\n');
+                writer.flush();
+            }
+            try {
+                service.export(new Consumer<>() {
+                    boolean first = true;
+                    @Override public void accept(MedicalSupply s) {
+                        try {
+                            f.writeRow(writer, json, s);
+                            if (first) { writer.flush(); first = false; } // first byte out early
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause(); // client went away
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(f.mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"supplies." + f.name().toLowerCase() + "\"")
+                .body(body); // 200
+    }
+
+    /** The ETag is the row version, so it changes exactly when this supply does. */
     @GetMapping("/{name}")
-    public ResponseEntity<MedicalSupply> read(@PathVariable String name) {
+    public ResponseEntity<MedicalSupply> read(@PathVariable String name, WebRequest request) {
         return service.read(name)
-                .map(ResponseEntity::ok)         // 200
+                .map(s -> {
+                    String etag = etagOf(s);
+                    if (request.checkNotModified(etag)) return QareController.<MedicalSupply>notModified(etag); // 304
+                    return ResponseEntity.ok().eTag(etag).body(s); // 200
+                })
                 .orElse(ResponseEntity.notFound().build()); // 404
     }
 
+    /** Append-only stock ledger of one supply, newest first; empty for unknown names. */
+    @GetMapping("/{name}/movements")
+    public List<StockMovement> movements(@PathVariable String name,
+                                         @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) @Min(1) @Max(MAX_PAGE_SIZE) int limit) {
+        return service.movements(name, limit); // 200
+    }
+
+    /** Average daily consumption over the last week and how many days the stock lasts at that rate. */
+    @GetMapping("/{name}/days-of-stock")
+    public ResponseEntity<StockOutlook> daysOfStock(@PathVariable String name) {
+        return ResponseEntity.of(service.outlook(name)); // 200 or 404
+    }
+
+    /** Stock at each location and the total across them. */
+    @GetMapping("/{name}/locations")
+    public ResponseEntity<SupplyLocations> locations(@PathVariable String name) {
+        return ResponseEntity.of(service.locations(name)); // 200 or 404
+    }
+
+    /** Writes only this location's row, so warehouses never wait on each other. */
+    @PutMapping("/{name}/locations/{location}")
+    public ResponseEntity<LocationStock> setLocationStock(@PathVariable String name, @PathVariable String location,
+                                                          @RequestBody @Valid LocationAmount body) {
+        return ResponseEntity.of(service.setLocationStock(name, location, body.amount())); // 200 or 404
+    }
+
+    @PatchMapping("/{name}/locations/{location}/amount")
+    public ResponseEntity<LocationStock> adjustLocationStock(@PathVariable String name, @PathVariable String location,
+                                                             @RequestBody @Valid StockDelta body) {
+        return ResponseEntity.of(service.adjustLocationStock(name, location, body.delta())); // 200, 409 if it would go negative, 404
+    }
+
+    @GetMapping("/{name}/lots")
+    public ResponseEntity<List<Lot>> lots(@PathVariable String name) {
+        return ResponseEntity.of(service.lots(name)); // 200 first to expire first, or 404
+    }
+
+    @PostMapping("/{name}/lots")
+    public ResponseEntity<MedicalSupply> receiveLot(@PathVariable String name, @RequestBody @Valid LotReceipt body) {
+        return service.receiveLot(name, body)
+                .map(s -> ResponseEntity.ok().eTag(etagOf(s)).body(s)) // 200, 400 if the lot has another expiry
+                .orElse(ResponseEntity.notFound().build());            // 404
+    }
+
+    @DeleteMapping("/{name}/lots/{lot}")
+    public ResponseEntity<MedicalSupply> writeOffLot(@PathVariable String name, @PathVariable String lot) {
+        return service.writeOffLot(name, lot)
+                .map(s -> ResponseEntity.ok().eTag(etagOf(s)).body(s)) // 200
+                .orElse(ResponseEntity.notFound().build());            // 404
+    }
+
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    /** Requires {@code If-Match} with the ETag last read; a stale one is a 412, no change. */
     @PutMapping("/{name}")
     public ResponseEntity<MedicalSupply> update(@PathVariable String name,
-                                         @RequestBody @Valid MedicalSupply body) {
-
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                @RequestBody @Valid MedicalSupply body) {
+        if (ifMatch == null) return preconditionRequired();
         MedicalSupply toUpdate = new MedicalSupply(name, body.amount(), body.unitName());
-        boolean updated = service.update(toUpdate);
-        return updated ? ResponseEntity.ok(toUpdate)           // 200
-                : ResponseEntity.notFound().build();    // 404
+        return service.update(toUpdate, expectedVersion(ifMatch))
+                .map(s -> ResponseEntity.ok().eTag(etagOf(s)).body(s)) // 200, 412 if the version moved on
+                .orElse(ResponseEntity.notFound().build());            // 404
+    }
+
+    /** Deltas commute, so no {@code If-Match} is needed; the response carries the new ETag. */
+    @PatchMapping("/{name}/amount")
+    public ResponseEntity<MedicalSupply> adjustAmount(@PathVariable String name,
+                                                      @RequestBody @Valid StockDelta body) {
+        return service.adjustAmount(name, body.delta())
+                .map(s -> ResponseEntity.ok().eTag(etagOf(s)).body(s)) // 200, 409 if stock would go negative
+                .orElse(ResponseEntity.notFound().build());            // 404
+    }
+
+    /** Applies a kit of stock changes together: every supply is updated or none is. */
+    @PostMapping("/_adjust")
+    public ResponseEntity<List<MedicalSupply>> adjustAmounts(@RequestBody @Valid StockAdjustments body) {
+        return service.adjustAmounts(body.items())
+                .map(ResponseEntity::ok)                   // 200 in name order, 409 if any would go negative
+                .orElse(ResponseEntity.notFound().build()); // 404 if any supply is missing
     }
 
     @DeleteMapping("/{name}")
-    public ResponseEntity<Void> delete(@PathVariable String name) {
-        boolean deleted = service.delete(name);
-        return deleted ? ResponseEntity.noContent().build()    // 204
+    public ResponseEntity<Void> delete(@PathVariable String name,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (ifMatch == null) return preconditionRequired();
+        boolean deleted = service.delete(name, expectedVersion(ifMatch));
+        return deleted ? ResponseEntity.noContent().build()    // 204, 412 if the version moved on
                 : ResponseEntity.notFound().build();    // 404
     }
+
+    private static String etagOf(MedicalSupply s) {
+        return "\"" + s.version() + "\"";
+    }
+
+    /**
+     * Version named by an {@code If-Match} value: {@code *} matches any, and a weak ETag or
+     * one that is not ours matches none.
+     */
+    static long expectedVersion(String ifMatch) {
+        String tag = ifMatch.strip();
+        if (tag.equals("*")) return SupplyStore.ANY_VERSION;
+        if (tag.startsWith("W/")) return Long.MIN_VALUE; // If-Match compares strongly
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) tag = tag.substring(1, tag.length() - 1);
+        try {
+            long version = Long.parseLong(tag);
+            return version >= 0 ? version : Long.MIN_VALUE;
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static <T> ResponseEntity<T> preconditionRequired() {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).build(); // 428
+    }
+
+    @ExceptionHandler(CannotGetJdbcConnectionException.class)
+    public ResponseEntity<String> overloaded(CannotGetJdbcConnectionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Database busy, retry shortly"); // 503
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage()); // 400
+    }
 }
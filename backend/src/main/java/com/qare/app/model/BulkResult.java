@@ -0,0 +1,16 @@
+package com.qare.app.model;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many rows were read, how many were written and which
+ * rows were rejected. Rows not listed in {@code failures} were committed.
+ */
+public record BulkResult(
+        int received,
+        int upserted,
+        List<Failure> failures
+) {
+    /** A rejected row; {@code index} is its zero-based position in the request body. */
+    public record Failure(int index, String name, String error) {}
+}
@@ -0,0 +1,21 @@
+package com.qare.app.model;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Catalog-wide totals: supplies in the catalog, supplies and units per unit name, and
+ * supplies per status colour. {@code reconciledAt} is when the counts were last checked
+ * against the table, {@code null} until the first check.
+ */
+public record InventoryStats(
+        long supplies,
+        Map<String, Unit> units,
+        Status status,
+        Instant reconciledAt
+) {
+    public record Unit(long supplies, long amount) {}
+
+    /** Supplies with amount below 5, 5 to 10, and above 10. */
+    public record Status(long red, long orange, long green) {}
+}
@@ -0,0 +1,9 @@
+package com.qare.app.model;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+/** New stock level for a supply at one location. */
+public record LocationAmount(
+        @NotNull @Min(0) Integer amount
+) {}
@@ -0,0 +1,13 @@
+package com.qare.app.model;
+
+/**
+ * Stock of one supply held at one location (warehouse). Each location's stock is its own
+ * row with its own {@code version}, so writes at different locations never touch the same
+ * row; the supply's own {@code amount} is independent of it.
+ */
+public record LocationStock(
+        String name,
+        String location,
+        int amount,
+        long version
+) {}
@@ -0,0 +1,14 @@
+package com.qare.app.model;
+
+import java.time.LocalDate;
+
+/**
+ * A received batch of a supply and the date it expires. What is left of a lot is part of
+ * the supply's own {@code amount}; stock received without a lot is simply not in any.
+ */
+public record Lot(
+        String name,
+        String lot,
+        LocalDate expiresOn,
+        int amount
+) {}
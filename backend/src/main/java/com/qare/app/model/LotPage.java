@@ -0,0 +1,38 @@
+package com.qare.app.model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * One keyset page of lots, soonest to expire first. {@code nextCursor} is
+ * {@code "<expiresOn>:<lot>:<name>"} of the last lot, to pass as {@code after} for the
+ * following page, or {@code null} on the last page. Lot ids never contain {@code ':'}.
+ */
+public record LotPage(
+        List<Lot> items,
+        String nextCursor
+) {
+    /** Trims a limit+1 fetch to {@code limit} lots and derives the next cursor if one was cut. */
+    public static LotPage of(List<Lot> rows, int limit) {
+        if (rows.size() <= limit) return new LotPage(rows, null);
+        var items = rows.subList(0, limit);
+        var last = items.get(limit - 1);
+        return new LotPage(items, last.expiresOn() + ":" + last.lot() + ":" + last.name());
+    }
+
+    /** The position a cursor names, in {@code (expiresOn, lot, name)} order. */
+    public record Cursor(LocalDate expiresOn, String lot, String name) {
+        public static Cursor parse(String cursor) {
+            var parts = cursor.split(":", 3);
+            if (parts.length == 3) {
+                try {
+                    return new Cursor(LocalDate.parse(parts[0]), parts[1], parts[2]);
+                } catch (DateTimeParseException e) {
+                    // reported below
+                }
+            }
+            throw new IllegalArgumentException("malformed expiry cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.qare.app.model;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDate;
+
+/** Stock received into one lot; a lot already on hand keeps its expiry and gains the amount. */
+public record LotReceipt(
+        @NotNull @Size(min = 1, max = 64) @Pattern(regexp = "[A-Za-z0-9._-]+") String lot,
+        @NotNull LocalDate expiresOn,
+        @NotNull @Positive Integer amount
+) {}
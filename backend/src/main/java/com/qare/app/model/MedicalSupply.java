@@ -2,9 +2,23 @@ package com.qare.app.model;
 
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 
+/**
+ * A supply and its row {@code version}, which starts at 0 and goes up by one on every
+ * change. The version is served as the ETag and is ignored in request bodies.
+ */
 public record MedicalSupply(
-        @NotBlank String name,
+        @NotBlank @Size(max = 255) String name,
         @Min(0) int amount,
-        @NotBlank String unitName
-) {}
+        @NotBlank @Size(max = 255) String unitName,
+        long version
+) {
+    public MedicalSupply(String name, int amount, String unitName) {
+        this(name, amount, unitName, 0);
+    }
+
+    public MedicalSupply withVersion(long version) {
+        return new MedicalSupply(name, amount, unitName, version);
+    }
+}
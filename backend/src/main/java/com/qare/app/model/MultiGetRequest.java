@@ -0,0 +1,14 @@
+package com.qare.app.model;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/** Names to fetch in one call; at most {@value #MAX_NAMES}. */
+public record MultiGetRequest(
+        @NotNull @Size(max = MultiGetRequest.MAX_NAMES) List<@NotBlank String> names
+) {
+    public static final int MAX_NAMES = 1000;
+}
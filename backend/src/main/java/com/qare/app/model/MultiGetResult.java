@@ -0,0 +1,12 @@
+package com.qare.app.model;
+
+import java.util.List;
+
+/**
+ * Outcome of a multi-get: the supplies that exist, in request order, and the requested
+ * names that do not. Each name appears once even if it was requested twice.
+ */
+public record MultiGetResult(
+        List<MedicalSupply> found,
+        List<String> missing
+) {}
@@ -0,0 +1,20 @@
+package com.qare.app.model;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Signed stock changes applied together, all or nothing; at most {@value #MAX_ITEMS}. A
+ * name listed twice gets the sum of its deltas.
+ */
+public record StockAdjustments(
+        @NotNull @Size(min = 1, max = StockAdjustments.MAX_ITEMS) List<@NotNull @Valid Item> items
+) {
+    public static final int MAX_ITEMS = 1000;
+
+    public record Item(@NotBlank String name, @NotNull Integer delta) {}
+}
@@ -0,0 +1,8 @@
+package com.qare.app.model;
+
+import jakarta.validation.constraints.NotNull;
+
+/** Signed change to apply to a supply's amount: negative consumes, positive restocks. */
+public record StockDelta(
+        @NotNull Integer delta
+) {}
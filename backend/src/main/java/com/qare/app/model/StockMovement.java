@@ -0,0 +1,13 @@
+package com.qare.app.model;
+
+import java.time.Instant;
+
+/**
+ * One entry of the append-only stock ledger: the signed change a write made to a supply's
+ * amount. A deletion is recorded as removing whatever stock was left.
+ */
+public record StockMovement(
+        String name,
+        int delta,
+        Instant at
+) {}
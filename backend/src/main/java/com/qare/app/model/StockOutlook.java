@@ -0,0 +1,23 @@
+package com.qare.app.model;
+
+/**
+ * Current stock next to recent consumption, from the per-day aggregates the ledger keeps.
+ * {@code dailyConsumption} is the average over the last {@value #WINDOW_DAYS} days,
+ * today included; {@code daysRemaining} is {@code null} while nothing is being consumed.
+ */
+public record StockOutlook(
+        String name,
+        int amount,
+        long consumedToday,
+        long consumedLastWeek,
+        double dailyConsumption,
+        Double daysRemaining
+) {
+    public static final int WINDOW_DAYS = 7;
+
+    public static StockOutlook of(String name, int amount, long consumedToday, long consumedLastWeek) {
+        double daily = consumedLastWeek / (double) WINDOW_DAYS;
+        return new StockOutlook(name, amount, consumedToday, consumedLastWeek, daily,
+                daily > 0 ? amount / daily : null);
+    }
+}
@@ -0,0 +1,14 @@
+package com.qare.app.model;
+
+/**
+ * A committed change to one supply. {@code supply} is the state after the change and is
+ * {@code null} for deletions. Bulk upserts are reported as {@code UPDATED}, including
+ * names that did not exist before.
+ */
+public record SupplyEvent(
+        Type type,
+        String name,
+        MedicalSupply supply
+) {
+    public enum Type { CREATED, UPDATED, DELETED }
+}
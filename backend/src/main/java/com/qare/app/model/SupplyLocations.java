@@ -0,0 +1,14 @@
+package com.qare.app.model;
+
+import java.util.List;
+
+/** A supply's stock at each location, in location order, and the total across them. */
+public record SupplyLocations(
+        String name,
+        long total,
+        List<LocationStock> locations
+) {
+    public static SupplyLocations of(String name, List<LocationStock> locations) {
+        return new SupplyLocations(name, locations.stream().mapToLong(LocationStock::amount).sum(), locations);
+    }
+}
@@ -0,0 +1,12 @@
+package com.qare.app.model;
+
+import java.util.List;
+
+/**
+ * One keyset page of supplies ordered by name. {@code nextCursor} is the name to pass
+ * as {@code after} for the following page, or {@code null} on the last page.
+ */
+public record SupplyPage(
+        List<MedicalSupply> items,
+        String nextCursor
+) {}
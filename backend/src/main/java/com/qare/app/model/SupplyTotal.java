@@ -0,0 +1,8 @@
+package com.qare.app.model;
+
+/** A supply's stock summed across the {@code locations} that hold a row for it. */
+public record SupplyTotal(
+        String name,
+        long total,
+        int locations
+) {}
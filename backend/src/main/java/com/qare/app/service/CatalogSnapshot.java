@@ -0,0 +1,236 @@
+package com.qare.app.service;
+
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.MedicalSupply;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary copy of the catalog ({@code qare.snapshot.enabled}), so a restart can warm the
+ * search index and the supply cache from one memory-mapped file instead of a full read of
+ * the table. It is rewritten every {@code qare.snapshot.interval} and on shutdown, and at
+ * startup it is only used if it carries the store's current {@link SupplyStore#catalogVersion()},
+ * which is one small read rather than a pass over the table.
+ * <p>
+ * Layout, big-endian: magic, format, catalog version, then per row a flags byte (bit 0: was
+ * cached), name, amount, unit and version, then the row count and a CRC32 of everything
+ * before it. Strings are a u16 byte length followed by UTF-8.
+ */
+@Component
+public class CatalogSnapshot {
+
+    static final int MAGIC = 0x51534E50; // "QSNP"
+    static final int FORMAT = 2; // 1 carried a digest of the rows
+    private static final int HEADER = 4 + 4 + 8;
+    private static final int TRAILER = 4 + 4;
+    private static final byte HOT = 1;
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshot.class);
+
+    /** Receives restored rows; {@code hot} rows were in the cache when the snapshot was taken. */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(MedicalSupply s, boolean hot);
+    }
+
+    private final SupplyStore store;
+    private final SupplyCache cache;
+    private final WriteBehindBuffer writes;
+    private final TransactionOperations tx;
+    private final Path file;
+
+    private ScheduledExecutorService writer;
+
+    @Autowired
+    public CatalogSnapshot(SupplyStore store, SupplyCache cache, WriteBehindBuffer writes,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${qare.snapshot.enabled:false}") boolean enabled,
+                           @Value("${qare.snapshot.file:./qare-snapshot.bin}") Path file,
+                           @Value("${qare.snapshot.interval:5m}") Duration interval) {
+        this(store, cache, writes, consistentRead(transactionManager), enabled ? file : null);
+        if (enabled) {
+            writer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("catalog-snapshot").daemon().factory());
+            long millis = interval.toMillis();
+            writer.scheduleWithFixedDelay(this::writeQuietly, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Without a scheduler: snapshots are taken on {@link #write} only. {@code null} file disables. */
+    CatalogSnapshot(SupplyStore store, SupplyCache cache, WriteBehindBuffer writes, TransactionOperations tx, Path file) {
+        this.store = store;
+        this.cache = cache;
+        this.writes = writes;
+        this.tx = tx;
+        this.file = file;
+    }
+
+    /** Fingerprint and rows must come from the same snapshot of the table. */
+    static TransactionOperations consistentRead(PlatformTransactionManager transactionManager) {
+        var template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    public boolean enabled() {
+        return file != null;
+    }
+
+    /**
+     * Hands every row of the snapshot to {@code sink} if the file is intact and matches the
+     * store. Returns false, without calling {@code sink}, when there is nothing usable and
+     * the caller has to read the store instead.
+     */
+    public boolean restore(Sink sink) {
+        if (file == null || !Files.isRegularFile(file)) return false;
+        long started = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER + TRAILER || ch.size() > Integer.MAX_VALUE) return rejected("bad size");
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            int end = buf.limit() - TRAILER;
+            var crc = new CRC32();
+            crc.update(buf.duplicate().limit(end + 4));
+            if ((int) crc.getValue() != buf.getInt(end + 4)) return rejected("checksum mismatch");
+            if (buf.getInt() != MAGIC || buf.getInt() != FORMAT) return rejected("unknown format");
+            if (buf.getLong() != store.catalogVersion()) return rejected("catalog changed since it was taken");
+            int count = buf.getInt(end);
+            for (int i = 0; i < count; i++) {
+                boolean hot = (buf.get() & HOT) != 0;
+                String name = readString(buf);
+                int amount = buf.getInt();
+                String unit = readString(buf);
+                sink.accept(new MedicalSupply(name, amount, unit, buf.getLong()), hot);
+            }
+            log.info("Restored {} supplies from snapshot {} in {} ms", count, file,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            return true;
+        } catch (IOException | BufferUnderflowException e) {
+            return rejected(e.toString());
+        }
+    }
+
+    private boolean rejected(String reason) {
+        log.info("Ignoring snapshot {}: {}", file, reason);
+        return false;
+    }
+
+    /**
+     * Writes the store's current rows to a temporary file and moves it over the previous
+     * snapshot, so a crash mid-write leaves the old one intact. A no-op when disabled.
+     */
+    public void write() {
+        if (file == null) return;
+        writes.drain(); // buffered writes would make the snapshot stale on arrival
+        Set<String> hot = cache.hotNames();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                var crc = new CRC32();
+                var out = new DataOutputStream(new CheckedOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16), crc));
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                int count = tx.execute(status -> {
+                    int[] rows = {0};
+                    try {
+                        out.writeLong(store.catalogVersion());
+                        store.forEach(s -> {
+                            writeRow(out, s, hot.contains(s.name()));
+                            rows[0]++;
+                        });
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return rows[0];
+                });
+                out.writeInt(count);
+                out.writeInt((int) crc.getValue());
+                out.flush();
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write snapshot " + file, e);
+        } catch (UncheckedIOException e) {
+            throw new UncheckedIOException("Could not write snapshot " + file, e.getCause());
+        }
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (RuntimeException e) {
+            log.warn("Snapshot failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeQuietly();
+    }
+
+    private static void writeRow(DataOutputStream out, MedicalSupply s, boolean hot) {
+        try {
+            out.writeByte(hot ? HOT : 0);
+            writeString(out, s.name());
+            out.writeInt(s.amount());
+            writeString(out, s.unitName());
+            out.writeLong(s.version());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IOException("value longer than 65535 bytes: " + value.substring(0, 32));
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buf.getShort())];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
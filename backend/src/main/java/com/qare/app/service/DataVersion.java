@@ -0,0 +1,26 @@
+package com.qare.app.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic version of the supply data, bumped after every committed write. The tag is
+ * prefixed with a per-process id so a restart never re-issues a tag for different data.
+ */
+@Component
+public class DataVersion {
+
+    private final String bootId = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final AtomicLong counter = new AtomicLong();
+
+    public void bump() {
+        counter.incrementAndGet();
+    }
+
+    /** Opaque tag for the current version, suitable as an entity tag. */
+    public String tag() {
+        return bootId + "-" + counter.get();
+    }
+}
@@ -0,0 +1,24 @@
+package com.qare.app.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/** Thrown when a stock decrement, or any of a set applied together, would take an amount below zero. */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class InsufficientStockException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public InsufficientStockException(String name, int delta) {
+        super("Insufficient stock for '" + name + "' to apply delta " + delta);
+    }
+
+    /** {@code shortfalls} maps each supply that is short to the delta it could not take. */
+    public InsufficientStockException(Map<String, Integer> shortfalls) {
+        super("Insufficient stock for " + shortfalls.entrySet().stream()
+                .map(e -> "'" + e.getKey() + "' (delta " + e.getValue() + ")")
+                .collect(Collectors.joining(", ")));
+    }
+}
@@ -0,0 +1,121 @@
+package com.qare.app.service;
+
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.Lot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Every {@code qare.lots.sweep-interval}, finds the lots that have expired or expire within
+ * {@code qare.lots.warning-days}, pages through them off the expiry index and logs them.
+ * A sweep reads from the day of the previous one up to the warning date, so it costs what
+ * is about to expire, not what is held, and lots that expired earlier, which wait to be
+ * written off, are reported once rather than on every sweep. The first sweep looks back as
+ * far as it looks ahead. The counts are published as {@code qare.lots.expired} and
+ * {@code qare.lots.expiring} for alerting.
+ */
+@Component
+public class LotExpirySweeper {
+
+    /** Lots read per query. */
+    static final int PAGE_SIZE = 1000;
+    /** Lots named in the log per sweep. */
+    static final int LOGGED = 10;
+    private static final Logger log = LoggerFactory.getLogger(LotExpirySweeper.class);
+
+    /**
+     * One sweep's findings over {@code from..through}; {@code expired} counts the lots that
+     * expired since {@code from}, {@code soonest} are the first lots to expire, at most
+     * {@value #LOGGED}.
+     */
+    public record Sweep(long expired, long expiring, LocalDate from, LocalDate through, List<Lot> soonest) {}
+
+    private final SupplyStore store;
+    private final Clock clock;
+    private final int warningDays;
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong expiring = new AtomicLong();
+    private volatile LocalDate sweptOn; // day of the last completed sweep
+
+    private ScheduledExecutorService sweeper;
+
+    @Autowired
+    public LotExpirySweeper(SupplyStore store, MeterRegistry registry,
+                            @Value("${qare.lots.sweep-interval:1h}") Duration interval,
+                            @Value("${qare.lots.warning-days:30}") int warningDays) {
+        this(store, registry, Clock.systemDefaultZone(), warningDays);
+        if (interval.isPositive()) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("lot-sweep").daemon().factory());
+            long millis = interval.toMillis();
+            sweeper.scheduleWithFixedDelay(this::sweepQuietly, 0, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Without a scheduler: lots are only swept on {@link #sweep}. */
+    LotExpirySweeper(SupplyStore store, MeterRegistry registry, Clock clock, int warningDays) {
+        if (warningDays < 0) throw new IllegalArgumentException("qare.lots.warning-days must not be negative");
+        this.store = store;
+        this.clock = clock;
+        this.warningDays = warningDays;
+        Gauge.builder("qare.lots.expired", expired, AtomicLong::get)
+                .description("Lots newly found expired at the last sweep")
+                .register(registry);
+        Gauge.builder("qare.lots.expiring", expiring, AtomicLong::get)
+                .description("Lots expiring within qare.lots.warning-days at the last sweep")
+                .register(registry);
+    }
+
+    public Sweep sweep() {
+        LocalDate today = LocalDate.now(clock);
+        LocalDate through = today.plusDays(warningDays);
+        LocalDate from = sweptOn != null ? sweptOn : today.minusDays(warningDays);
+        long gone = 0, soon = 0;
+        List<Lot> soonest = new ArrayList<>(LOGGED);
+        String cursor = null;
+        do {
+            var page = store.readExpiringLots(from, through, cursor, PAGE_SIZE);
+            for (Lot l : page.items()) {
+                if (l.expiresOn().isBefore(today)) gone++;
+                else soon++;
+                if (soonest.size() < LOGGED) soonest.add(l);
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        sweptOn = today;
+        expired.set(gone);
+        expiring.set(soon);
+        if (gone + soon > 0) {
+            log.warn("{} lots expired since {} and {} expiring by {}, soonest: {}", gone, from, soon, through, soonest);
+        }
+        return new Sweep(gone, soon, from, through, List.copyOf(soonest));
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            log.warn("Lot expiry sweep failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) sweeper.shutdownNow();
+    }
+}
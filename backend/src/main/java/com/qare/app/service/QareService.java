@@ -1,41 +1,468 @@
 package com.qare.app.service;
 
-import com.qare.app.config.DBConfig;
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.BulkResult;
+import com.qare.app.model.InventoryStats;
+import com.qare.app.model.LocationStock;
+import com.qare.app.model.Lot;
+import com.qare.app.model.LotPage;
+import com.qare.app.model.LotReceipt;
 import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.MultiGetResult;
+import com.qare.app.model.StockAdjustments;
+import com.qare.app.model.StockMovement;
+import com.qare.app.model.StockOutlook;
+import com.qare.app.model.SupplyEvent;
+import com.qare.app.model.SupplyLocations;
+import com.qare.app.model.SupplyPage;
+import com.qare.app.model.SupplyTotal;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 @Transactional
 public class QareService {
-    private final DBConfig db;
-    public QareService(DBConfig db) { this.db = db; }
+    private final SupplyStore db;
+    private final SupplyCache cache;
+    private final SupplySearchIndex index;
+    private final DataVersion version;
+    private final SupplyChangeFeed feed;
+    private final WriteBehindBuffer writes;
+    private final CatalogSnapshot snapshot;
+    private final SupplyStatistics stats;
+    private final SupplyReadModel readModel;
+    private final TransactionOperations savepoint;
+    private final SingleFlight<String, Optional<MedicalSupply>> reads = new SingleFlight<>();
+    private final SingleFlight<PageKey, SupplyPage> pages = new SingleFlight<>();
+
+    private record PageKey(String after, int limit) {}
+
+    @Autowired
+    public QareService(SupplyStore db, SupplyCache cache, SupplySearchIndex index, DataVersion version,
+                       SupplyChangeFeed feed, WriteBehindBuffer writes, CatalogSnapshot snapshot,
+                       SupplyStatistics stats, SupplyReadModel readModel, PlatformTransactionManager transactionManager) {
+        this(db, cache, index, version, feed, writes, snapshot, stats, readModel, savepoint(transactionManager));
+    }
+
+    /** {@code savepoint} runs one step of a bulk write so that its failure undoes that step only. */
+    QareService(SupplyStore db, SupplyCache cache, SupplySearchIndex index, DataVersion version,
+                SupplyChangeFeed feed, WriteBehindBuffer writes, CatalogSnapshot snapshot,
+                SupplyStatistics stats, SupplyReadModel readModel, TransactionOperations savepoint) {
+        this.db = db;
+        this.cache = cache;
+        this.index = index;
+        this.version = version;
+        this.feed = feed;
+        this.writes = writes;
+        this.snapshot = snapshot;
+        this.stats = stats;
+        this.readModel = readModel;
+        this.savepoint = savepoint;
+    }
+
+    /**
+     * A nested transaction: a savepoint in the caller's. Rolling back to it also clears the
+     * rollback-only mark a failing store call leaves on the shared transaction.
+     */
+    static TransactionOperations savepoint(PlatformTransactionManager transactionManager) {
+        var template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        return template;
+    }
+
+    /**
+     * Builds the in-memory name index, the statistics and the read model once at startup,
+     * from the snapshot when it is still current (re-caching what was hot when it was taken)
+     * and from the table otherwise.
+     */
+    @PostConstruct
+    void warmUp() {
+        List<MedicalSupply> rows = new ArrayList<>();
+        boolean restored = snapshot.restore((s, hot) -> {
+            rows.add(s);
+            if (hot) cache.prime(s);
+        });
+        if (!restored) db.forEach(rows::add);
+        rows.forEach(stats::written);
+        index.addAll(rows.stream().map(MedicalSupply::name).toList());
+        readModel.load(rows);
+    }
 
     public MedicalSupply add(MedicalSupply medicalSupply) {
         var s = normalize(medicalSupply);
-        db.create(s);
-        return s;
+        return writes.exclusive(List.of(s.name()), () -> {
+            var created = db.create(s);
+            written(SupplyEvent.Type.CREATED, List.of(created));
+            return created;
+        });
+    }
+
+    /**
+     * Tag of the data as of now. Read it before the data it describes: a write that lands
+     * in between only makes the tag look older, never newer.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public String dataVersion() {
+        return version.tag();
+    }
+
+    /**
+     * Upserts {@code rows} in one transaction using a single JDBC batch. If the batch is
+     * rejected the rows are retried one by one so only the offending rows are reported;
+     * failure indexes are positions in {@code rows}. The batch and each retry run in their
+     * own savepoint, so a failed one leaves the transaction usable for the rest.
+     */
+    public List<BulkResult.Failure> upsertAll(List<MedicalSupply> rows) {
+        var normalized = rows.stream().map(QareService::normalize).toList();
+        return writes.exclusive(normalized.stream().map(MedicalSupply::name).toList(), () -> upsertNormalized(normalized));
+    }
+
+    private List<BulkResult.Failure> upsertNormalized(List<MedicalSupply> normalized) {
+        try {
+            written(SupplyEvent.Type.UPDATED, savepoint.execute(status -> db.upsertAll(normalized)));
+            return List.of();
+        } catch (DataAccessException | IllegalArgumentException batchFailed) {
+            List<BulkResult.Failure> failures = new ArrayList<>();
+            List<MedicalSupply> upserted = new ArrayList<>();
+            for (int i = 0; i < normalized.size(); i++) {
+                var s = normalized.get(i);
+                try {
+                    upserted.add(savepoint.execute(status -> db.upsert(s)));
+                } catch (DataAccessException | IllegalArgumentException e) {
+                    failures.add(new BulkResult.Failure(i, s.name(), rootMessage(e)));
+                }
+            }
+            written(SupplyEvent.Type.UPDATED, upserted);
+            return failures;
+        }
     }
 
     @Transactional(readOnly = true)
-    public List<MedicalSupply> readAll() {
-        return db.readAll();
+    public void export(Consumer<MedicalSupply> sink) {
+        writes.drain();
+        db.forEach(sink);
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public SupplyPage readPage(String after, int limit) {
+        var cursor = after == null ? null : after.strip();
+        return readModel.readPage(cursor, limit, () -> coalesced(pages, new PageKey(cursor, limit), () -> {
+            writes.drain();
+            return db.readPage(cursor, limit);
+        }));
     }
 
     @Transactional(readOnly = true)
+    public SupplyPage readLowStock(int below, String after, int limit) {
+        writes.drain();
+        return db.readLowStock(below, after, limit);
+    }
+
+    /** Typeahead over names, answered from {@link SupplySearchIndex} without a query. */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<String> search(String query, int limit) {
+        return index.search(query == null ? "" : query, limit);
+    }
+
+    /**
+     * Served from {@link SupplyReadModel}, or from {@link SupplyCache} while the model is
+     * not current; only a cache miss opens a connection, and concurrent misses for one
+     * name share it. A write still held by {@link WriteBehindBuffer} wins over all of them.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<MedicalSupply> read(String name) {
-        return db.read(normalizeName(name));
+        var key = normalizeName(name);
+        var buffered = writes.peek(key);
+        if (buffered.isPresent()) return buffered;
+        return readModel.read(key, () -> cache.get(key, () -> coalesced(reads, key, () -> db.read(key))));
+    }
+
+    /**
+     * Looks up many supplies in one read-only transaction with chunked queries instead of
+     * one round trip per name. Writes still held by {@link WriteBehindBuffer} win, as in
+     * {@link #read}; the cache is bypassed so the answer is one consistent read.
+     */
+    @Transactional(readOnly = true)
+    public MultiGetResult readMany(Collection<String> names) {
+        var keys = new LinkedHashSet<String>();
+        names.forEach(n -> keys.add(normalizeName(n)));
+        Map<String, MedicalSupply> byName = new HashMap<>();
+        List<String> unbuffered = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            writes.peek(key).ifPresentOrElse(s -> byName.put(key, s), () -> unbuffered.add(key));
+        }
+        if (!unbuffered.isEmpty()) db.readByNames(unbuffered).forEach(s -> byName.put(s.name(), s));
+
+        List<MedicalSupply> found = new ArrayList<>(byName.size());
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            var s = byName.get(key);
+            if (s != null) found.add(s);
+            else missing.add(key);
+        }
+        return new MultiGetResult(found, missing);
+    }
+
+    /**
+     * Replaces amount and unit if the supply is still at {@code expectedVersion} (or
+     * {@link SupplyStore#ANY_VERSION}) and returns it at its new version. Empty if it does
+     * not exist; throws {@link VersionConflictException} if it has moved on, which is told
+     * from the buffer or the store, never a cache. In write-behind mode the write is
+     * acknowledged once it is in the buffer's log and reaches the store with the next batch.
+     */
+    public Optional<MedicalSupply> update(MedicalSupply supply, long expectedVersion) {
+        var s = normalize(supply);
+        var updated = writes.enabled()
+                ? writes.putIfVersion(s, expectedVersion)
+                : db.update(s, expectedVersion);
+        if (updated.isPresent()) {
+            written(SupplyEvent.Type.UPDATED, List.of(updated.get()));
+        } else if (writes.peek(s.name()).or(() -> db.read(s.name())).isPresent()) {
+            throw new VersionConflictException(s.name(), expectedVersion);
+        }
+        return updated;
+    }
+
+    /**
+     * Applies a signed stock change without a read-modify-write. Empty if the supply does
+     * not exist; throws {@link InsufficientStockException} if it would go negative.
+     */
+    public Optional<MedicalSupply> adjustAmount(String name, int delta) {
+        var key = normalizeName(name);
+        return writes.exclusive(List.of(key), () -> {
+            var updated = db.addToAmount(key, delta);
+            if (updated.isPresent()) {
+                written(SupplyEvent.Type.UPDATED, List.of(updated.get()));
+            } else if (db.read(key).isPresent()) {
+                throw new InsufficientStockException(key, delta);
+            }
+            return updated;
+        });
+    }
+
+    /**
+     * Applies every change in one transaction, all or nothing; deltas for the same name
+     * are summed. The store takes its row locks in name order, so overlapping sets applied
+     * at once queue rather than deadlock. Empty if any supply does not exist; throws
+     * {@link InsufficientStockException} naming each supply that would go negative.
+     */
+    public Optional<List<MedicalSupply>> adjustAmounts(List<StockAdjustments.Item> items) {
+        SortedMap<String, Integer> deltas = new TreeMap<>();
+        for (var item : items) {
+            deltas.merge(normalizeName(item.name()), item.delta(), (a, b) -> {
+                long sum = (long) a + b;
+                if (sum != (int) sum) throw new IllegalArgumentException("delta would overflow");
+                return (int) sum;
+            });
+        }
+        return writes.exclusive(deltas.keySet(), () -> {
+            var updated = db.addToAmounts(deltas);
+            if (updated.isPresent()) {
+                written(SupplyEvent.Type.UPDATED, updated.get());
+                return updated;
+            }
+            Map<String, MedicalSupply> found = new HashMap<>();
+            db.readByNames(deltas.keySet()).forEach(s -> found.put(s.name(), s));
+            if (!found.keySet().containsAll(deltas.keySet())) return Optional.<List<MedicalSupply>>empty();
+            Map<String, Integer> shortfalls = new TreeMap<>();
+            deltas.forEach((name, delta) -> {
+                if ((long) found.get(name).amount() + delta < 0) shortfalls.put(name, delta);
+            });
+            throw new InsufficientStockException(shortfalls);
+        });
+    }
+
+    /**
+     * Deletes the supply if it is still at {@code expectedVersion} (or
+     * {@link SupplyStore#ANY_VERSION}). False if it does not exist; throws
+     * {@link VersionConflictException} if it has moved on.
+     */
+    public boolean delete(String name, long expectedVersion) {
+        var key = normalizeName(name);
+        return writes.exclusive(List.of(key), () -> {
+            boolean deleted = db.delete(key, expectedVersion);
+            if (deleted) {
+                removed(key);
+            } else if (db.read(key).isPresent()) {
+                throw new VersionConflictException(key, expectedVersion);
+            }
+            return deleted;
+        });
+    }
+
+    /** Ledger of stock changes to one supply, newest first; it outlives the supply. */
+    @Transactional(readOnly = true)
+    public List<StockMovement> movements(String name, int limit) {
+        writes.drain();
+        return db.readMovements(normalizeName(name), limit);
+    }
+
+    /**
+     * Stock, recent consumption and days of stock left, from per-day totals kept up to date
+     * by every write rather than from the ledger.
+     */
+    @Transactional(readOnly = true)
+    public Optional<StockOutlook> outlook(String name) {
+        writes.drain();
+        return db.readOutlook(normalizeName(name));
+    }
+
+    /** The supply's stock at each location and the total across them; empty if the supply does not exist. */
+    @Transactional(readOnly = true)
+    public Optional<SupplyLocations> locations(String name) {
+        var key = normalizeName(name);
+        var rows = db.readLocationStock(key);
+        if (rows.isEmpty() && read(key).isEmpty()) return Optional.empty();
+        return Optional.of(SupplyLocations.of(key, rows));
+    }
+
+    /**
+     * Sets the supply's stock at one location. Only that location's row is written, so
+     * writes at other locations and to the supply itself never wait on it.
+     */
+    public Optional<LocationStock> setLocationStock(String name, String location, int amount) {
+        return db.setLocationStock(normalizeName(name), normalizeName(location), amount);
+    }
+
+    /** Atomic delta at one location; {@link InsufficientStockException} if it would go below zero there. */
+    public Optional<LocationStock> adjustLocationStock(String name, String location, int delta) {
+        var key = normalizeName(name);
+        var updated = db.addToLocationStock(key, normalizeName(location), delta);
+        if (updated.isEmpty() && read(key).isPresent()) throw new InsufficientStockException(key, delta);
+        return updated;
+    }
+
+    /**
+     * Receives stock into a lot: the supply's amount grows with it. Empty if the supply does
+     * not exist; {@link IllegalArgumentException} if the lot is on hand with another expiry.
+     */
+    public Optional<MedicalSupply> receiveLot(String name, LotReceipt receipt) {
+        var key = normalizeName(name);
+        return writes.exclusive(List.of(key), () -> {
+            var updated = db.receiveLot(key, receipt.lot(), receipt.expiresOn(), receipt.amount());
+            updated.ifPresent(s -> written(SupplyEvent.Type.UPDATED, List.of(s)));
+            return updated;
+        });
+    }
+
+    /** Removes a lot, typically an expired one, and its stock. Empty if there is no such lot. */
+    public Optional<MedicalSupply> writeOffLot(String name, String lot) {
+        var key = normalizeName(name);
+        return writes.exclusive(List.of(key), () -> {
+            var updated = db.writeOffLot(key, lot);
+            updated.ifPresent(s -> written(SupplyEvent.Type.UPDATED, List.of(s)));
+            return updated;
+        });
+    }
+
+    /** The supply's lots, first to expire first; empty if the supply does not exist. */
+    @Transactional(readOnly = true)
+    public Optional<List<Lot>> lots(String name) {
+        var key = normalizeName(name);
+        var rows = db.readLots(key);
+        if (rows.isEmpty() && read(key).isEmpty()) return Optional.empty();
+        return Optional.of(rows);
+    }
+
+    /** Lots of every supply expiring on or before {@code through}, soonest first. */
+    @Transactional(readOnly = true)
+    public LotPage expiring(LocalDate through, String after, int limit) {
+        return db.readExpiringLots(null, through, after, limit);
+    }
+
+    /** Stock per supply summed across locations; the store reads locations in parallel, each on its own connection. */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<SupplyTotal> totals() {
+        return db.readTotals();
+    }
+
+    /** Catalog-wide counts from counters the writes keep current; no query. */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public InventoryStats stats() {
+        return stats.snapshot();
     }
 
-    public boolean update(MedicalSupply supply) {
-        return db.update(normalize(supply));
+    /** Opens a Server-Sent Events subscription to committed changes. */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public SseEmitter subscribe() {
+        return feed.subscribe(new SseEmitter());
     }
 
-    public boolean delete(String name) {
-        return db.delete(normalizeName(name));
+    private void written(SupplyEvent.Type type, List<MedicalSupply> supplies) {
+        if (supplies.isEmpty()) return;
+        afterCommit(() -> {
+            supplies.forEach(s -> {
+                reads.forget(s.name()); // before the cache: a reader that joins after this sees the write
+                cache.invalidate(s.name());
+                index.add(s.name());
+                stats.written(s);
+                readModel.written(s);
+            });
+            pages.forgetAll();
+            version.bump();
+            supplies.forEach(s -> feed.publish(new SupplyEvent(type, s.name(), s)));
+        });
+    }
+
+    private void removed(String name) {
+        afterCommit(() -> {
+            reads.forget(name);
+            cache.invalidate(name);
+            index.remove(name);
+            stats.removed(name);
+            readModel.removed(name);
+            pages.forgetAll();
+            version.bump();
+            feed.publish(new SupplyEvent(SupplyEvent.Type.DELETED, name, null));
+        });
+    }
+
+    /**
+     * Runs {@code load} through {@code flight}, so identical concurrent reads share one
+     * query. Inside a transaction the caller must see its own uncommitted writes, so it
+     * always runs its own.
+     */
+    private static <K, V> V coalesced(SingleFlight<K, V> flight, K key, Supplier<V> load) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) return load.get();
+        return flight.run(key, load);
+    }
+
+    /**
+     * Runs {@code apply} once the surrounding transaction commits, so derived state never
+     * reflects a change that is later rolled back.
+     */
+    private static void afterCommit(Runnable apply) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override public void afterCommit() { apply.run(); }
+            });
+        } else {
+            apply.run();
+        }
     }
 
     private static MedicalSupply normalize(MedicalSupply s) {
@@ -50,4 +477,10 @@ public class QareService {
         if (name == null) throw new IllegalArgumentException("name must not be null");
         return name.strip();
     }
+
+    private static String rootMessage(Exception e) {
+        Throwable root = e instanceof DataAccessException dae && dae.getMostSpecificCause() != null
+                ? dae.getMostSpecificCause() : e;
+        return root.getMessage();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+package com.qare.app.service;
+
+import com.qare.app.model.MedicalSupply;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of single-supply lookups, including misses, with an optional TTL.
+ * Hit, miss and eviction counts are published as the standard Micrometer
+ * {@code cache.*} meters tagged {@code cache=supplies}.
+ * <p>
+ * Names are spread over up to {@value #MAX_SEGMENTS} segments by hash, each an LRU of its
+ * share of {@code max-size} behind its own monitor, so lookups of different names rarely
+ * wait on each other. Recency is kept per segment: the entry evicted is the least recently
+ * used of its segment, not necessarily of the whole cache.
+ */
+@Component
+public class SupplyCache {
+
+    /** Most segments; small caches get fewer, so each still holds {@value #MIN_SEGMENT_SIZE} or more. */
+    static final int MAX_SEGMENTS = 16;
+    static final int MIN_SEGMENT_SIZE = 64;
+
+    private record Entry(Optional<MedicalSupply> value, long loadedAt) {}
+
+    /** One access-ordered map and its invalidation count, both guarded by the segment. */
+    private final class Segment {
+        final Map<String, Entry> entries;
+        long generation; // bumped on every invalidation
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() <= capacity) return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+    }
+
+    private final long ttlNanos;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SupplyCache(@Value("${qare.cache.max-size:10000}") int maxSize,
+                       @Value("${qare.cache.ttl:0s}") Duration ttl,
+                       MeterRegistry registry) {
+        if (maxSize < 1) throw new IllegalArgumentException("qare.cache.max-size must be positive");
+        this.ttlNanos = ttl.isZero() || ttl.isNegative() ? 0 : ttl.toNanos();
+        int count = Math.min(MAX_SEGMENTS, Math.max(1, Integer.highestOneBit(maxSize / MIN_SEGMENT_SIZE)));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(maxSize / count + (i < maxSize % count ? 1 : 0)); // shares add up to maxSize
+        }
+
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tag("cache", "supplies").tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tag("cache", "supplies").tag("result", "miss").register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tag("cache", "supplies").register(registry);
+        Gauge.builder("cache.size", this, SupplyCache::size)
+                .tag("cache", "supplies").register(registry);
+    }
+
+    /**
+     * Returns the cached lookup for {@code name}, calling {@code loader} on a miss. A load
+     * that raced with an invalidation is returned but not cached, so a reader can never
+     * re-insert a value that a concurrent write has just replaced.
+     */
+    public Optional<MedicalSupply> get(String name, Supplier<Optional<MedicalSupply>> loader) {
+        Segment seg = segmentFor(name);
+        long stamp;
+        synchronized (seg) {
+            Entry e = seg.entries.get(name);
+            if (e != null && !expired(e)) {
+                hits.increment();
+                return e.value();
+            }
+            if (e != null) seg.entries.remove(name);
+            misses.increment();
+            stamp = seg.generation;
+        }
+        Optional<MedicalSupply> loaded = loader.get();
+        synchronized (seg) {
+            if (stamp == seg.generation) seg.entries.put(name, new Entry(loaded, System.nanoTime()));
+        }
+        return loaded;
+    }
+
+    public void invalidate(String name) {
+        Segment seg = segmentFor(name);
+        synchronized (seg) {
+            seg.generation++;
+            seg.entries.remove(name);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.generation++;
+                seg.entries.clear();
+            }
+        }
+    }
+
+    /** Seeds a known value for {@code name} unless it is cached already; counted as neither hit nor miss. */
+    public void prime(MedicalSupply s) {
+        Segment seg = segmentFor(s.name());
+        synchronized (seg) {
+            seg.entries.putIfAbsent(s.name(), new Entry(Optional.of(s), System.nanoTime()));
+        }
+    }
+
+    /** Names currently cached with a value, so a snapshot can record what was hot. */
+    public Set<String> hotNames() {
+        Set<String> names = new HashSet<>();
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.entries.forEach((name, e) -> {
+                    if (e.value().isPresent() && !expired(e)) names.add(name);
+                });
+            }
+        }
+        return names;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                size += seg.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String name) {
+        int h = name.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    private boolean expired(Entry e) {
+        return ttlNanos > 0 && System.nanoTime() - e.loadedAt() > ttlNanos;
+    }
+}
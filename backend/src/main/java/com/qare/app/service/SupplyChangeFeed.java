@@ -0,0 +1,167 @@
+package com.qare.app.service;
+
+import com.qare.app.model.SupplyEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fans committed supply changes out to Server-Sent Events subscribers.
+ * <p>
+ * Publishing never blocks on a client: each subscriber has its own bounded buffer that
+ * keeps only the latest event per name, drained by a virtual thread. A subscriber whose
+ * buffer overflows is sent a single {@code resync} event and should reload the list.
+ */
+@Component
+public class SupplyChangeFeed {
+
+    static final String RESYNC = "resync";
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final int bufferSize;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats;
+
+    @Autowired
+    public SupplyChangeFeed(@Value("${qare.stream.buffer-size:1000}") int bufferSize,
+                            @Value("${qare.stream.heartbeat:15s}") Duration heartbeat,
+                            MeterRegistry registry) {
+        this(bufferSize, heartbeat, Executors.newVirtualThreadPerTaskExecutor());
+        Gauge.builder("qare.stream.subscribers", subscribers, Set::size).register(registry);
+    }
+
+    SupplyChangeFeed(int bufferSize, Duration heartbeat, ExecutorService senders) {
+        if (bufferSize < 1) throw new IllegalArgumentException("qare.stream.buffer-size must be positive");
+        this.bufferSize = bufferSize;
+        this.senders = senders;
+        if (heartbeat.isZero()) {
+            this.heartbeats = null;
+        } else {
+            this.heartbeats = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory());
+            long millis = heartbeat.toMillis();
+            heartbeats.scheduleAtFixedRate(this::heartbeat, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Registers {@code emitter} to receive every event published from now on. */
+    public SseEmitter subscribe(SseEmitter emitter) {
+        var sub = new Subscriber(emitter);
+        subscribers.add(sub);
+        emitter.onCompletion(() -> subscribers.remove(sub));
+        emitter.onTimeout(() -> subscribers.remove(sub));
+        emitter.onError(e -> subscribers.remove(sub));
+        return emitter;
+    }
+
+    public void publish(SupplyEvent event) {
+        for (Subscriber sub : subscribers) {
+            sub.offer(event);
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (heartbeats != null) heartbeats.shutdownNow();
+        subscribers.forEach(sub -> sub.emitter.complete());
+        senders.shutdown();
+    }
+
+    private void heartbeat() {
+        for (Subscriber sub : subscribers) {
+            sub.heartbeatDue = true;
+            sub.schedule();
+        }
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        // latest pending event per name in arrival order, guarded by this
+        LinkedHashMap<String, SupplyEvent> pending = new LinkedHashMap<>();
+        boolean overflowed; // guarded by this
+        volatile boolean heartbeatDue;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(SupplyEvent event) {
+            synchronized (this) {
+                if (!overflowed) {
+                    pending.remove(event.name()); // coalesce: keep only the newest, at the tail
+                    pending.put(event.name(), event);
+                    if (pending.size() > bufferSize) {
+                        pending.clear();
+                        overflowed = true;
+                    }
+                }
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException rejected) { // shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    LinkedHashMap<String, SupplyEvent> batch;
+                    boolean resync;
+                    synchronized (this) {
+                        batch = pending;
+                        resync = overflowed;
+                        pending = new LinkedHashMap<>();
+                        overflowed = false;
+                    }
+                    if (batch.isEmpty() && !resync && !heartbeatDue) return;
+                    if (resync) {
+                        emitter.send(SseEmitter.event().name(RESYNC).data(""));
+                    }
+                    for (SupplyEvent e : batch.values()) {
+                        emitter.send(SseEmitter.event().name(e.type().name().toLowerCase()).data(e));
+                    }
+                    if (heartbeatDue) {
+                        heartbeatDue = false;
+                        emitter.send(SseEmitter.event().comment("keep-alive"));
+                    }
+                }
+            } catch (IOException | IllegalStateException gone) {
+                subscribers.remove(this);
+                emitter.completeWithError(gone);
+            } finally {
+                scheduled.set(false);
+                boolean raced;
+                synchronized (this) {
+                    raced = !pending.isEmpty() || overflowed; // an offer landed after the last swap
+                }
+                if (raced && subscribers.contains(this)) schedule();
+            }
+        }
+    }
+}
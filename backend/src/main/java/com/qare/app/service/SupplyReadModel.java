@@ -0,0 +1,248 @@
+package com.qare.app.service;
+
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.SupplyPage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-memory copy of the catalog ({@code qare.read-model.enabled}) that answers single
+ * reads and pages of the list without a query. The copy is an immutable name-sorted
+ * array: one applier thread builds the next and publishes it with a single volatile write,
+ * so readers never lock.
+ * <p>
+ * Every committed write marks its name dirty with the value it wrote, and reads of a dirty
+ * name answer with that value, so a client always sees its own write. The applier re-reads
+ * dirty names from the store, or the write-behind buffer, merges them into the next array
+ * and clears the marks it covered; how long marks wait is timed as {@code qare.read.model.lag}.
+ * Before the copy is first built, and while any mark is older than
+ * {@code qare.read-model.max-lag}, reads fall back to the caller's database path.
+ */
+@Component
+public class SupplyReadModel {
+
+    private static final Logger log = LoggerFactory.getLogger(SupplyReadModel.class);
+
+    private record Snapshot(String[] names, MedicalSupply[] rows) {
+        static Snapshot of(MedicalSupply[] rows) {
+            return new Snapshot(Arrays.stream(rows).map(MedicalSupply::name).toArray(String[]::new), rows);
+        }
+
+        /** Index of {@code name}, or of the first row after it when absent. */
+        int from(String name) {
+            int i = Arrays.binarySearch(names, name);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+
+    /** A committed write not yet in the snapshot; a {@code null} value is a delete. */
+    private record Change(long seq, long markedAt, MedicalSupply value) {}
+
+    private final SupplyStore store;
+    private final WriteBehindBuffer writes;
+    private final Executor applier;
+    private final long maxLagNanos;
+    private final Timer lag;
+    private final Counter fallbacks;
+
+    private final Map<String, Change> dirty = new ConcurrentHashMap<>();
+    private final AtomicLong seq = new AtomicLong();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile Snapshot snapshot; // null until loaded
+
+    @Autowired
+    public SupplyReadModel(SupplyStore store, WriteBehindBuffer writes, MeterRegistry registry,
+                           @Value("${qare.read-model.enabled:false}") boolean enabled,
+                           @Value("${qare.read-model.max-lag:2s}") Duration maxLag) {
+        this(store, writes, enabled ? Executors.newSingleThreadExecutor(Thread.ofPlatform().name("read-model").daemon().factory()) : null,
+                maxLag, registry);
+    }
+
+    /** Changes are applied on {@code applier}; {@code null} disables the model and every read falls back. */
+    SupplyReadModel(SupplyStore store, WriteBehindBuffer writes, Executor applier, Duration maxLag, MeterRegistry registry) {
+        this.store = store;
+        this.writes = writes;
+        this.applier = applier;
+        this.maxLagNanos = maxLag.toNanos();
+        this.lag = Timer.builder("qare.read.model.lag")
+                .description("Time from a committed write to the read model snapshot that contains it")
+                .register(registry);
+        this.fallbacks = Counter.builder("qare.read.model.fallbacks")
+                .description("Reads sent to the database because the read model was not built or stale")
+                .register(registry);
+        Gauge.builder("qare.read.model.pending", dirty, Map::size).register(registry);
+    }
+
+    public boolean enabled() {
+        return applier != null;
+    }
+
+    /** Builds the first snapshot from every row of the catalog; reads are served from then on. */
+    public void load(Collection<MedicalSupply> rows) {
+        if (!enabled()) return;
+        var sorted = rows.toArray(MedicalSupply[]::new);
+        Arrays.sort(sorted, Comparator.comparing(MedicalSupply::name));
+        snapshot = Snapshot.of(sorted);
+        if (!dirty.isEmpty()) requestApply();
+    }
+
+    public void written(MedicalSupply s) {
+        mark(s.name(), s);
+    }
+
+    public void removed(String name) {
+        mark(name, null);
+    }
+
+    private void mark(String name, MedicalSupply value) {
+        if (!enabled()) return;
+        dirty.merge(name, new Change(seq.incrementAndGet(), System.nanoTime(), value), (old, next) -> new Change(
+                next.seq(),
+                old.markedAt(), // the lag runs from the first write the snapshot is missing
+                old.value() != null && next.value() != null && old.value().version() > next.value().version()
+                        ? old.value() : next.value()));
+        requestApply();
+    }
+
+    public Optional<MedicalSupply> read(String name, Supplier<Optional<MedicalSupply>> fallback) {
+        var change = dirty.get(name); // before the snapshot: a mark is only cleared once its snapshot is out
+        var current = usable();
+        if (current == null) return fallback.get();
+        if (change != null) return Optional.ofNullable(change.value());
+        int i = current.from(name);
+        return i < current.rows().length && current.names()[i].equals(name) ? Optional.of(current.rows()[i]) : Optional.empty();
+    }
+
+    /** Keyset page by name, as {@link SupplyStore#readPage}. */
+    public SupplyPage readPage(String after, int limit, Supplier<SupplyPage> fallback) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+        var changes = new TreeMap<>(dirty);
+        var current = usable();
+        if (current == null) return fallback.get();
+        var rows = merged(current, changes, after, limit + 1); // one extra row tells whether another page follows
+        if (rows.size() <= limit) return new SupplyPage(rows, null);
+        var items = rows.subList(0, limit);
+        return new SupplyPage(items, items.get(limit - 1).name());
+    }
+
+    /** The snapshot, or null when reads have to go to the database. */
+    private Snapshot usable() {
+        if (!enabled()) return null;
+        var current = snapshot;
+        if (current != null && !stale()) return current;
+        fallbacks.increment();
+        if (current != null) requestApply(); // the applier may have failed; try again
+        return null;
+    }
+
+    private boolean stale() {
+        if (dirty.isEmpty()) return false;
+        long now = System.nanoTime();
+        for (Change c : dirty.values()) if (now - c.markedAt() > maxLagNanos) return true;
+        return false;
+    }
+
+    /** Rows after {@code after} in name order, with the dirty values laid over the snapshot, up to {@code max}. */
+    private static List<MedicalSupply> merged(Snapshot current, NavigableMap<String, Change> changes, String after, int max) {
+        int i = after == null ? 0 : current.from(after);
+        if (after != null && i < current.names().length && current.names()[i].equals(after)) i++;
+        var pending = (after == null ? changes : changes.tailMap(after, false)).entrySet().iterator();
+        var c = pending.hasNext() ? pending.next() : null;
+        List<MedicalSupply> out = new ArrayList<>(Math.min(max, current.rows().length - i + changes.size()));
+        while (out.size() < max && (i < current.rows().length || c != null)) {
+            int cmp = c == null ? -1 : i == current.rows().length ? 1 : current.names()[i].compareTo(c.getKey());
+            if (cmp < 0) {
+                out.add(current.rows()[i++]);
+                continue;
+            }
+            if (cmp == 0) i++; // the dirty value replaces the snapshot's row
+            if (c.getValue().value() != null) out.add(c.getValue().value());
+            c = pending.hasNext() ? pending.next() : null;
+        }
+        return out;
+    }
+
+    private void requestApply() {
+        if (scheduled.compareAndSet(false, true)) applier.execute(this::applyQuietly);
+    }
+
+    private void applyQuietly() {
+        try {
+            apply();
+        } catch (RuntimeException e) {
+            log.warn("Read model refresh failed, reads fall back to the database once it lags: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Re-reads every dirty name, publishes a snapshot with them merged in, then clears the
+     * marks that were not written again in the meantime.
+     */
+    void apply() {
+        scheduled.set(false);
+        var current = snapshot;
+        if (current == null) return; // load() schedules again
+        var taken = new TreeMap<>(dirty);
+        if (taken.isEmpty()) return;
+
+        Map<String, MedicalSupply> fresh = new HashMap<>();
+        List<String> unbuffered = new ArrayList<>(taken.size());
+        for (String name : taken.keySet()) {
+            writes.peek(name).ifPresentOrElse(s -> fresh.put(name, s), () -> unbuffered.add(name));
+        }
+        store.readByNames(unbuffered).forEach(s -> fresh.put(s.name(), s));
+
+        var rows = new ArrayList<MedicalSupply>(current.rows().length + taken.size());
+        int i = 0;
+        for (String name : taken.keySet()) {
+            for (; i < current.rows().length && current.names()[i].compareTo(name) < 0; i++) rows.add(current.rows()[i]);
+            if (i < current.rows().length && current.names()[i].equals(name)) i++;
+            var s = fresh.get(name);
+            if (s != null) rows.add(s);
+        }
+        for (; i < current.rows().length; i++) rows.add(current.rows()[i]);
+        snapshot = Snapshot.of(rows.toArray(MedicalSupply[]::new));
+
+        long now = System.nanoTime();
+        long oldest = now;
+        for (var e : taken.entrySet()) {
+            dirty.remove(e.getKey(), e.getValue());
+            oldest = Math.min(oldest, e.getValue().markedAt());
+        }
+        lag.record(now - oldest, TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (applier instanceof ExecutorService pool) pool.shutdownNow();
+    }
+}
@@ -0,0 +1,177 @@
+package com.qare.app.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory typeahead index over supply names. Prefix matches come from a sorted set of
+ * case-folded names; typo-tolerant matches come from a trigram posting list. Both are
+ * concurrent structures, so lookups never block writers.
+ * <p>
+ * A fuzzy lookup only reads as many postings as it needs: candidates are taken from the
+ * query's rarest trigrams first, up to {@value #MAX_CANDIDATES}, and only from the lists a
+ * name must appear in to reach {@link #MIN_SIMILARITY}. Each candidate is then scored with
+ * set lookups and its trigram count stored at indexing time, into a heap that keeps only
+ * the best {@code limit}.
+ */
+@Component
+public class SupplySearchIndex {
+
+    /** Minimum trigram similarity (Jaccard) for a fuzzy match. */
+    static final double MIN_SIMILARITY = 0.3;
+
+    /** Most names scored per fuzzy lookup, however common the query's trigrams are. */
+    static final int MAX_CANDIDATES = 2_000;
+
+    private static final char SEP = '\u0000'; // sorts before any printable character
+
+    // entries are "folded\0original", so equal folds of different names stay distinct
+    private final ConcurrentSkipListSet<String> sorted = new ConcurrentSkipListSet<>();
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+    private final Map<String, Integer> gramCounts = new ConcurrentHashMap<>(); // name -> trigrams of its fold
+
+    public void add(String name) {
+        if (!sorted.add(fold(name) + SEP + name)) return;
+        Set<String> grams = trigrams(fold(name));
+        gramCounts.put(name, grams.size());
+        for (String g : grams) {
+            postings.computeIfAbsent(g, k -> ConcurrentHashMap.newKeySet()).add(name);
+        }
+    }
+
+    /**
+     * Bulk form of {@link #add} for building the index at startup: postings are grouped
+     * first, so each set is created at its final size instead of growing one name at a time.
+     */
+    public void addAll(Collection<String> names) {
+        Map<String, List<String>> grouped = new HashMap<>();
+        List<String> entries = new ArrayList<>(names.size());
+        for (String name : names) {
+            String folded = fold(name);
+            entries.add(folded + SEP + name);
+            Set<String> grams = trigrams(folded);
+            gramCounts.put(name, grams.size());
+            for (String g : grams) grouped.computeIfAbsent(g, k -> new ArrayList<>()).add(name);
+        }
+        sorted.addAll(entries);
+        grouped.forEach((g, list) -> {
+            Set<String> fresh = ConcurrentHashMap.newKeySet(list.size());
+            fresh.addAll(list);
+            postings.merge(g, fresh, (current, added) -> {
+                current.addAll(added);
+                return current;
+            });
+        });
+    }
+
+    public void remove(String name) {
+        if (!sorted.remove(fold(name) + SEP + name)) return;
+        for (String g : trigrams(fold(name))) {
+            postings.computeIfPresent(g, (k, names) -> {
+                names.remove(name);
+                return names.isEmpty() ? null : names;
+            });
+        }
+        gramCounts.remove(name);
+    }
+
+    public void clear() {
+        sorted.clear();
+        postings.clear();
+        gramCounts.clear();
+    }
+
+    public int size() {
+        return sorted.size();
+    }
+
+    /**
+     * Up to {@code limit} names for {@code query}: case-insensitive prefix matches in name
+     * order first, then fuzzy matches by descending trigram similarity.
+     */
+    public List<String> search(String query, int limit) {
+        String q = fold(query.strip());
+        if (q.isEmpty() || limit < 1) return List.of();
+
+        Set<String> result = new LinkedHashSet<>();
+        for (String entry : sorted.tailSet(q)) {
+            if (!entry.startsWith(q) || result.size() == limit) break;
+            result.add(entry.substring(entry.indexOf(SEP) + 1));
+        }
+        if (result.size() < limit) {
+            for (String name : fuzzy(q, limit)) { // prefix matches among them are skipped
+                if (result.size() == limit) break;
+                result.add(name);
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    private record Scored(String name, double score) {}
+
+    // worst first, so the heap's head is the match to drop
+    private static final Comparator<Scored> WORST_FIRST =
+            Comparator.comparingDouble(Scored::score).thenComparing(Scored::name, Comparator.reverseOrder());
+
+    /** The best {@code limit} names by trigram similarity to {@code q}, best first. */
+    private List<String> fuzzy(String q, int limit) {
+        Set<String> grams = trigrams(q);
+        List<Set<String>> lists = new ArrayList<>(grams.size());
+        for (String g : grams) lists.add(postings.getOrDefault(g, Set.of()));
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        // a match shares at least ceil(MIN_SIMILARITY * |q|) trigrams with the query, so it
+        // appears in at least one of the rarest |q| - that + 1 lists
+        int needed = (int) Math.ceil(MIN_SIMILARITY * grams.size());
+        Set<String> candidates = new HashSet<>();
+        collect:
+        for (Set<String> names : lists.subList(0, grams.size() - needed + 1)) {
+            for (String name : names) {
+                if (candidates.size() == MAX_CANDIDATES) break collect;
+                candidates.add(name);
+            }
+        }
+
+        PriorityQueue<Scored> best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+        for (String name : candidates) {
+            Integer count = gramCounts.get(name);
+            if (count == null) continue; // removed meanwhile
+            int common = 0;
+            for (Set<String> names : lists) if (names.contains(name)) common++;
+            double score = (double) common / (grams.size() + count - common);
+            if (score < MIN_SIMILARITY) continue;
+            best.add(new Scored(name, score));
+            if (best.size() > limit) best.poll();
+        }
+        List<Scored> ranked = new ArrayList<>(best);
+        ranked.sort(WORST_FIRST.reversed());
+        return ranked.stream().map(Scored::name).toList();
+    }
+
+    private static String fold(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    /** Trigrams of the word padded with two leading and one trailing blank. */
+    private static Set<String> trigrams(String folded) {
+        String padded = "  " + folded + " ";
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,197 @@
+package com.qare.app.service;
+
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.InventoryStats;
+import com.qare.app.model.MedicalSupply;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Catalog-wide counters kept current by every committed write, so reading them costs the
+ * same whatever the size of the catalog. Each supply's counted unit, amount and version is
+ * remembered, so a write moves exactly that supply's contribution; a write that arrives
+ * after a newer one for the same name is ignored.
+ * <p>
+ * Commits of concurrent transactions can still be applied out of order (an update landing
+ * after the delete that followed it), so every {@code qare.stats.reconcile-interval} the
+ * counters are checked against one consistent read of the table and corrected. Supplies
+ * that needed a correction are counted in {@code qare.stats.corrections}.
+ */
+@Component
+public class SupplyStatistics {
+
+    /** Lowest amount shown orange; anything above {@link #GREEN_ABOVE} is green, below this red. */
+    static final int ORANGE_FROM = 5;
+    static final int GREEN_ABOVE = 10;
+    private static final Logger log = LoggerFactory.getLogger(SupplyStatistics.class);
+
+    /** What one supply contributes; a {@code null} unit marks a delete not yet reconciled. */
+    private record Counted(String unit, int amount, long version, long epoch) {
+        boolean deleted() { return unit == null; }
+    }
+
+    private static final class UnitCounts {
+        final LongAdder supplies = new LongAdder();
+        final LongAdder amount = new LongAdder();
+    }
+
+    private final SupplyStore store;
+    private final WriteBehindBuffer writes;
+    private final TransactionOperations tx;
+    private final Clock clock;
+    private final Counter corrections;
+
+    private final Map<String, Counted> counted = new ConcurrentHashMap<>();
+    private final Map<String, UnitCounts> units = new ConcurrentHashMap<>();
+    private final LongAdder supplies = new LongAdder();
+    private final LongAdder red = new LongAdder();
+    private final LongAdder orange = new LongAdder();
+    private final LongAdder green = new LongAdder();
+    private final AtomicLong epoch = new AtomicLong(); // bumped when a reconciliation starts reading
+    private volatile Instant reconciledAt;
+
+    private ScheduledExecutorService reconciler;
+
+    @Autowired
+    public SupplyStatistics(SupplyStore store, WriteBehindBuffer writes, PlatformTransactionManager transactionManager,
+                            MeterRegistry registry,
+                            @Value("${qare.stats.reconcile-interval:10m}") Duration interval) {
+        this(store, writes, CatalogSnapshot.consistentRead(transactionManager), registry, Clock.systemUTC());
+        if (interval.isPositive()) {
+            reconciler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("stats-reconcile").daemon().factory());
+            long millis = interval.toMillis();
+            reconciler.scheduleWithFixedDelay(this::reconcileQuietly, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Without a scheduler: counters are only checked on {@link #reconcile}. */
+    SupplyStatistics(SupplyStore store, WriteBehindBuffer writes, TransactionOperations tx, MeterRegistry registry, Clock clock) {
+        this.store = store;
+        this.writes = writes;
+        this.tx = tx;
+        this.clock = clock;
+        this.corrections = Counter.builder("qare.stats.corrections")
+                .description("Supplies whose counted contribution differed from the table at reconciliation")
+                .register(registry);
+    }
+
+    /** Counts {@code s} at its new state, unless a newer version of it was counted already. */
+    public void written(MedicalSupply s) {
+        long now = epoch.get();
+        counted.compute(s.name(), (name, old) -> {
+            if (old != null && !old.deleted() && old.version() > s.version()) return old;
+            var next = new Counted(s.unitName(), s.amount(), s.version(), now);
+            move(old, next);
+            return next;
+        });
+    }
+
+    public void removed(String name) {
+        long now = epoch.get();
+        counted.compute(name, (n, old) -> {
+            var gone = new Counted(null, 0, 0, now);
+            move(old, gone);
+            return gone;
+        });
+    }
+
+    public InventoryStats snapshot() {
+        Map<String, InventoryStats.Unit> byUnit = new TreeMap<>();
+        units.forEach((unit, c) -> {
+            long n = c.supplies.sum();
+            if (n > 0) byUnit.put(unit, new InventoryStats.Unit(n, c.amount.sum()));
+        });
+        return new InventoryStats(supplies.sum(), byUnit,
+                new InventoryStats.Status(red.sum(), orange.sum(), green.sum()), reconciledAt);
+    }
+
+    /**
+     * Compares every counted supply with the table and corrects the ones that differ.
+     * Buffered writes are flushed first. Supplies written after the read began are left as
+     * counted: their commit is at least as new as what the read sees.
+     *
+     * @return the number of supplies corrected
+     */
+    public int reconcile() {
+        writes.drain();
+        long start = epoch.incrementAndGet(); // before the read's snapshot, so older commits are in it
+        Set<String> seen = new HashSet<>();
+        int[] fixed = {0};
+        tx.executeWithoutResult(status -> store.forEach(s -> {
+            seen.add(s.name());
+            counted.compute(s.name(), (name, old) -> {
+                if (old != null && old.epoch() >= start) return old;
+                var actual = new Counted(s.unitName(), s.amount(), s.version(), old == null ? 0 : old.epoch());
+                if (old != null && !old.deleted() && old.unit().equals(actual.unit()) && old.amount() == actual.amount()) return actual;
+                fixed[0]++;
+                move(old, actual);
+                return actual;
+            });
+        }));
+        for (String name : counted.keySet()) {
+            if (seen.contains(name)) continue;
+            counted.computeIfPresent(name, (n, old) -> {
+                if (old.epoch() >= start) return old;
+                if (!old.deleted()) {
+                    fixed[0]++;
+                    move(old, null);
+                }
+                return null; // reconciled deletes are forgotten
+            });
+        }
+        corrections.increment(fixed[0]);
+        reconciledAt = clock.instant();
+        if (fixed[0] > 0) log.info("Corrected statistics of {} supplies", fixed[0]);
+        return fixed[0];
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("Statistics reconciliation failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reconciler != null) reconciler.shutdownNow();
+    }
+
+    /** Takes {@code from}'s contribution out and puts {@code to}'s in; either may be absent or a delete. */
+    private void move(Counted from, Counted to) {
+        count(from, -1);
+        count(to, 1);
+    }
+
+    private void count(Counted c, int sign) {
+        if (c == null || c.deleted()) return;
+        supplies.add(sign);
+        var unit = units.computeIfAbsent(c.unit(), u -> new UnitCounts());
+        unit.supplies.add(sign);
+        unit.amount.add((long) sign * c.amount());
+        (c.amount() < ORANGE_FROM ? red : c.amount() > GREEN_ABOVE ? green : orange).add(sign);
+    }
+}
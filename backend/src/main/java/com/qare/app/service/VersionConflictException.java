@@ -0,0 +1,14 @@
+package com.qare.app.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/** Thrown when a conditional write's expected version no longer matches the row. */
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class VersionConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public VersionConflictException(String name, long expected) {
+        super("'" + name + "' has changed since version " + expected);
+    }
+}
@@ -0,0 +1,503 @@
+package com.qare.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.MedicalSupply;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Opt-in write-behind for supply replacements ({@code qare.write-behind.enabled}).
+ * <p>
+ * {@link #putIfVersion} checks the write against the latest version, appends it to a log
+ * and records it in an overlay that keeps only the latest write per name. The overlay is flushed with {@link SupplyStore#updateAll}
+ * in its own transaction once {@code max-batch} names are pending or every
+ * {@code flush-interval}. Readers check {@link #peek} first, so they see their own writes
+ * before the flush. Log segments are deleted once their writes are committed. Segments left
+ * behind by a crash are replayed at startup.
+ * <p>
+ * The overlay lock is only held for map operations and log appends, never across a query
+ * or an fsync. Writers wait for the log outside it, as a group: one fsync covers every
+ * record appended before it started, so concurrent writers share them.
+ */
+@Component
+public class WriteBehindBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindBuffer.class);
+    private static final String SEGMENT_PREFIX = "writes-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final SupplyStore store;
+    private final TransactionOperations tx;
+    private final ObjectMapper json;
+    private final Path logDir;
+    private final int maxBatch;
+
+    private final ReentrantLock lock = new ReentrantLock();       // overlay, reservations and active segment
+    private final Condition released = lock.newCondition();
+    private final ReentrantLock flushLock = new ReentrantLock();  // one flush at a time
+    private final ReentrantLock syncLock = new ReentrantLock();   // one fsync at a time
+    private LinkedHashMap<String, MedicalSupply> pending = new LinkedHashMap<>();
+    private Map<String, MedicalSupply> inFlight = Map.of();
+    private final Map<String, Thread> reserved = new HashMap<>(); // names held by exclusive writes
+    private long storeWrites; // bumped whenever the store's rows change under the buffer
+    private final List<Path> sealed = new ArrayList<>();
+    private long segment;
+    private FileChannel active;
+    private long appended; // records appended, guarded by lock
+    private long synced;   // records known to be on disk, guarded by syncLock
+
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public WriteBehindBuffer(SupplyStore store, PlatformTransactionManager transactionManager, ObjectMapper json,
+                             @Value("${qare.write-behind.enabled:false}") boolean enabled,
+                             @Value("${qare.write-behind.log-dir:./qare-wal}") Path logDir,
+                             @Value("${qare.write-behind.max-batch:500}") int maxBatch,
+                             @Value("${qare.write-behind.flush-interval:200ms}") Duration flushInterval) {
+        this(store, newTransaction(transactionManager), json, enabled ? logDir : null, maxBatch);
+        if (!enabled && Files.isDirectory(logDir)) replay(logDir); // turned off with writes still unflushed
+        if (enabled) {
+            flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("write-behind").daemon().factory());
+            long millis = flushInterval.toMillis();
+            flusher.scheduleWithFixedDelay(this::flushQuietly, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Without a scheduler: flushes happen on {@link #flush} or when a batch fills. {@code null} log dir disables. */
+    WriteBehindBuffer(SupplyStore store, TransactionOperations tx, ObjectMapper json, Path logDir, int maxBatch) {
+        if (maxBatch < 1) throw new IllegalArgumentException("qare.write-behind.max-batch must be positive");
+        this.store = store;
+        this.tx = tx;
+        this.json = json;
+        this.logDir = logDir;
+        this.maxBatch = maxBatch;
+        if (logDir != null) recover();
+    }
+
+    public boolean enabled() {
+        return logDir != null;
+    }
+
+    /**
+     * Compare-and-set against the latest state, buffered or stored: if {@code name} is at
+     * {@code expectedVersion} (or {@code ANY_VERSION}), makes {@code s} durable in the log
+     * and visible through {@link #peek} at the next version, replacing any pending write
+     * for the same name. Returns once the log is on disk; empty when the supply is missing
+     * or has moved on. The write is visible to {@link #peek} from the append, before the fsync.
+     * <p>
+     * A name that is not buffered is read from the store outside the lock, then checked
+     * again under it: if the store changed meanwhile, the read is retried.
+     */
+    public Optional<MedicalSupply> putIfVersion(MedicalSupply s, long expectedVersion) {
+        // a row the store would reject must fail now, not poison every later flush
+        if (s.name() == null || s.name().isBlank()) throw new IllegalArgumentException("name must not be blank");
+        if (s.amount() < 0) throw new IllegalArgumentException("amount must be non-negative");
+        if (s.unitName() == null || s.unitName().isBlank()) throw new IllegalArgumentException("unitName must not be blank");
+        MedicalSupply next;
+        long ticket;
+        boolean full;
+        Optional<MedicalSupply> stored = Optional.empty();
+        long storedAt = -1; // storeWrites when stored was read
+        while (true) {
+            long writesSeen;
+            lock.lock();
+            try {
+                awaitUnreserved(List.of(s.name()));
+                Optional<MedicalSupply> current = buffered(s.name());
+                if (current.isPresent() || storedAt == storeWrites) {
+                    if (current.isEmpty()) current = stored;
+                    if (current.isEmpty()) return Optional.empty();
+                    long version = current.get().version();
+                    if (expectedVersion != SupplyStore.ANY_VERSION && version != expectedVersion) return Optional.empty();
+                    next = s.withVersion(version + 1);
+                    active.write(ByteBuffer.wrap(toLine(next)));
+                    ticket = ++appended;
+                    pending.remove(next.name()); // re-insert at the end: flush order follows the latest write
+                    pending.put(next.name(), next);
+                    full = pending.size() >= maxBatch;
+                    break;
+                }
+                writesSeen = storeWrites;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not append to write-behind log", e);
+            } finally {
+                lock.unlock();
+            }
+            stored = store.read(s.name());
+            storedAt = writesSeen;
+        }
+        sync(ticket);
+        if (full) {
+            if (flusher != null) flusher.execute(this::flushQuietly);
+            else flush();
+        }
+        return Optional.of(next);
+    }
+
+    /** The latest acknowledged write for {@code name} that may not be in the store yet. */
+    public Optional<MedicalSupply> peek(String name) {
+        lock.lock();
+        try {
+            return buffered(name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Caller holds {@link #lock}. */
+    private Optional<MedicalSupply> buffered(String name) {
+        MedicalSupply s = pending.get(name);
+        return Optional.ofNullable(s != null ? s : inFlight.get(name));
+    }
+
+    /**
+     * Runs a write that bypasses the buffer, in the caller's transaction. Buffered writes to
+     * {@code names} are flushed first, and new buffered writes to them wait until that
+     * transaction has completed, so neither overwrites the other. Only the flush, when one
+     * is needed, takes a connection of its own.
+     */
+    public <T> T exclusive(Collection<String> names, Supplier<T> write) {
+        if (!enabled()) return write.get();
+        List<String> held = reserve(names);
+        boolean untilCompletion = TransactionSynchronizationManager.isSynchronizationActive();
+        if (untilCompletion) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override public void afterCompletion(int status) { release(held); }
+            });
+        }
+        try {
+            if (buffersAny(names)) flush();
+            return write.get();
+        } finally {
+            if (!untilCompletion) release(held);
+        }
+    }
+
+    /**
+     * Waits until no other thread holds any of {@code names}, then holds them all. Returns
+     * the names this call took; those the thread already held stay with their first taker.
+     */
+    private List<String> reserve(Collection<String> names) {
+        Thread me = Thread.currentThread();
+        lock.lock();
+        try {
+            awaitUnreserved(names);
+            List<String> held = new ArrayList<>(names.size());
+            for (String n : names) if (reserved.putIfAbsent(n, me) == null) held.add(n);
+            return held;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(List<String> held) {
+        if (held.isEmpty()) return;
+        lock.lock();
+        try {
+            held.forEach(reserved::remove);
+            storeWrites++;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Caller holds {@link #lock}. */
+    private void awaitUnreserved(Collection<String> names) {
+        Thread me = Thread.currentThread();
+        while (names.stream().anyMatch(n -> {
+            Thread holder = reserved.get(n);
+            return holder != null && holder != me;
+        })) {
+            released.awaitUninterruptibly();
+        }
+    }
+
+    private boolean buffersAny(Collection<String> names) {
+        lock.lock();
+        try {
+            return names.stream().anyMatch(n -> pending.containsKey(n) || inFlight.containsKey(n));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until record {@code ticket} is on disk. One caller at a time forces the log, and
+     * its fsync covers every record appended before it began, so callers that queue behind
+     * it usually find theirs already synced.
+     */
+    private void sync(long ticket) {
+        syncLock.lock();
+        try {
+            if (synced >= ticket) return;
+            FileChannel channel;
+            long upTo;
+            lock.lock();
+            try {
+                channel = active;
+                upTo = appended;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException rolled) {
+                // rollSegment forced the segment before closing it
+            }
+            synced = upTo;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not sync write-behind log", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /** Flushes everything buffered so far, e.g. before a read that scans the store. */
+    public void drain() {
+        if (!enabled()) return;
+        boolean empty;
+        lock.lock();
+        try {
+            empty = pending.isEmpty() && inFlight.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+        if (!empty) flush();
+    }
+
+    /**
+     * Writes the pending overlay to the store in one transaction. On failure the writes go
+     * back into the overlay (behind any newer ones) and their log segments are kept.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<MedicalSupply> batch;
+            List<Path> committed;
+            lock.lock();
+            try {
+                if (pending.isEmpty()) return;
+                batch = seal();
+                committed = List.copyOf(sealed);
+            } finally {
+                lock.unlock();
+            }
+            commit(batch, committed);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /** Moves pending writes in flight and starts a new log segment. Caller holds {@link #lock}. */
+    private List<MedicalSupply> seal() {
+        inFlight = pending;
+        pending = new LinkedHashMap<>();
+        rollSegment();
+        return List.copyOf(inFlight.values());
+    }
+
+    private void commit(List<MedicalSupply> batch, List<Path> committed) {
+        try {
+            tx.executeWithoutResult(status -> store.updateAll(batch));
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                var retry = new LinkedHashMap<>(inFlight);
+                retry.putAll(pending); // newer writes win
+                pending = retry;
+                inFlight = Map.of();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        lock.lock();
+        try {
+            inFlight = Map.of();
+            sealed.removeAll(committed);
+            storeWrites++;
+        } finally {
+            lock.unlock();
+        }
+        for (Path p : committed) deleteQuietly(p);
+    }
+
+    int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size() + inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!enabled()) return;
+        flushQuietly(); // anything left stays in the log for the next start
+        lock.lock();
+        try {
+            active.force(false);
+            active.close();
+        } catch (IOException e) {
+            log.warn("Could not close write-behind log", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Write-behind flush failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /** Replays segments left by an unclean stop, then opens a fresh segment after them. */
+    private void recover() {
+        try {
+            Files.createDirectories(logDir);
+            segment = replay(logDir);
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover write-behind log in " + logDir, e);
+        }
+    }
+
+    /**
+     * Applies the latest write per name from every segment in {@code dir}, in one
+     * transaction, deletes the segments and returns the highest sequence seen.
+     */
+    private long replay(Path dir) {
+        long last = 0;
+        try {
+            List<Path> segments;
+            try (Stream<Path> files = Files.list(dir)) {
+                segments = files.filter(WriteBehindBuffer::isSegment).sorted().toList();
+            }
+            var replay = new LinkedHashMap<String, MedicalSupply>();
+            for (Path p : segments) {
+                for (String line : Files.readAllLines(p, StandardCharsets.UTF_8)) {
+                    if (line.isBlank()) continue;
+                    try {
+                        var s = json.readValue(line, MedicalSupply.class);
+                        replay.remove(s.name());
+                        replay.put(s.name(), s);
+                    } catch (IOException torn) {
+                        log.warn("Skipping unreadable write-behind record in {}", p.getFileName());
+                    }
+                }
+                last = Math.max(last, sequenceOf(p));
+            }
+            if (!replay.isEmpty()) {
+                List<MedicalSupply> batch = List.copyOf(replay.values());
+                tx.executeWithoutResult(status -> store.updateAll(batch));
+                log.info("Replayed {} write-behind writes from {} log segment(s)", batch.size(), segments.size());
+            }
+            for (Path p : segments) Files.delete(p);
+            return last;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replay write-behind log in " + dir, e);
+        }
+    }
+
+    /** Caller holds {@link #lock}. */
+    private void rollSegment() {
+        try {
+            active.force(false); // appends not yet synced by their writers
+            active.close();
+            sealed.add(segmentPath(segment));
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not roll write-behind log", e);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segment++;
+        active = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long seq) {
+        return logDir.resolve(SEGMENT_PREFIX + String.format("%019d", seq) + SEGMENT_SUFFIX);
+    }
+
+    private static boolean isSegment(Path p) {
+        String n = p.getFileName().toString();
+        return n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long sequenceOf(Path p) {
+        String n = p.getFileName().toString();
+        return Long.parseLong(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private byte[] toLine(MedicalSupply s) {
+        try {
+            return (json.writeValueAsString(s) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException e) {
+            log.warn("Could not delete flushed write-behind segment {}", p.getFileName(), e);
+        }
+    }
+
+    private static TransactionOperations newTransaction(PlatformTransactionManager transactionManager) {
+        var template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+}
@@ -0,0 +1,82 @@
+package com.qare.app.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class ConnectionBulkheadTest {
+
+    private final DataSource target = mock(DataSource.class);
+
+    private ConnectionBulkhead.Bulkheaded wrap(int permits) {
+        var bulkhead = new ConnectionBulkhead(permits, Duration.ofMillis(50));
+        return (ConnectionBulkhead.Bulkheaded) bulkhead.postProcessAfterInitialization(target, "dataSource");
+    }
+
+    @Test
+    void failsFastWhenAllPermitsAreHeld() throws SQLException {
+        when(target.getConnection()).thenReturn(mock(Connection.class));
+        var ds = wrap(1);
+
+        Connection held = ds.getConnection();
+
+        assertThatThrownBy(ds::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        held.close();
+        assertThat(ds.getConnection()).isNotNull();
+    }
+
+    @Test
+    void closeReleasesPermitOnceAndClosesTarget() throws SQLException {
+        Connection raw = mock(Connection.class);
+        when(target.getConnection()).thenReturn(raw);
+        var ds = wrap(2);
+
+        Connection c = ds.getConnection();
+        assertThat(ds.available()).isEqualTo(1);
+        c.close();
+        c.close();
+
+        assertThat(ds.available()).isEqualTo(2);
+        verify(raw, times(1)).close();
+    }
+
+    @Test
+    void releasesPermitWhenPoolThrows() throws SQLException {
+        when(target.getConnection()).thenThrow(new SQLException("pool down"));
+        var ds = wrap(1);
+
+        assertThatThrownBy(ds::getConnection).hasMessage("pool down");
+        assertThat(ds.available()).isEqualTo(1);
+    }
+
+    @Test
+    void delegatesOtherCallsAndUnwrapsExceptions() throws SQLException {
+        Connection raw = mock(Connection.class);
+        when(raw.getAutoCommit()).thenReturn(false);
+        doThrow(new SQLException("boom")).when(raw).commit();
+        when(target.getConnection()).thenReturn(raw);
+
+        Connection c = wrap(1).getConnection();
+
+        assertThat(c.getAutoCommit()).isFalse();
+        assertThatThrownBy(c::commit).isInstanceOf(SQLException.class).hasMessage("boom");
+    }
+
+    @Test
+    void leavesOtherBeansAndAlreadyWrappedSourcesAlone() {
+        var bulkhead = new ConnectionBulkhead(1, Duration.ofMillis(50));
+        Object other = new Object();
+        var wrapped = wrap(1);
+
+        assertThat(bulkhead.postProcessAfterInitialization(other, "x")).isSameAs(other);
+        assertThat(bulkhead.postProcessAfterInitialization(wrapped, "x")).isSameAs(wrapped);
+    }
+}
@@ -1,15 +1,32 @@
 package com.qare.app.config;
 
+import com.qare.app.model.LocationStock;
+import com.qare.app.model.Lot;
+import com.qare.app.model.LotPage;
 import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.StockMovement;
+import com.qare.app.model.StockOutlook;
+import com.qare.app.model.SupplyPage;
+import com.qare.app.model.SupplyTotal;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -23,6 +40,9 @@ class DBConfigTest {
     @Autowired
     JdbcTemplate jdbc;
 
+    @Autowired
+    PlatformTransactionManager transactions;
+
     @Test
     void verifyDBandTableWereCreated() {
         Integer count = jdbc.queryForObject(
@@ -31,6 +51,14 @@ class DBConfigTest {
         assertThat(count).isEqualTo(1);
     }
 
+    @Test
+    void verifyAmountIndexWasCreated() {
+        Integer count = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'IDX_SUPPLIES_AMOUNT'",
+                Integer.class);
+        assertThat(count).isEqualTo(1);
+    }
+
     @Test
     void create_and_read_item() {
         var s = new MedicalSupply("Gauze", 10, "pack");
@@ -42,41 +70,395 @@ class DBConfigTest {
     }
 
     @Test
-    void readAll_returnsAlphabeticalByName() {
+    void forEach_isAlphabeticalByName() {
         db.create(new MedicalSupply("Bandage", 5, "pack"));
         db.create(new MedicalSupply("Alcohol", 2, "bottle"));
         db.create(new MedicalSupply("Cotton", 7, "bag"));
 
-        List<MedicalSupply> all = db.readAll();
+        List<MedicalSupply> all = all(db);
         assertThat(all).extracting(MedicalSupply::name)
                 .containsExactly("Alcohol", "Bandage", "Cotton"); // order by name
     }
 
     @Test
-    void update_existing_returnsTrue() {
+    void readPage_walksTableByNameCursor() {
+        db.create(new MedicalSupply("Bandage", 5, "pack"));
+        db.create(new MedicalSupply("Alcohol", 2, "bottle"));
+        db.create(new MedicalSupply("Cotton", 7, "bag"));
+
+        SupplyPage first = db.readPage(null, 2);
+        assertThat(first.items()).extracting(MedicalSupply::name)
+                .containsExactly("Alcohol", "Bandage");
+        assertThat(first.nextCursor()).isEqualTo("Bandage");
+
+        SupplyPage second = db.readPage(first.nextCursor(), 2);
+        assertThat(second.items()).extracting(MedicalSupply::name)
+                .containsExactly("Cotton");
+        assertThat(second.nextCursor()).isNull(); // last page
+    }
+
+    @Test
+    void readByNames_returnsExistingRowsOnly_acrossChunks() {
+        int n = DBConfig.READ_CHUNK_SIZE + 2;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String name = "s" + i;
+            names.add(name);
+            if (i % 2 == 0) db.create(new MedicalSupply(name, i, "box"));
+        }
+        names.add("Ghost");
+
+        var found = db.readByNames(names);
+
+        assertThat(found).hasSize(n / 2)
+                .extracting(MedicalSupply::name).doesNotContain("s1", "Ghost").contains("s0", "s" + (n - 2));
+        assertThat(db.readByNames(List.of())).isEmpty();
+    }
+
+    @Test
+    void readPage_exactFit_hasNoNextCursor() {
+        db.create(new MedicalSupply("Alcohol", 2, "bottle"));
+        db.create(new MedicalSupply("Bandage", 5, "pack"));
+
+        SupplyPage page = db.readPage(null, 2);
+        assertThat(page.items()).hasSize(2);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void readPage_rejectsNonPositiveLimit() {
+        assertThatThrownBy(() -> db.readPage(null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void readLowStock_pagesBelowThreshold_lowestFirst() {
+        db.create(new MedicalSupply("Gloves", 2, "box"));
+        db.create(new MedicalSupply("Alcohol", 2, "bottle"));
+        db.create(new MedicalSupply("Mask", 0, "box"));
+        db.create(new MedicalSupply("Gauze", 9, "pack"));
+        db.create(new MedicalSupply("Syringe", 30, "box"));
+
+        SupplyPage first = db.readLowStock(10, null, 2);
+        assertThat(first.items()).extracting(MedicalSupply::name).containsExactly("Mask", "Alcohol");
+        assertThat(first.nextCursor()).isEqualTo("2:Alcohol");
+
+        SupplyPage second = db.readLowStock(10, first.nextCursor(), 2);
+        assertThat(second.items()).extracting(MedicalSupply::name).containsExactly("Gloves", "Gauze");
+        assertThat(second.nextCursor()).isNull();
+    }
+
+    @Test
+    void readLowStock_rejectsMalformedCursor() {
+        assertThatThrownBy(() -> db.readLowStock(10, "Gloves", 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void forEach_streamsEveryRowInNameOrder() {
+        db.create(new MedicalSupply("Bandage", 5, "pack"));
+        db.create(new MedicalSupply("Alcohol", 2, "bottle"));
+
+        List<MedicalSupply> seen = new ArrayList<>();
+        db.forEach(seen::add);
+
+        assertThat(seen).containsExactly(
+                new MedicalSupply("Alcohol", 2, "bottle"),
+                new MedicalSupply("Bandage", 5, "pack"));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // the version moves when a write commits
+    void catalogVersion_movesWithEveryCommittedWrite_andNotWithReadsOrRollbacks() {
+        try {
+            long empty = db.catalogVersion();
+            db.create(new MedicalSupply("Gloves", 1, "box"));
+            long created = db.catalogVersion();
+            assertThat(created).isGreaterThan(empty);
+            db.readPage(null, 10);
+            db.read("Gloves");
+            assertThat(db.catalogVersion()).isEqualTo(created);
+
+            db.addToAmount("Gloves", 1);
+            long added = db.catalogVersion();
+            assertThat(added).isGreaterThan(created);
+
+            new TransactionTemplate(transactions).executeWithoutResult(status -> {
+                db.update(new MedicalSupply("Gloves", 9, "pack"), SupplyStore.ANY_VERSION);
+                status.setRollbackOnly();
+            });
+            assertThat(db.catalogVersion()).isEqualTo(added);
+
+            db.update(new MedicalSupply("Gloves", 2, "pack"), SupplyStore.ANY_VERSION);
+            long updated = db.catalogVersion();
+            assertThat(updated).isGreaterThan(added);
+
+            db.delete("Gloves", SupplyStore.ANY_VERSION);
+            assertThat(db.catalogVersion()).isGreaterThan(updated);
+        } finally {
+            jdbc.update("DELETE FROM supplies");
+            jdbc.update("DELETE FROM supply_movements");
+            jdbc.update("DELETE FROM supply_tombstones");
+        }
+    }
+
+    @Test
+    void recreatedSupply_carriesOnFromTheDeletedRowsVersion() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        db.addToAmount("Gloves", 1);
+        db.delete("Gloves", SupplyStore.ANY_VERSION);
+
+        assertThat(db.create(new MedicalSupply("Gloves", 5, "box"))).isEqualTo(new MedicalSupply("Gloves", 5, "box", 2));
+        assertThat(db.update(new MedicalSupply("Gloves", 9, "box"), 0)).isEmpty(); // an ETag of the deleted row
+        db.delete("Gloves", 2);
+        assertThat(db.upsert(new MedicalSupply("Gloves", 3, "box"))).isEqualTo(new MedicalSupply("Gloves", 3, "box", 3));
+        db.delete("Gloves", 3);
+        assertThat(db.upsertAll(List.of(new MedicalSupply("Gloves", 4, "box"))))
+                .containsExactly(new MedicalSupply("Gloves", 4, "box", 4));
+        assertThat(db.create(new MedicalSupply("Mask", 1, "box")).version()).isZero();
+    }
+
+    @Test
+    void upsertAll_insertsNewAndReplacesExisting() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+
+        db.upsertAll(List.of(
+                new MedicalSupply("Gloves", 40, "box"),
+                new MedicalSupply("Mask", 12, "box")));
+
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 40, "box", 1));
+        assertThat(db.read("Mask")).contains(new MedicalSupply("Mask", 12, "box"));
+    }
+
+    @Test
+    void upsertAll_rejectsInvalidRow_beforeHittingDB() {
+        assertThatThrownBy(() -> db.upsertAll(List.of(
+                new MedicalSupply("Ok", 1, "box"),
+                new MedicalSupply("Bad", -1, "box"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(db.read("Ok")).isEmpty();
+    }
+
+    @Test
+    void update_atExpectedVersion_returnsRowAtNextVersion() {
         db.create(new MedicalSupply("Syringe", 1, "box"));
 
-        boolean updated = db.update(new MedicalSupply("Syringe", 3, "box"));
-        assertThat(updated).isTrue();
+        assertThat(db.update(new MedicalSupply("Syringe", 3, "box"), 0))
+                .contains(new MedicalSupply("Syringe", 3, "box", 1));
+        assertThat(db.read("Syringe")).contains(new MedicalSupply("Syringe", 3, "box", 1));
+    }
+
+    @Test
+    void update_staleVersion_isEmpty_andLeavesRowUntouched() {
+        db.create(new MedicalSupply("Syringe", 1, "box"));
+        db.update(new MedicalSupply("Syringe", 2, "box"), 0);
+
+        assertThat(db.update(new MedicalSupply("Syringe", 9, "box"), 0)).isEmpty();
+        assertThat(db.read("Syringe")).contains(new MedicalSupply("Syringe", 2, "box", 1));
+    }
+
+    @Test
+    void update_anyVersion_isUnconditional() {
+        db.create(new MedicalSupply("Syringe", 1, "box"));
+        db.update(new MedicalSupply("Syringe", 2, "box"), 0);
+
+        assertThat(db.update(new MedicalSupply("Syringe", 5, "box"), SupplyStore.ANY_VERSION))
+                .contains(new MedicalSupply("Syringe", 5, "box", 2));
+    }
+
+    @Test
+    void update_missing_isEmpty() {
+        assertThat(db.update(new MedicalSupply("Nope", 1, "unit"), 0)).isEmpty();
+    }
+
+    @Test
+    void everyChange_bumpsVersion() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        assertThat(db.upsert(new MedicalSupply("Gloves", 2, "box"))).isEqualTo(new MedicalSupply("Gloves", 2, "box", 1));
+        assertThat(db.addToAmount("Gloves", 1)).contains(new MedicalSupply("Gloves", 3, "box", 2));
+        assertThat(db.upsertAll(List.of(new MedicalSupply("Gloves", 4, "box"), new MedicalSupply("Mask", 1, "box"))))
+                .containsExactly(new MedicalSupply("Gloves", 4, "box", 3), new MedicalSupply("Mask", 1, "box", 0));
+    }
+
+    @Test
+    void initDB_addsVersionColumn_toTableCreatedBeforeVersioning() {
+        jdbc.execute("DROP TABLE supply_stock");
+        jdbc.execute("DROP TABLE supply_lots");
+        jdbc.execute("DROP TABLE supplies");
+        jdbc.execute("CREATE TABLE supplies (name VARCHAR(255) PRIMARY KEY, amount INT NOT NULL, \"unitName\" VARCHAR(255) NOT NULL)");
+        jdbc.update("INSERT INTO supplies VALUES ('Gloves', 4, 'box')");
+
+        db.initDB();
+
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 4, "box", 0));
+        // the DDL above committed, so rollback will not clean up; supply_stock's foreign key blocks a plain truncate
+        jdbc.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        jdbc.execute("TRUNCATE TABLE supplies");
+        jdbc.execute("SET REFERENTIAL_INTEGRITY TRUE");
+    }
+
+    @Test
+    void addToLocationStock_overflow_isRejected_andLeavesRowUntouched() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        db.setLocationStock("Gloves", "north", Integer.MAX_VALUE - 1);
+
+        assertThatThrownBy(() -> db.addToLocationStock("Gloves", "north", 2))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("overflow");
+        assertThat(db.readLocationStock("Gloves")).containsExactly(
+                new LocationStock("Gloves", "north", Integer.MAX_VALUE - 1, 0));
+        assertThat(db.addToLocationStock("Gloves", "north", 1))
+                .contains(new LocationStock("Gloves", "north", Integer.MAX_VALUE, 1));
+    }
+
+    @Test
+    void locationStock_isPerLocationRow_andRejectsMissingSupplyOrNegativeStock() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+
+        assertThat(db.setLocationStock("Gloves", "north", 5)).contains(new LocationStock("Gloves", "north", 5, 0));
+        assertThat(db.setLocationStock("Gloves", "north", 7)).contains(new LocationStock("Gloves", "north", 7, 1));
+        assertThat(db.addToLocationStock("Gloves", "south", 2)).contains(new LocationStock("Gloves", "south", 2, 0));
+        assertThat(db.addToLocationStock("Gloves", "south", -3)).isEmpty();
+        assertThat(db.addToLocationStock("Gloves", "east", -1)).isEmpty();
+        assertThat(db.setLocationStock("Ghost", "north", 1)).isEmpty();
+        assertThat(db.addToLocationStock("Ghost", "north", 1)).isEmpty();
+        assertThatThrownBy(() -> db.setLocationStock("Gloves", " ", 1)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(db.readLocationStock("Gloves")).containsExactly(
+                new LocationStock("Gloves", "north", 7, 1), new LocationStock("Gloves", "south", 2, 0));
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 1, "box")); // the supply row is not touched
+
+        db.delete("Gloves", SupplyStore.ANY_VERSION);
+        assertThat(db.readLocationStock("Gloves")).isEmpty();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // totals read committed rows on other connections
+    void readTotals_sumsEveryLocation() {
+        try {
+            db.create(new MedicalSupply("Gloves", 1, "box"));
+            db.create(new MedicalSupply("Mask", 1, "box"));
+            db.create(new MedicalSupply("Gauze", 1, "roll"));
+            db.setLocationStock("Gloves", "north", 5);
+            db.setLocationStock("Gloves", "south", 7);
+            db.setLocationStock("Mask", "south", 3);
+
+            assertThat(db.readTotals()).containsExactly(new SupplyTotal("Gloves", 12, 2), new SupplyTotal("Mask", 3, 1));
+        } finally {
+            jdbc.update("DELETE FROM supplies");
+            jdbc.update("DELETE FROM supply_movements");
+        }
+    }
+
+    @Test
+    void updateAll_skipsRowsAlreadyPastTheGivenVersion() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        db.addToAmount("Gloves", 1);
+        db.addToAmount("Gloves", 1);
+
+        assertThat(db.updateAll(List.of(new MedicalSupply("Gloves", 9, "pair", 1), new MedicalSupply("Gloves", 8, "pair", 2))))
+                .isZero();
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 3, "box", 2));
+        assertThat(db.updateAll(List.of(new MedicalSupply("Gloves", 9, "pair", 3)))).isEqualTo(1);
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 9, "pair", 3));
+        assertThat(db.readMovements("Gloves", 10)).extracting(StockMovement::delta).containsExactly(6, 1, 1, 1);
+    }
+
+    @Test
+    void updateAll_updatesExistingRows_andSkipsMissingOnes() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        db.create(new MedicalSupply("Mask", 2, "box"));
+
+        int updated = db.updateAll(List.of(
+                new MedicalSupply("Gloves", 7, "pair", 3),
+                new MedicalSupply("Ghost", 3, "box", 1),
+                new MedicalSupply("Mask", 9, "box", 1)));
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(all(db)).containsExactly(
+                new MedicalSupply("Gloves", 7, "pair", 3),
+                new MedicalSupply("Mask", 9, "box", 1));
+    }
+
+    @Test
+    void addToAmount_appliesDelta_andReturnsNewRow() {
+        db.create(new MedicalSupply("Gloves", 10, "box"));
+
+        assertThat(db.addToAmount("Gloves", -4)).contains(new MedicalSupply("Gloves", 6, "box", 1));
+        assertThat(db.addToAmount("Gloves", 5)).contains(new MedicalSupply("Gloves", 11, "box", 2));
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 11, "box", 2));
+    }
+
+    @Test
+    void addToAmount_wouldGoNegative_leavesRowUntouched() {
+        db.create(new MedicalSupply("Gloves", 3, "box"));
+
+        assertThat(db.addToAmount("Gloves", -4)).isEmpty();
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 3, "box"));
     }
 
     @Test
-    void update_missing_returnsFalse() {
-        boolean updated = db.update(new MedicalSupply("Nope", 1, "unit"));
-        assertThat(updated).isFalse();
+    void addToAmount_overflow_isRejected_andLeavesRowUntouched() {
+        db.create(new MedicalSupply("Gloves", Integer.MAX_VALUE - 1, "box"));
+
+        assertThatThrownBy(() -> db.addToAmount("Gloves", 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> db.receiveLot("Gloves", "L1", LocalDate.of(2030, 1, 1), Integer.MAX_VALUE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(db.addToAmount("Gloves", 1)).contains(new MedicalSupply("Gloves", Integer.MAX_VALUE, "box", 1));
+        assertThat(db.addToAmount("Gloves", Integer.MIN_VALUE)).isEmpty();
+    }
+
+    @Test
+    void addToAmount_missing_isEmpty() {
+        assertThat(db.addToAmount("Nope", 1)).isEmpty();
+    }
+
+    @Test
+    void addToAmounts_appliesEveryDelta_andRecordsEachInTheLedger() {
+        db.create(new MedicalSupply("Mask", 10, "box"));
+        db.create(new MedicalSupply("Gauze", 4, "roll"));
+        db.create(new MedicalSupply("Gloves", 7, "box"));
+
+        assertThat(db.addToAmounts(new TreeMap<>(Map.of("Mask", -10, "Gauze", 2, "Gloves", -1)))).contains(List.of(
+                new MedicalSupply("Gauze", 6, "roll", 1),
+                new MedicalSupply("Gloves", 6, "box", 1),
+                new MedicalSupply("Mask", 0, "box", 1)));
+        assertThat(db.readMovements("Mask", 1)).extracting(StockMovement::delta).containsExactly(-10);
+        assertThat(db.readOutlook("Gloves")).get().extracting(StockOutlook::consumedLastWeek).isEqualTo(1L);
+    }
+
+    @Test
+    void addToAmounts_oneShortOrMissing_writesNothing() {
+        db.create(new MedicalSupply("Mask", 10, "box"));
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+
+        assertThat(db.addToAmounts(new TreeMap<>(Map.of("Mask", -3, "Gloves", -2)))).isEmpty();
+        assertThat(db.addToAmounts(new TreeMap<>(Map.of("Mask", -3, "Nope", 1)))).isEmpty();
+
+        assertThat(all(db)).containsExactly(new MedicalSupply("Gloves", 1, "box"), new MedicalSupply("Mask", 10, "box"));
+        assertThat(db.readMovements("Mask", 10)).extracting(StockMovement::delta).containsExactly(10);
     }
 
     @Test
     void delete_existing_returnsTrue_andRemovesRow() {
         db.create(new MedicalSupply("Thermometer", 2, "pcs"));
-        boolean deleted = db.delete("Thermometer");
+        boolean deleted = db.delete("Thermometer", 0);
         assertThat(deleted).isTrue();
         assertThat(db.read("Thermometer")).isEmpty();
     }
 
+    @Test
+    void delete_staleVersion_returnsFalse_andKeepsRow() {
+        db.create(new MedicalSupply("Thermometer", 2, "pcs"));
+        db.addToAmount("Thermometer", 1);
+
+        assertThat(db.delete("Thermometer", 0)).isFalse();
+        assertThat(db.read("Thermometer")).isPresent();
+        assertThat(db.delete("Thermometer", SupplyStore.ANY_VERSION)).isTrue();
+    }
+
     @Test
     void delete_missing_returnsFalse() {
-        assertThat(db.delete("Missing")).isFalse();
+        assertThat(db.delete("Missing", 0)).isFalse();
     }
 
     @Test
@@ -93,6 +475,26 @@ class DBConfigTest {
                 .hasMessageContaining("non-negative");
     }
 
+    @Test
+    void overlongText_isRejected_neverStoredCutDown() {
+        String longest = "n".repeat(DBConfig.MAX_TEXT_LENGTH);
+        String tooLong = longest + "x";
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+
+        assertThatThrownBy(() -> db.create(new MedicalSupply(tooLong, 1, "box"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> db.upsert(new MedicalSupply(tooLong, 1, "box"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> db.upsertAll(List.of(new MedicalSupply("Gloves", 1, tooLong))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> db.setLocationStock("Gloves", tooLong, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> db.receiveLot("Gloves", "L".repeat(DBConfig.MAX_LOT_LENGTH + 1), LocalDate.of(2030, 1, 1), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(db.readByNames(List.of(longest))).isEmpty();
+
+        assertThat(db.upsert(new MedicalSupply(longest, 1, longest))).isEqualTo(new MedicalSupply(longest, 1, longest));
+        assertThat(db.read(longest)).contains(new MedicalSupply(longest, 1, longest));
+        assertThat(db.setLocationStock(longest, longest, 2)).contains(new LocationStock(longest, longest, 2, 0));
+    }
+
     @Test
     void db_enforces_check_constraint_amount_nonNegative() {
         assertThatThrownBy(() ->
@@ -100,4 +502,149 @@ class DBConfigTest {
                         "DBBad", -5, "unit"))
                 .isInstanceOf(DataIntegrityViolationException.class);
     }
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    private DBConfig on(LocalDate day) {
+        return new DBConfig(jdbc, 1000, 4, Clock.fixed(day.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    @Test
+    void everyStockChange_isAppendedToLedger_newestFirst() {
+        db.create(new MedicalSupply("Gloves", 10, "box"));
+        db.addToAmount("Gloves", -3);
+        db.update(new MedicalSupply("Gloves", 20, "box"), SupplyStore.ANY_VERSION);
+        db.upsert(new MedicalSupply("Gloves", 15, "box"));
+        db.upsertAll(List.of(new MedicalSupply("Gloves", 15, "pair"), new MedicalSupply("Mask", 4, "box")));
+        db.delete("Gloves", SupplyStore.ANY_VERSION);
+
+        assertThat(db.readMovements("Gloves", 10)).extracting(StockMovement::delta)
+                .containsExactly(-15, -5, 13, -3, 10); // the unit-only change moved no stock
+        assertThat(db.readMovements("Gloves", 2)).hasSize(2);
+        assertThat(db.readMovements("Mask", 10)).extracting(StockMovement::delta).containsExactly(4);
+    }
+
+    @Test
+    void updateAll_recordsDeltasAgainstCurrentRows() {
+        db.create(new MedicalSupply("Gloves", 10, "box"));
+
+        db.updateAll(List.of(new MedicalSupply("Gloves", 4, "box", 5), new MedicalSupply("Ghost", 1, "box", 1)));
+
+        assertThat(db.readMovements("Gloves", 10)).extracting(StockMovement::delta).containsExactly(-6, 10);
+        assertThat(db.readMovements("Ghost", 10)).isEmpty();
+        assertThat(db.readOutlook("Gloves")).get().extracting(StockOutlook::consumedToday).isEqualTo(6L);
+    }
+
+    @Test
+    void outlook_averagesConsumptionOverLastWeek_ignoringRestocksAndOlderDays() {
+        on(TODAY.minusDays(8)).create(new MedicalSupply("Gloves", 100, "box"));
+        on(TODAY.minusDays(7)).addToAmount("Gloves", -50); // just outside the window
+        on(TODAY.minusDays(3)).addToAmount("Gloves", -14);
+        on(TODAY).addToAmount("Gloves", -7);
+        on(TODAY).addToAmount("Gloves", 20);
+
+        var outlook = on(TODAY).readOutlook("Gloves").orElseThrow();
+
+        assertThat(outlook).isEqualTo(new StockOutlook("Gloves", 49, 7, 21, 3.0, 49 / 3.0));
+        assertThat(on(TODAY).readMovements("Gloves", 1).getFirst().at())
+                .isEqualTo(TODAY.atTime(12, 0).toInstant(ZoneOffset.UTC));
+        assertThat(jdbc.queryForList("SELECT on_day FROM supply_consumption ORDER BY on_day", LocalDate.class))
+                .as("days before the window are pruned on the next consumption")
+                .containsExactly(TODAY.minusDays(3), TODAY);
+    }
+
+    @Test
+    void outlook_withoutConsumption_hasNoDaysRemaining_missingIsEmpty() {
+        db.create(new MedicalSupply("Gloves", 5, "box"));
+
+        assertThat(db.readOutlook("Gloves")).contains(new StockOutlook("Gloves", 5, 0, 0, 0.0, null));
+        assertThat(db.readOutlook("Ghost")).isEmpty();
+    }
+
+    @Test
+    void delete_keepsLedger_butRecreatedSupplyStartsWithoutConsumption() {
+        db.create(new MedicalSupply("Gloves", 10, "box"));
+        db.addToAmount("Gloves", -4);
+        db.delete("Gloves", SupplyStore.ANY_VERSION);
+        db.create(new MedicalSupply("Gloves", 3, "box"));
+
+        assertThat(db.readOutlook("Gloves")).get().extracting(StockOutlook::consumedLastWeek).isEqualTo(0L);
+        assertThat(db.readMovements("Gloves", 10)).extracting(StockMovement::delta).containsExactly(3, -6, -4, 10);
+    }
+
+    @Test
+    void lots_addToTheSupply_andDecreasesDrawUnexpiredLotsFirstExpiredFirst() {
+        var today = on(TODAY);
+        today.create(new MedicalSupply("Gauze", 2, "roll")); // stock outside any lot
+        today.receiveLot("Gauze", "B-2", TODAY.plusDays(90), 5);
+        today.receiveLot("Gauze", "A-1", TODAY.plusDays(30), 4);
+        today.receiveLot("Gauze", "OLD", TODAY.minusDays(1), 3);
+        assertThat(today.receiveLot("Gauze", "A-1", TODAY.plusDays(30), 1)).get()
+                .extracting(MedicalSupply::amount).isEqualTo(15);
+
+        assertThat(today.addToAmount("Gauze", -7)).get().extracting(MedicalSupply::amount).isEqualTo(8);
+
+        assertThat(today.readLots("Gauze")).containsExactly(
+                new Lot("Gauze", "OLD", TODAY.minusDays(1), 3),  // expired: never picked
+                new Lot("Gauze", "B-2", TODAY.plusDays(90), 3)); // A-1 used up and gone
+        today.addToAmounts(new TreeMap<>(Map.of("Gauze", -5)));
+        assertThat(today.readLots("Gauze")).extracting(Lot::lot).containsExactly("OLD");
+    }
+
+    @Test
+    void receiveLot_withAnotherExpiry_isRejected_unknownSupplyIsEmpty() {
+        db.create(new MedicalSupply("Gauze", 0, "roll"));
+        db.receiveLot("Gauze", "A-1", TODAY, 4);
+
+        assertThatThrownBy(() -> db.receiveLot("Gauze", "A-1", TODAY.plusDays(1), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(db.receiveLot("Nope", "A-1", TODAY, 1)).isEmpty();
+        assertThat(db.read("Gauze")).get().extracting(MedicalSupply::amount).isEqualTo(4);
+    }
+
+    @Test
+    void writeOffLot_removesWhatIsLeft_asRemovalNotConsumption_andDeleteDropsLots() {
+        var today = on(TODAY);
+        today.create(new MedicalSupply("Gauze", 1, "roll"));
+        today.receiveLot("Gauze", "OLD", TODAY.minusDays(1), 3);
+        today.receiveLot("Gauze", "NEW", TODAY.plusDays(1), 3);
+
+        assertThat(today.writeOffLot("Gauze", "OLD")).contains(new MedicalSupply("Gauze", 4, "roll", 3));
+        assertThat(today.writeOffLot("Gauze", "OLD")).isEmpty();
+        assertThat(today.readOutlook("Gauze")).get().extracting(StockOutlook::consumedLastWeek).isEqualTo(0L);
+        assertThat(today.readMovements("Gauze", 1)).extracting(StockMovement::delta).containsExactly(-3);
+
+        today.delete("Gauze", SupplyStore.ANY_VERSION);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM supply_lots", Integer.class)).isZero();
+    }
+
+    @Test
+    void readExpiringLots_pagesSoonestFirst_asARangeScanOnTheExpiryIndex() {
+        db.create(new MedicalSupply("Gauze", 0, "roll"));
+        db.create(new MedicalSupply("Mask", 0, "box"));
+        db.receiveLot("Mask", "M1", TODAY.plusDays(3), 1);
+        db.receiveLot("Gauze", "G1", TODAY.plusDays(3), 1);
+        db.receiveLot("Gauze", "G0", TODAY.minusDays(2), 1);
+        db.receiveLot("Gauze", "G9", TODAY.plusDays(60), 1);
+
+        LotPage first = db.readExpiringLots(null, TODAY.plusDays(30), null, 2);
+        assertThat(first.items()).extracting(Lot::lot).containsExactly("G0", "G1");
+        assertThat(first.nextCursor()).isEqualTo(TODAY.plusDays(3) + ":G1:Gauze");
+        LotPage second = db.readExpiringLots(null, TODAY.plusDays(30), first.nextCursor(), 2);
+        assertThat(second).isEqualTo(new LotPage(List.of(new Lot("Mask", "M1", TODAY.plusDays(3), 1)), null));
+        assertThatThrownBy(() -> db.readExpiringLots(null, TODAY, "junk", 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(db.readExpiringLots(TODAY, TODAY.plusDays(30), null, 10).items())
+                .extracting(Lot::lot).containsExactly("G1", "M1");
+
+        String plan = jdbc.queryForObject("EXPLAIN SELECT name, lot, expires_on, amount FROM supply_lots "
+                + "WHERE expires_on <= DATE '2026-04-01' ORDER BY expires_on, lot, name LIMIT 10", String.class);
+        assertThat(plan).contains("IDX_LOTS_EXPIRY").doesNotContain("tableScan");
+    }
+
+    /** Every row in name order, through the store's streaming read. */
+    private static List<MedicalSupply> all(SupplyStore store) {
+        List<MedicalSupply> rows = new ArrayList<>();
+        store.forEach(rows::add);
+        return rows;
+    }
 }
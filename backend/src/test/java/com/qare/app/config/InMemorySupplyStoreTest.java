@@ -0,0 +1,393 @@
+package com.qare.app.config;
+
+import com.qare.app.model.LocationStock;
+import com.qare.app.model.Lot;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.StockMovement;
+import com.qare.app.model.StockOutlook;
+import com.qare.app.model.SupplyPage;
+import com.qare.app.model.SupplyTotal;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+class InMemorySupplyStoreTest {
+
+    final InMemorySupplyStore db = new InMemorySupplyStore();
+
+    @Test
+    void create_and_read_item() {
+        var s = new MedicalSupply("Gauze", 10, "pack");
+        db.create(s);
+
+        assertThat(db.read("Gauze")).contains(s);
+    }
+
+    @Test
+    void create_duplicateName_throwsDataIntegrityViolation() {
+        db.create(new MedicalSupply("Mask", 10, "box"));
+        assertThatThrownBy(() -> db.create(new MedicalSupply("Mask", 5, "box")))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(db.read("Mask")).contains(new MedicalSupply("Mask", 10, "box"));
+    }
+
+    @Test
+    void validate_rejectsNegativeAmount() {
+        assertThatThrownBy(() -> db.create(new MedicalSupply("Bad", -1, "unit")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("non-negative");
+    }
+
+    @Test
+    void readByNames_skipsMissingNames() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        db.create(new MedicalSupply("Mask", 2, "box"));
+
+        assertThat(db.readByNames(List.of("Mask", "Ghost", "Gloves")))
+                .containsExactlyInAnyOrder(new MedicalSupply("Gloves", 1, "box"), new MedicalSupply("Mask", 2, "box"));
+    }
+
+    @Test
+    void forEach_isInNameOrder() {
+        db.create(new MedicalSupply("Bandage", 5, "pack"));
+        db.create(new MedicalSupply("Alcohol", 2, "bottle"));
+        db.create(new MedicalSupply("Cotton", 7, "bag"));
+
+        assertThat(all(db)).extracting(MedicalSupply::name).containsExactly("Alcohol", "Bandage", "Cotton");
+    }
+
+    @Test
+    void readPage_walksByNameCursor() {
+        db.create(new MedicalSupply("Bandage", 5, "pack"));
+        db.create(new MedicalSupply("Alcohol", 2, "bottle"));
+        db.create(new MedicalSupply("Cotton", 7, "bag"));
+
+        SupplyPage first = db.readPage(null, 2);
+        assertThat(first.items()).extracting(MedicalSupply::name).containsExactly("Alcohol", "Bandage");
+        assertThat(first.nextCursor()).isEqualTo("Bandage");
+
+        SupplyPage second = db.readPage(first.nextCursor(), 2);
+        assertThat(second.items()).extracting(MedicalSupply::name).containsExactly("Cotton");
+        assertThat(second.nextCursor()).isNull();
+
+        assertThatThrownBy(() -> db.readPage(null, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void readLowStock_pagesBelowThreshold_lowestFirst() {
+        db.create(new MedicalSupply("Gloves", 2, "box"));
+        db.create(new MedicalSupply("Alcohol", 2, "bottle"));
+        db.create(new MedicalSupply("Mask", 0, "box"));
+        db.create(new MedicalSupply("Gauze", 9, "pack"));
+        db.create(new MedicalSupply("Syringe", 30, "box"));
+
+        SupplyPage first = db.readLowStock(10, null, 2);
+        assertThat(first.items()).extracting(MedicalSupply::name).containsExactly("Mask", "Alcohol");
+        assertThat(first.nextCursor()).isEqualTo("2:Alcohol");
+
+        SupplyPage second = db.readLowStock(10, first.nextCursor(), 2);
+        assertThat(second.items()).extracting(MedicalSupply::name).containsExactly("Gloves", "Gauze");
+        assertThat(second.nextCursor()).isNull();
+
+        assertThatThrownBy(() -> db.readLowStock(10, "Gloves", 2)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void readLowStock_followsUpdatesAndDeletes() {
+        db.create(new MedicalSupply("Gloves", 2, "box"));
+        db.create(new MedicalSupply("Mask", 50, "box"));
+
+        db.update(new MedicalSupply("Gloves", 40, "box"), 0);
+        db.addToAmount("Mask", -49);
+        db.upsert(new MedicalSupply("Gauze", 3, "pack"));
+        db.delete("Gauze", 0);
+
+        assertThat(db.readLowStock(10, null, 10).items()).containsExactly(new MedicalSupply("Mask", 1, "box", 1));
+    }
+
+    @Test
+    void upsertAll_insertsNewAndReplacesExisting_andRejectsInvalidBatchUpFront() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+
+        assertThat(db.upsertAll(List.of(new MedicalSupply("Gloves", 40, "box"), new MedicalSupply("Mask", 12, "box"))))
+                .containsExactly(new MedicalSupply("Gloves", 40, "box", 1), new MedicalSupply("Mask", 12, "box", 0));
+        assertThatThrownBy(() -> db.upsertAll(List.of(
+                new MedicalSupply("Ok", 1, "box"),
+                new MedicalSupply("Bad", -1, "box"))))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(all(db)).containsExactly(
+                new MedicalSupply("Gloves", 40, "box", 1),
+                new MedicalSupply("Mask", 12, "box", 0));
+    }
+
+    @Test
+    void update_comparesAndSetsVersion() {
+        db.create(new MedicalSupply("Syringe", 1, "box", 7)); // incoming version is ignored
+
+        assertThat(db.update(new MedicalSupply("Syringe", 3, "pcs"), 0)).contains(new MedicalSupply("Syringe", 3, "pcs", 1));
+        assertThat(db.update(new MedicalSupply("Syringe", 4, "pcs"), 0)).isEmpty();
+        assertThat(db.update(new MedicalSupply("Syringe", 5, "pcs"), SupplyStore.ANY_VERSION))
+                .contains(new MedicalSupply("Syringe", 5, "pcs", 2));
+        assertThat(db.update(new MedicalSupply("Nope", 1, "unit"), 0)).isEmpty();
+    }
+
+    @Test
+    void updateAll_skipsRowsAlreadyPastTheGivenVersion() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        db.addToAmount("Gloves", 1);
+        db.addToAmount("Gloves", 1);
+
+        assertThat(db.updateAll(List.of(new MedicalSupply("Gloves", 9, "pair", 1), new MedicalSupply("Gloves", 8, "pair", 2))))
+                .isZero();
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 3, "box", 2));
+        assertThat(db.updateAll(List.of(new MedicalSupply("Gloves", 9, "pair", 3)))).isEqualTo(1);
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 9, "pair", 3));
+        assertThat(db.readMovements("Gloves", 10)).extracting(StockMovement::delta).containsExactly(6, 1, 1, 1);
+    }
+
+    @Test
+    void updateAll_updatesExistingRows_andSkipsMissingOnes() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        db.create(new MedicalSupply("Mask", 2, "box"));
+
+        int updated = db.updateAll(List.of(
+                new MedicalSupply("Gloves", 7, "pair", 3),
+                new MedicalSupply("Ghost", 3, "box", 1),
+                new MedicalSupply("Mask", 9, "box", 1)));
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(all(db)).containsExactly(
+                new MedicalSupply("Gloves", 7, "pair", 3),
+                new MedicalSupply("Mask", 9, "box", 1));
+    }
+
+    @Test
+    void addToAmount_appliesDelta_refusesNegative_andMissing() {
+        db.create(new MedicalSupply("Gloves", 10, "box"));
+
+        assertThat(db.addToAmount("Gloves", -4)).contains(new MedicalSupply("Gloves", 6, "box", 1));
+        assertThat(db.addToAmount("Gloves", -7)).isEmpty();
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 6, "box", 1));
+        assertThat(db.addToAmount("Nope", 1)).isEmpty();
+    }
+
+    @Test
+    void addToAmount_overflow_isRejected() {
+        db.create(new MedicalSupply("Gloves", Integer.MAX_VALUE, "box"));
+
+        assertThatThrownBy(() -> db.addToAmount("Gloves", 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void addToAmounts_isAllOrNothing_andLeavesEveryRowAloneWhenAStepFails() {
+        db.create(new MedicalSupply("Gloves", Integer.MAX_VALUE - 1, "box"));
+        db.create(new MedicalSupply("Mask", 5, "pack"));
+
+        assertThat(db.addToAmounts(new TreeMap<>(Map.of("Mask", -6, "Gloves", 1)))).isEmpty();
+        assertThat(db.addToAmounts(new TreeMap<>(Map.of("Mask", -1, "Nope", 1)))).isEmpty();
+        assertThatThrownBy(() -> db.addToAmounts(new TreeMap<>(Map.of("Mask", -1, "Gloves", 2))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(db.read("Mask")).contains(new MedicalSupply("Mask", 5, "pack", 0));
+        assertThat(db.readMovements("Mask", 10)).extracting(StockMovement::delta).containsExactly(5);
+
+        assertThat(db.addToAmounts(new TreeMap<>(Map.of("Mask", -5, "Gloves", 1)))).contains(List.of(
+                new MedicalSupply("Gloves", Integer.MAX_VALUE, "box", 1),
+                new MedicalSupply("Mask", 0, "pack", 1)));
+    }
+
+    @Test
+    void kitsRacingSingleDecrements_areAppliedWholeOrNotAtAll() throws Exception {
+        db.create(new MedicalSupply("Bandage", 1_000_000, "roll"));
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        var kit = new TreeMap<>(Map.of("Bandage", -1, "Gloves", -1)); // Gloves, the contended one, goes second
+        int attempts = 20_000;
+
+        int kits, taken, restocked;
+        try (ExecutorService pool = Executors.newFixedThreadPool(3)) {
+            Future<Integer> kitter = pool.submit(() -> applied(attempts, () -> db.addToAmounts(kit)));
+            Future<Integer> drainer = pool.submit(() -> applied(attempts, () -> db.addToAmount("Gloves", -1)));
+            Future<Integer> restocker = pool.submit(() -> applied(attempts, () -> db.addToAmount("Gloves", 1)));
+            kits = kitter.get();
+            taken = drainer.get();
+            restocked = restocker.get();
+        }
+
+        assertThat(db.read("Gloves")).get().extracting(MedicalSupply::amount).isEqualTo(1 + restocked - kits - taken);
+        // a kit that applied Bandage and then failed on Gloves would have moved Bandage twice
+        assertThat(db.read("Bandage")).contains(new MedicalSupply("Bandage", 1_000_000 - kits, "roll", kits));
+        assertThat(db.readMovements("Bandage", InMemorySupplyStore.MOVEMENT_HISTORY))
+                .extracting(StockMovement::delta).containsOnly(-1);
+    }
+
+    private static int applied(int attempts, Supplier<Optional<?>> write) {
+        int applied = 0;
+        for (int i = 0; i < attempts; i++) if (write.get().isPresent()) applied++;
+        return applied;
+    }
+
+    @Test
+    void lots_areDrawnFirstExpiredFirst_writtenOff_andSweptByExpiry() {
+        LocalDate today = LocalDate.of(2026, 3, 10);
+        var store = new InMemorySupplyStore(Clock.fixed(today.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+        store.create(new MedicalSupply("Gauze", 0, "roll"));
+        store.create(new MedicalSupply("Mask", 0, "box"));
+        store.receiveLot("Gauze", "B", today.plusDays(90), 5);
+        store.receiveLot("Gauze", "A", today.plusDays(30), 4);
+        store.receiveLot("Gauze", "OLD", today.minusDays(1), 3);
+        store.receiveLot("Mask", "M", today.plusDays(30), 2);
+        assertThatThrownBy(() -> store.receiveLot("Gauze", "A", today, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(store.receiveLot("Nope", "A", today, 1)).isEmpty();
+
+        store.addToAmount("Gauze", -6);
+        assertThat(store.readLots("Gauze")).containsExactly(
+                new Lot("Gauze", "OLD", today.minusDays(1), 3), new Lot("Gauze", "B", today.plusDays(90), 3));
+        var page = store.readExpiringLots(null, today.plusDays(30), null, 1);
+        assertThat(page.items()).extracting(Lot::lot).containsExactly("OLD");
+        assertThat(store.readExpiringLots(null, today.plusDays(30), page.nextCursor(), 1).items()).extracting(Lot::lot).containsExactly("M");
+        assertThat(store.readExpiringLots(today, today.plusDays(30), null, 10).items()).extracting(Lot::lot).containsExactly("M");
+
+        assertThat(store.writeOffLot("Gauze", "OLD")).get().extracting(MedicalSupply::amount).isEqualTo(3);
+        assertThat(store.readOutlook("Gauze")).get().extracting(StockOutlook::consumedLastWeek).isEqualTo(6L);
+        store.delete("Mask", SupplyStore.ANY_VERSION);
+        assertThat(store.readExpiringLots(null, today.plusDays(365), null, 10).items()).extracting(Lot::lot).containsExactly("B");
+    }
+
+    @Test
+    void addToLocationStock_overflow_isRejected_andLeavesRowUntouched() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        db.setLocationStock("Gloves", "north", Integer.MAX_VALUE - 1);
+
+        assertThatThrownBy(() -> db.addToLocationStock("Gloves", "north", 2))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("overflow");
+        assertThat(db.readLocationStock("Gloves")).containsExactly(
+                new LocationStock("Gloves", "north", Integer.MAX_VALUE - 1, 0));
+        assertThat(db.addToLocationStock("Gloves", "north", 1))
+                .contains(new LocationStock("Gloves", "north", Integer.MAX_VALUE, 1));
+    }
+
+    @Test
+    void locationStock_isPerLocation_totalsSumEveryLocation_andDeleteDropsRows() {
+        db.create(new MedicalSupply("Gloves", 100, "box"));
+        db.create(new MedicalSupply("Mask", 5, "pack"));
+
+        assertThat(db.setLocationStock("Gloves", "North", 4)).contains(new LocationStock("Gloves", "North", 4, 0));
+        assertThat(db.addToLocationStock("Gloves", "South", 6)).contains(new LocationStock("Gloves", "South", 6, 0));
+        assertThat(db.addToLocationStock("Gloves", "North", -5)).isEmpty();
+        assertThat(db.addToLocationStock("Gloves", "North", -1)).contains(new LocationStock("Gloves", "North", 3, 1));
+        assertThat(db.addToLocationStock("Gloves", "East", -1)).isEmpty();
+        assertThat(db.setLocationStock("Nope", "North", 1)).isEmpty();
+        db.setLocationStock("Mask", "South", 2);
+
+        assertThat(db.readLocationStock("Gloves")).extracting(LocationStock::location).containsExactly("North", "South");
+        assertThat(db.read("Gloves")).contains(new MedicalSupply("Gloves", 100, "box")); // the catalog amount is separate
+        assertThat(db.readTotals()).containsExactly(new SupplyTotal("Gloves", 9, 2), new SupplyTotal("Mask", 2, 1));
+
+        db.delete("Gloves", SupplyStore.ANY_VERSION);
+        assertThat(db.readLocationStock("Gloves")).isEmpty();
+        assertThat(db.readTotals()).containsExactly(new SupplyTotal("Mask", 2, 1));
+    }
+
+    @Test
+    void recreatedSupply_carriesOnFromTheDeletedRowsVersion() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        db.addToAmount("Gloves", 1);
+        db.delete("Gloves", SupplyStore.ANY_VERSION);
+
+        assertThat(db.create(new MedicalSupply("Gloves", 5, "box"))).isEqualTo(new MedicalSupply("Gloves", 5, "box", 2));
+        assertThat(db.update(new MedicalSupply("Gloves", 9, "box"), 0)).isEmpty(); // an ETag of the deleted row
+        db.delete("Gloves", 2);
+        assertThat(db.upsert(new MedicalSupply("Gloves", 3, "box"))).isEqualTo(new MedicalSupply("Gloves", 3, "box", 3));
+        db.delete("Gloves", 3);
+        assertThat(db.upsertAll(List.of(new MedicalSupply("Gloves", 4, "box"))))
+                .containsExactly(new MedicalSupply("Gloves", 4, "box", 4));
+        assertThat(db.create(new MedicalSupply("Mask", 1, "box")).version()).isZero();
+    }
+
+    @Test
+    void delete_comparesVersion_missing_returnsFalse() {
+        db.create(new MedicalSupply("Thermometer", 2, "pcs"));
+        db.addToAmount("Thermometer", 1);
+
+        assertThat(db.delete("Thermometer", 0)).isFalse();
+        assertThat(db.delete("Thermometer", 1)).isTrue();
+        assertThat(db.read("Thermometer")).isEmpty();
+        assertThat(db.delete("Thermometer", SupplyStore.ANY_VERSION)).isFalse();
+    }
+
+    @Test
+    void concurrentDeltas_areNeverLost_andLowStockStaysConsistent() throws Exception {
+        db.create(new MedicalSupply("Gloves", 0, "box"));
+        int threads = 8, perThread = 2_000;
+
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        db.addToAmount("Gloves", 2);
+                        db.addToAmount("Gloves", -1);
+                    }
+                }));
+            }
+            for (Future<?> f : done) f.get();
+        }
+
+        int expected = threads * perThread;
+        var last = new MedicalSupply("Gloves", expected, "box", 2L * threads * perThread);
+        assertThat(db.read("Gloves")).contains(last);
+        assertThat(db.readLowStock(Integer.MAX_VALUE, null, 10).items()).containsExactly(last);
+        assertThat(db.readLowStock(expected, null, 10).items()).isEmpty();
+    }
+
+    @Test
+    void stockChanges_areRecorded_andConsumptionFeedsOutlook() {
+        var today = LocalDate.of(2026, 3, 10);
+        var clock = new AtomicReference<>(today.minusDays(7));
+        var store = new InMemorySupplyStore(new Clock() {
+            @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+            @Override public Clock withZone(ZoneId zone) { return this; }
+            @Override public Instant instant() { return clock.get().atStartOfDay().toInstant(ZoneOffset.UTC); }
+        });
+        store.create(new MedicalSupply("Gloves", 100, "box"));
+        store.addToAmount("Gloves", -50); // outside the window by today
+        clock.set(today.minusDays(3));
+        store.update(new MedicalSupply("Gloves", 36, "box"), SupplyStore.ANY_VERSION);
+        clock.set(today);
+        store.addToAmount("Gloves", -7);
+        store.upsert(new MedicalSupply("Gloves", 49, "pair"));
+
+        assertThat(store.readMovements("Gloves", 10)).extracting(StockMovement::delta).containsExactly(20, -7, -14, -50, 100);
+        assertThat(store.readOutlook("Gloves")).contains(new StockOutlook("Gloves", 49, 7, 21, 3.0, 49 / 3.0));
+        assertThat(store.readOutlook("Ghost")).isEmpty();
+
+        store.delete("Gloves", SupplyStore.ANY_VERSION);
+        store.create(new MedicalSupply("Gloves", 3, "box"));
+        assertThat(store.readOutlook("Gloves")).contains(new StockOutlook("Gloves", 3, 0, 0, 0.0, null));
+        assertThat(store.readMovements("Gloves", 2)).extracting(StockMovement::delta).containsExactly(3, -49);
+    }
+
+    /** Every row in name order, through the store's streaming read. */
+    private static List<MedicalSupply> all(SupplyStore store) {
+        List<MedicalSupply> rows = new ArrayList<>();
+        store.forEach(rows::add);
+        return rows;
+    }
+}
@@ -0,0 +1,66 @@
+package com.qare.app.config;
+
+import com.qare.app.model.MedicalSupply;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@JdbcTest
+@Import(DBConfig.class)
+class MetricsAspectTest {
+
+    @Autowired
+    DBConfig target;
+
+    SimpleMeterRegistry registry;
+    DBConfig db;
+
+    @BeforeEach
+    void setup() {
+        registry = new SimpleMeterRegistry();
+        var factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new MetricsAspect(registry));
+        db = factory.getProxy();
+    }
+
+    @Test
+    void daoCalls_areTimedByMethodAndOutcome() {
+        db.create(new MedicalSupply("Gloves", 1, "box"));
+        db.read("Gloves");
+
+        assertThat(registry.get("qare.db").tag("method", "create").tag("outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("qare.db").tag("method", "read").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failingCall_isTaggedWithExceptionType() {
+        assertThatThrownBy(() -> db.create(new MedicalSupply("Bad", -1, "box")))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(registry.get("qare.db").tag("outcome", "IllegalArgumentException").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void reads_recordRowCounts() {
+        db.create(new MedicalSupply("Alcohol", 1, "bottle"));
+        db.create(new MedicalSupply("Bandage", 2, "pack"));
+
+        db.readByNames(List.of("Alcohol", "Bandage", "Cotton"));
+        db.readPage(null, 1);
+
+        assertThat(registry.get("qare.db.rows").tag("method", "readByNames").summary().totalAmount()).isEqualTo(2);
+        assertThat(registry.get("qare.db.rows").tag("method", "readPage").summary().totalAmount()).isEqualTo(1);
+        assertThat(registry.find("qare.db.rows").tag("method", "create").summary()).isNull();
+    }
+}
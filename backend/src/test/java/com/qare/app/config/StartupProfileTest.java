@@ -0,0 +1,43 @@
+package com.qare.app.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:startup-profile;DB_CLOSE_DELAY=-1",
+        "qare.snapshot.enabled=false"
+})
+@ActiveProfiles("startup")
+class StartupProfileTest {
+
+    @Autowired ConfigurableApplicationContext context;
+    @LocalServerPort int port;
+
+    @Test
+    void lazyInit_defersControllers_butNotStartupWork() throws Exception {
+        var beans = context.getBeanFactory();
+        assertThat(beans.containsSingleton("writeBehindBuffer")).isTrue();
+        assertThat(beans.containsSingleton("catalogSnapshot")).isTrue();
+        assertThat(beans.containsSingleton("qareService")).isTrue();
+        assertThat(beans.containsSingleton("DBConfig")).isTrue(); // schema is in place before the first request
+        assertThat(beans.containsSingleton("qareController")).isFalse();
+
+        try (var client = HttpClient.newHttpClient()) {
+            var response = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/supplies")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            assertThat(response.statusCode()).isEqualTo(200);
+        }
+        assertThat(beans.containsSingleton("qareController")).isTrue();
+    }
+}
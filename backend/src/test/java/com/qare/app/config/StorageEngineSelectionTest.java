@@ -0,0 +1,33 @@
+package com.qare.app.config;
+
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.service.QareService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "qare.storage.engine=memory",
+        "spring.datasource.url=jdbc:h2:mem:engine-selection;DB_CLOSE_DELAY=-1"
+})
+class StorageEngineSelectionTest {
+
+    @Autowired ApplicationContext context;
+    @Autowired QareService service;
+
+    @Test
+    void memoryEngine_replacesH2_andKeepsServiceWorking() {
+        assertThat(context.getBean(SupplyStore.class)).isInstanceOf(InMemorySupplyStore.class);
+        assertThat(context.getBeansOfType(DBConfig.class)).isEmpty();
+        assertThat(context.getBean(PlatformTransactionManager.class)).isInstanceOf(InMemoryTransactionManager.class);
+
+        service.add(new MedicalSupply("Gloves", 5, "box"));
+        assertThat(service.adjustAmount("Gloves", -2)).contains(new MedicalSupply("Gloves", 3, "box", 1));
+        assertThat(service.read("Gloves")).contains(new MedicalSupply("Gloves", 3, "box", 1)); // cache invalidated after commit
+        assertThat(service.search("glo", 10)).containsExactly("Gloves");
+    }
+}
@@ -0,0 +1,49 @@
+package com.qare.app.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionExecution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class TransactionMetricsTest {
+
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final TransactionMetrics metrics = new TransactionMetrics(registry);
+
+    private static TransactionExecution tx(String name) {
+        var tx = mock(TransactionExecution.class);
+        given(tx.getTransactionName()).willReturn(name);
+        return tx;
+    }
+
+    @Test
+    void commit_recordsDurationUnderShortName() {
+        var tx = tx("com.qare.app.service.QareService.update");
+
+        metrics.afterBegin(tx, null);
+        metrics.afterCommit(tx, null);
+
+        assertThat(registry.get("qare.tx").tag("name", "QareService.update").tag("outcome", "committed")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rollback_isTaggedRolledBack() {
+        var tx = tx("com.qare.app.service.QareService.add");
+
+        metrics.afterBegin(tx, null);
+        metrics.afterRollback(tx, null);
+
+        assertThat(registry.get("qare.tx").tag("outcome", "rolled_back").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void completionWithoutBegin_isIgnored() {
+        metrics.afterCommit(tx("x.Y.z"), null);
+
+        assertThat(registry.find("qare.tx").timer()).isNull();
+    }
+}
@@ -2,26 +2,59 @@ package com.qare.app.controller;
 
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.BulkResult;
+import com.qare.app.model.InventoryStats;
+import com.qare.app.model.LocationStock;
+import com.qare.app.model.Lot;
+import com.qare.app.model.LotPage;
+import com.qare.app.model.LotReceipt;
 import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.MultiGetRequest;
+import com.qare.app.model.MultiGetResult;
+import com.qare.app.model.StockAdjustments;
+import com.qare.app.model.StockMovement;
+import com.qare.app.model.StockOutlook;
+import com.qare.app.model.SupplyLocations;
+import com.qare.app.model.SupplyPage;
+import com.qare.app.model.SupplyTotal;
+import com.qare.app.service.InsufficientStockException;
 import com.qare.app.service.QareService;
+import com.qare.app.service.VersionConflictException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -36,6 +69,11 @@ class QareControllerTest {
     @MockitoBean
     QareService service;
 
+    @BeforeEach
+    void stubDataVersion() {
+        given(service.dataVersion()).willReturn("v1");
+    }
+
     @Test
     void create_success_returns201() throws Exception {
         var body = new MedicalSupply("Flour", 2, "kg");
@@ -69,21 +107,357 @@ class QareControllerTest {
     }
 
     @Test
-    void readAll_success_returns200_withList() throws Exception {
-        var list = List.of(
+    void bulk_jsonArray_upsertsValidRows_andReportsInvalidOnes() throws Exception {
+        given(service.upsertAll(anyList())).willReturn(List.of());
+
+        mockMvc.perform(post("/api/supplies/_bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"name":"Gloves","amount":5,"unitName":"box"},
+                                 {"name":"Bad","amount":-1,"unitName":"box"},
+                                 {"name":"Mask","amount":2,"unitName":"box"}]
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.upserted").value(2))
+                .andExpect(jsonPath("$.failures[0].index").value(1))
+                .andExpect(jsonPath("$.failures[0].name").value("Bad"));
+
+        verify(service).upsertAll(List.of(
+                new MedicalSupply("Gloves", 5, "box"),
+                new MedicalSupply("Mask", 2, "box")));
+    }
+
+    @Test
+    void bulk_ndjson_mapsServiceFailuresBackToBodyIndex() throws Exception {
+        given(service.upsertAll(anyList()))
+                .willReturn(List.of(new BulkResult.Failure(1, "Mask", "constraint")));
+
+        mockMvc.perform(post("/api/supplies/_bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("""
+                                {"name":"","amount":1,"unitName":"box"}
+                                {"name":"Gloves","amount":5,"unitName":"box"}
+                                {"name":"Mask","amount":2,"unitName":"box"}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.upserted").value(1))
+                .andExpect(jsonPath("$.failures[0].index").value(0))
+                .andExpect(jsonPath("$.failures[1].index").value(2))
+                .andExpect(jsonPath("$.failures[1].error").value("constraint"));
+    }
+
+    @Test
+    void bulk_malformedRow_returns400_keepingEarlierRows() throws Exception {
+        given(service.upsertAll(anyList())).willReturn(List.of());
+
+        mockMvc.perform(post("/api/supplies/_bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("""
+                                {"name":"Gloves","amount":5,"unitName":"box"}
+                                {"name":"Mask","amount":"lots","unitName":"box"}
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.received").value(1))
+                .andExpect(jsonPath("$.upserted").value(1))
+                .andExpect(jsonPath("$.failures[0].index").value(1));
+
+        verify(service).upsertAll(List.of(new MedicalSupply("Gloves", 5, "box")));
+    }
+
+    @Test
+    void readAll_success_returns200_withFirstPage() throws Exception {
+        var page = new SupplyPage(List.of(
                 new MedicalSupply("Alcohol", 1, "bottle"),
                 new MedicalSupply("Bandage", 5, "pack")
-        );
-        given(service.readAll()).willReturn(list);
+        ), "Bandage");
+        given(service.readPage(null, 100)).willReturn(page);
 
         mockMvc.perform(get("/api/supplies"))
                 .andExpect(status().isOk())
                 .andExpect(status().is(200))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$[0].name").value("Alcohol"))
-                .andExpect(jsonPath("$[1].name").value("Bandage"));
+                .andExpect(jsonPath("$.items[0].name").value("Alcohol"))
+                .andExpect(jsonPath("$.items[1].name").value("Bandage"))
+                .andExpect(jsonPath("$.nextCursor").value("Bandage"));
+
+        verify(service).readPage(null, 100);
+    }
+
+    @Test
+    void readAll_sendsETag_andAnswers304WithoutQuerying() throws Exception {
+        given(service.readPage(null, 100)).willReturn(new SupplyPage(List.of(), null));
+
+        mockMvc.perform(get("/api/supplies"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1\""));
+
+        mockMvc.perform(get("/api/supplies").header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"v1\""));
+
+        verify(service, times(1)).readPage(null, 100);
+    }
+
+    @Test
+    void readAll_staleETag_returns200() throws Exception {
+        given(service.readPage(null, 100)).willReturn(new SupplyPage(List.of(), null));
+
+        mockMvc.perform(get("/api/supplies").header("If-None-Match", "\"v0\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void readAll_withCursor_passesLimitAndAfter() throws Exception {
+        given(service.readPage("Bandage", 2))
+                .willReturn(new SupplyPage(List.of(new MedicalSupply("Cotton", 7, "bag")), null));
+
+        mockMvc.perform(get("/api/supplies").param("limit", "2").param("after", "Bandage"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Cotton"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        verify(service).readPage("Bandage", 2);
+    }
+
+    @Test
+    void readAll_limitAboveMax_returns400() throws Exception {
+        mockMvc.perform(get("/api/supplies").param("limit", "100000"))
+                .andExpect(status().isBadRequest());
+
+        verify(service, never()).readPage(any(), anyInt());
+    }
+
+    @Test
+    void lowStock_returnsPage() throws Exception {
+        given(service.readLowStock(5, "0:Mask", 2))
+                .willReturn(new SupplyPage(List.of(new MedicalSupply("Gloves", 2, "box")), null));
+
+        mockMvc.perform(get("/api/supplies/low-stock")
+                        .param("below", "5").param("limit", "2").param("after", "0:Mask"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Gloves"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void lowStock_malformedCursor_returns400() throws Exception {
+        given(service.readLowStock(5, "junk", 100))
+                .willThrow(new IllegalArgumentException("malformed low-stock cursor: junk"));
+
+        mockMvc.perform(get("/api/supplies/low-stock").param("below", "5").param("after", "junk"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void lowStock_withoutThreshold_returns400() throws Exception {
+        mockMvc.perform(get("/api/supplies/low-stock"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void stream_opensEventStream() throws Exception {
+        given(service.subscribe()).willReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/supplies/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+
+        verify(service).subscribe();
+    }
+
+    @Test
+    void mget_returnsFoundAndMissing() throws Exception {
+        given(service.readMany(List.of("Gloves", "Ghost"))).willReturn(
+                new MultiGetResult(List.of(new MedicalSupply("Gloves", 4, "box", 2)), List.of("Ghost")));
+
+        mockMvc.perform(post("/api/supplies/_mget")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"names\":[\"Gloves\",\"Ghost\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.found[0].name").value("Gloves"))
+                .andExpect(jsonPath("$.found[0].version").value(2))
+                .andExpect(jsonPath("$.missing[0]").value("Ghost"));
+    }
+
+    @Test
+    void mget_withoutNames_orTooMany_returns400() throws Exception {
+        var tooMany = java.util.stream.IntStream.rangeClosed(0, MultiGetRequest.MAX_NAMES)
+                .mapToObj(i -> "n" + i).toList();
+
+        mockMvc.perform(post("/api/supplies/_mget")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/supplies/_mget")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new MultiGetRequest(tooMany))))
+                .andExpect(status().isBadRequest());
+
+        verify(service, never()).readMany(any());
+    }
+
+    @Test
+    void daysOfStock_returnsOutlook_or404() throws Exception {
+        given(service.outlook("Gloves")).willReturn(Optional.of(StockOutlook.of("Gloves", 21, 2, 14)));
+        given(service.outlook("Ghost")).willReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/supplies/Gloves/days-of-stock"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.dailyConsumption").value(2.0))
+                .andExpect(jsonPath("$.daysRemaining").value(10.5));
+        mockMvc.perform(get("/api/supplies/Ghost/days-of-stock"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void locations_setAdjustAndTotals() throws Exception {
+        given(service.locations("Gloves")).willReturn(Optional.of(SupplyLocations.of("Gloves", List.of(
+                new LocationStock("Gloves", "north", 4, 0), new LocationStock("Gloves", "south", 6, 2)))));
+        given(service.setLocationStock("Gloves", "north", 4)).willReturn(Optional.of(new LocationStock("Gloves", "north", 4, 1)));
+        given(service.adjustLocationStock("Gloves", "north", -9)).willThrow(new InsufficientStockException("Gloves", -9));
+        given(service.totals()).willReturn(List.of(new SupplyTotal("Gloves", 10, 2)));
+
+        mockMvc.perform(get("/api/supplies/Gloves/locations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(10))
+                .andExpect(jsonPath("$.locations[1].location").value("south"));
+        mockMvc.perform(put("/api/supplies/Gloves/locations/north").contentType(MediaType.APPLICATION_JSON).content("{\"amount\":4}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1));
+        mockMvc.perform(put("/api/supplies/Gloves/locations/north").contentType(MediaType.APPLICATION_JSON).content("{\"amount\":-1}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/api/supplies/Gloves/locations/north/amount").contentType(MediaType.APPLICATION_JSON).content("{\"delta\":-9}"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(get("/api/supplies/_totals"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].total").value(10))
+                .andExpect(jsonPath("$[0].locations").value(2));
+        mockMvc.perform(get("/api/supplies/Ghost/locations"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void lots_receiveListWriteOffAndExpiring() throws Exception {
+        var expiry = LocalDate.of(2026, 6, 1);
+        given(service.receiveLot("Gauze", new LotReceipt("A-1", expiry, 5)))
+                .willReturn(Optional.of(new MedicalSupply("Gauze", 5, "roll", 1)));
+        given(service.lots("Gauze")).willReturn(Optional.of(List.of(new Lot("Gauze", "A-1", expiry, 5))));
+        given(service.writeOffLot("Gauze", "A-1")).willReturn(Optional.of(new MedicalSupply("Gauze", 0, "roll", 2)));
+        given(service.expiring(any(), eq("2026-06-01:A-0:Gauze"), eq(1)))
+                .willReturn(new LotPage(List.of(new Lot("Gauze", "A-1", expiry, 5)), "2026-06-01:A-1:Gauze"));
+
+        mockMvc.perform(post("/api/supplies/Gauze/lots").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"lot\":\"A-1\",\"expiresOn\":\"2026-06-01\",\"amount\":5}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.amount").value(5));
+        mockMvc.perform(post("/api/supplies/Gauze/lots").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"lot\":\"A:1\",\"expiresOn\":\"2026-06-01\",\"amount\":5}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/supplies/Ghost/lots").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"lot\":\"A-1\",\"expiresOn\":\"2026-06-01\",\"amount\":5}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/supplies/Gauze/lots"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].expiresOn").value("2026-06-01"));
+        mockMvc.perform(delete("/api/supplies/Gauze/lots/A-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.amount").value(0));
+        mockMvc.perform(delete("/api/supplies/Gauze/lots/Z-9"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/supplies/expiring").param("limit", "1").param("after", "2026-06-01:A-0:Gauze"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].lot").value("A-1"))
+                .andExpect(jsonPath("$.nextCursor").value("2026-06-01:A-1:Gauze"));
+    }
+
+    @Test
+    void stats_returnsCountersAsJson() throws Exception {
+        given(service.stats()).willReturn(new InventoryStats(3,
+                Map.of("box", new InventoryStats.Unit(3, 26)),
+                new InventoryStats.Status(0, 2, 1), Instant.parse("2026-03-02T10:00:00Z")));
+
+        mockMvc.perform(get("/api/supplies/_stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.supplies").value(3))
+                .andExpect(jsonPath("$.units.box.amount").value(26))
+                .andExpect(jsonPath("$.status.orange").value(2))
+                .andExpect(jsonPath("$.reconciledAt").value("2026-03-02T10:00:00Z"));
+    }
+
+    @Test
+    void movements_returnsLedgerNewestFirst() throws Exception {
+        given(service.movements("Gloves", 2)).willReturn(List.of(
+                new StockMovement("Gloves", -3, Instant.parse("2026-03-10T12:00:00Z")),
+                new StockMovement("Gloves", 10, Instant.parse("2026-03-09T08:00:00Z"))));
+
+        mockMvc.perform(get("/api/supplies/Gloves/movements").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].delta").value(-3))
+                .andExpect(jsonPath("$[1].delta").value(10));
+    }
+
+    @Test
+    void search_returnsMatchingNames() throws Exception {
+        given(service.search("glo", 10)).willReturn(List.of("Gloves"));
+
+        mockMvc.perform(get("/api/supplies/search").param("q", "glo"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("Gloves"));
 
-        verify(service).readAll();
+        verify(service).search("glo", 10);
+    }
+
+    @Test
+    void export_ndjson_streamsOneObjectPerLine() throws Exception {
+        willAnswer(inv -> {
+            Consumer<MedicalSupply> sink = inv.getArgument(0);
+            sink.accept(new MedicalSupply("Alcohol", 1, "bottle"));
+            sink.accept(new MedicalSupply("Bandage", 5, "pack"));
+            return null;
+        }).given(service).export(any());
+
+        MvcResult started = mockMvc.perform(get("/api/supplies/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("""
+                        {"name":"Alcohol","amount":1,"unitName":"bottle","version":0}
+                        {"name":"Bandage","amount":5,"unitName":"pack","version":0}
+                        """));
+    }
+
+    @Test
+    void export_csv_writesHeaderAndQuotesFields() throws Exception {
+        willAnswer(inv -> {
+            Consumer<MedicalSupply> sink = inv.getArgument(0);
+            sink.accept(new MedicalSupply("Gauze, sterile", 3, "pack"));
+            return null;
+        }).given(service).export(any());
+
+        MvcResult started = mockMvc.perform(get("/api/supplies/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string("""
+                        name,amount,unitName
+                        "Gauze, sterile",3,pack
+                        """));
+    }
+
+    @Test
+    void export_unknownFormat_returns400() throws Exception {
+        mockMvc.perform(get("/api/supplies/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verify(service, never()).export(any());
     }
 
     @Test
@@ -100,6 +474,19 @@ class QareControllerTest {
         verify(service).read("Flour");
     }
 
+    @Test
+    void read_one_sendsRowVersionAsETag_andAnswers304WhenUnchanged() throws Exception {
+        given(service.read("Flour")).willReturn(Optional.of(new MedicalSupply("Flour", 2, "kg", 4)));
+
+        mockMvc.perform(get("/api/supplies/Flour"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""));
+        mockMvc.perform(get("/api/supplies/Flour").header("If-None-Match", "\"4\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/supplies/Flour").header("If-None-Match", "\"3\""))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void read_missing_returns404() throws Exception {
         given(service.read("Missing")).willReturn(Optional.empty());
@@ -111,33 +498,78 @@ class QareControllerTest {
         verify(service).read("Missing");
     }
 
+    @Test
+    void read_whenConnectionBulkheadFull_returns503WithRetryAfter() throws Exception {
+        given(service.read("Flour")).willThrow(new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection"));
+
+        mockMvc.perform(get("/api/supplies/Flour"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
     @Test
     void update_existing_returns200_withUpdatedBody() throws Exception {
         var incoming = new MedicalSupply("IGNORED", 3, "box");
-        given(service.update(new MedicalSupply("Syringe", 3, "box"))).willReturn(true);
+        given(service.update(new MedicalSupply("Syringe", 3, "box"), 2))
+                .willReturn(Optional.of(new MedicalSupply("Syringe", 3, "box", 3)));
 
         mockMvc.perform(put("/api/supplies/Syringe")
+                        .header("If-Match", "\"2\"")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(incoming)))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
                 .andExpect(jsonPath("$.name").value("Syringe"))
                 .andExpect(jsonPath("$.amount").value(3))
-                .andExpect(jsonPath("$.unitName").value("box"));
+                .andExpect(jsonPath("$.unitName").value("box"))
+                .andExpect(jsonPath("$.version").value(3));
 
-        verify(service).update(eq(new MedicalSupply("Syringe", 3, "box")));
+        verify(service).update(eq(new MedicalSupply("Syringe", 3, "box")), eq(2L));
     }
 
     @Test
     void update_missing_returns404() throws Exception {
         var incoming = new MedicalSupply("IGNORED", 1, "unit");
-        given(service.update(new MedicalSupply("Nope", 1, "unit"))).willReturn(false);
+        given(service.update(new MedicalSupply("Nope", 1, "unit"), SupplyStore.ANY_VERSION)).willReturn(Optional.empty());
 
         mockMvc.perform(put("/api/supplies/Nope")
+                        .header("If-Match", "*")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(incoming)))
                 .andExpect(status().isNotFound());
 
-        verify(service).update(eq(new MedicalSupply("Nope", 1, "unit")));
+        verify(service).update(eq(new MedicalSupply("Nope", 1, "unit")), eq(SupplyStore.ANY_VERSION));
+    }
+
+    @Test
+    void update_staleIfMatch_returns412() throws Exception {
+        given(service.update(new MedicalSupply("Syringe", 3, "box"), 1))
+                .willThrow(new VersionConflictException("Syringe", 1));
+
+        mockMvc.perform(put("/api/supplies/Syringe")
+                        .header("If-Match", "\"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new MedicalSupply("Syringe", 3, "box"))))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void update_withoutIfMatch_returns428() throws Exception {
+        mockMvc.perform(put("/api/supplies/Syringe")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new MedicalSupply("Syringe", 3, "box"))))
+                .andExpect(status().isPreconditionRequired());
+
+        verify(service, never()).update(any(), anyLong());
+    }
+
+    @Test
+    void expectedVersion_parsesStrongTags_andMatchesNothingElse() {
+        assertThat(QareController.expectedVersion("\"7\"")).isEqualTo(7);
+        assertThat(QareController.expectedVersion(" * ")).isEqualTo(SupplyStore.ANY_VERSION);
+        assertThat(QareController.expectedVersion("W/\"7\"")).isEqualTo(Long.MIN_VALUE);
+        assertThat(QareController.expectedVersion("\"v1\"")).isEqualTo(Long.MIN_VALUE);
+        assertThat(QareController.expectedVersion("\"-1\"")).isEqualTo(Long.MIN_VALUE);
     }
 
     @Test
@@ -150,28 +582,112 @@ class QareControllerTest {
                 .andExpect(status().is(400))
                 .andExpect(status().isBadRequest());
 
-        verify(service, never()).update(any(MedicalSupply.class));
+        verify(service, never()).update(any(MedicalSupply.class), anyLong());
+    }
+
+
+    @Test
+    void adjustAmount_returns200_withNewAmount() throws Exception {
+        given(service.adjustAmount("Gloves", -3))
+                .willReturn(Optional.of(new MedicalSupply("Gloves", 7, "box")));
+
+        mockMvc.perform(patch("/api/supplies/Gloves/amount")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\":-3}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(jsonPath("$.amount").value(7));
     }
 
+    @Test
+    void adjustAmount_insufficientStock_returns409() throws Exception {
+        given(service.adjustAmount("Gloves", -30))
+                .willThrow(new InsufficientStockException("Gloves", -30));
+
+        mockMvc.perform(patch("/api/supplies/Gloves/amount")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\":-30}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void adjustAmounts_appliesTheKit_orReports409And404() throws Exception {
+        var kit = List.of(new StockAdjustments.Item("Mask", -2), new StockAdjustments.Item("Gauze", -1));
+        given(service.adjustAmounts(kit)).willReturn(Optional.of(List.of(
+                new MedicalSupply("Gauze", 3, "roll", 1), new MedicalSupply("Mask", 8, "box", 1))));
+        given(service.adjustAmounts(List.of(new StockAdjustments.Item("Mask", -20))))
+                .willThrow(new InsufficientStockException(Map.of("Mask", -20)));
+        given(service.adjustAmounts(List.of(new StockAdjustments.Item("Ghost", -1)))).willReturn(Optional.empty());
+
+        mockMvc.perform(post("/api/supplies/_adjust").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new StockAdjustments(kit))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Gauze"))
+                .andExpect(jsonPath("$[1].amount").value(8));
+        mockMvc.perform(post("/api/supplies/_adjust").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[{\"name\":\"Mask\",\"delta\":-20}]}"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/api/supplies/_adjust").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[{\"name\":\"Ghost\",\"delta\":-1}]}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/supplies/_adjust").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[{\"name\":\"Mask\"}]}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/supplies/_adjust").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"items\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void adjustAmount_missing_returns404() throws Exception {
+        given(service.adjustAmount("Ghost", 1)).willReturn(Optional.empty());
+
+        mockMvc.perform(patch("/api/supplies/Ghost/amount")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\":1}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void adjustAmount_withoutDelta_returns400() throws Exception {
+        mockMvc.perform(patch("/api/supplies/Gloves/amount")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        verify(service, never()).adjustAmount(any(), anyInt());
+    }
 
     @Test
     void delete_existing_returns204() throws Exception {
-        given(service.delete("Mask")).willReturn(true);
+        given(service.delete("Mask", 5)).willReturn(true);
 
-        mockMvc.perform(delete("/api/supplies/Mask"))
+        mockMvc.perform(delete("/api/supplies/Mask").header("If-Match", "\"5\""))
                 .andExpect(status().is(204))
                 .andExpect(status().isNoContent());
 
-        verify(service).delete("Mask");
+        verify(service).delete("Mask", 5);
     }
 
     @Test
     void delete_missing_returns404() throws Exception {
-        given(service.delete("Ghost")).willReturn(false);
+        given(service.delete("Ghost", SupplyStore.ANY_VERSION)).willReturn(false);
 
-        mockMvc.perform(delete("/api/supplies/Ghost"))
+        mockMvc.perform(delete("/api/supplies/Ghost").header("If-Match", "*"))
                 .andExpect(status().isNotFound());
 
-        verify(service).delete("Ghost");
+        verify(service).delete("Ghost", SupplyStore.ANY_VERSION);
+    }
+
+    @Test
+    void delete_staleIfMatch_returns412_missingIfMatch_returns428() throws Exception {
+        given(service.delete("Mask", 4)).willThrow(new VersionConflictException("Mask", 4));
+
+        mockMvc.perform(delete("/api/supplies/Mask").header("If-Match", "\"4\""))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete("/api/supplies/Mask"))
+                .andExpect(status().isPreconditionRequired());
+
+        verify(service, times(1)).delete(any(), anyLong());
     }
 }
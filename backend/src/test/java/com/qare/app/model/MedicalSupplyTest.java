@@ -57,6 +57,15 @@ class MedicalSupplyTest {
         assertThat(violations).isEmpty();
     }
 
+    @Test
+    void nameAndUnit_longerThanTheirColumns_areViolations() {
+        var ms = new MedicalSupply("n".repeat(256), 1, "u".repeat(256));
+        Set<ConstraintViolation<MedicalSupply>> violations = validator.validate(ms);
+        assertThat(violations).extracting(v -> v.getPropertyPath().toString())
+                .containsExactlyInAnyOrder("name", "unitName");
+        assertThat(validator.validate(new MedicalSupply("n".repeat(255), 1, "u".repeat(255)))).isEmpty();
+    }
+
     @ParameterizedTest
     @NullAndEmptySource
     @ValueSource(strings = {" ", "   ", "\t", "\n"})
@@ -0,0 +1,106 @@
+package com.qare.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qare.app.config.InMemorySupplyStore;
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.MedicalSupply;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogSnapshotTest {
+
+    @TempDir Path dir;
+    final InMemorySupplyStore store = new InMemorySupplyStore();
+    final SupplyCache cache = new SupplyCache(100, Duration.ZERO, new SimpleMeterRegistry());
+    final WriteBehindBuffer writes = new WriteBehindBuffer(store, TransactionOperations.withoutTransaction(),
+            new ObjectMapper(), null, 100);
+
+    @BeforeEach
+    void seed() {
+        store.create(new MedicalSupply("Gloves", 1, "box"));
+        store.create(new MedicalSupply("Mask", 2, "pack"));
+        store.create(new MedicalSupply("Gauze", 3, "roll"));
+    }
+
+    private CatalogSnapshot snapshot(SupplyStore target, SupplyCache cache) {
+        return new CatalogSnapshot(target, cache, writes, TransactionOperations.withoutTransaction(), dir.resolve("catalog.bin"));
+    }
+
+    private record Restored(MedicalSupply supply, boolean hot) {}
+
+    private List<Restored> restore(CatalogSnapshot snapshot) {
+        var rows = new ArrayList<Restored>();
+        if (!snapshot.restore((s, hot) -> rows.add(new Restored(s, hot)))) return null;
+        return rows;
+    }
+
+    @Test
+    void write_thenRestore_returnsEveryRow_withHotFlags() {
+        store.update(new MedicalSupply("Mask", 7, "pack"), SupplyStore.ANY_VERSION);
+        cache.get("Mask", () -> store.read("Mask"));
+        cache.get("Nope", Optional::empty); // cached misses are not hot
+        snapshot(store, cache).write();
+
+        var restarted = new SupplyCache(100, Duration.ZERO, new SimpleMeterRegistry());
+        assertThat(restore(snapshot(store, restarted))).containsExactly(
+                new Restored(new MedicalSupply("Gauze", 3, "roll"), false),
+                new Restored(new MedicalSupply("Gloves", 1, "box"), false),
+                new Restored(new MedicalSupply("Mask", 7, "pack", 1), true));
+    }
+
+    @Test
+    void restore_isRejected_afterTheCatalogChanged() {
+        snapshot(store, cache).write();
+
+        store.addToAmount("Gloves", 1);
+
+        assertThat(restore(snapshot(store, cache))).isNull();
+    }
+
+    @Test
+    void restore_isRejected_whenTheFileIsCorrupt() throws IOException {
+        var snapshot = snapshot(store, cache);
+        snapshot.write();
+        Path file = dir.resolve("catalog.bin");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[20] ^= 1;
+        Files.write(file, bytes);
+
+        assertThat(restore(snapshot)).isNull();
+    }
+
+    @Test
+    void restore_isRejected_whenMissingOrDisabled() {
+        assertThat(restore(snapshot(store, cache))).isNull();
+
+        var disabled = new CatalogSnapshot(store, cache, writes, TransactionOperations.withoutTransaction(), null);
+        disabled.write();
+        assertThat(restore(disabled)).isNull();
+    }
+
+    @Test
+    void write_replacesThePreviousSnapshot_withoutLeavingTempFiles() throws IOException {
+        var snapshot = snapshot(store, cache);
+        snapshot.write();
+        store.delete("Gauze", SupplyStore.ANY_VERSION);
+        snapshot.write();
+
+        assertThat(restore(snapshot)).extracting(r -> r.supply().name()).containsExactly("Gloves", "Mask");
+        try (var files = Files.list(dir)) {
+            assertThat(files).containsExactly(dir.resolve("catalog.bin"));
+        }
+    }
+}
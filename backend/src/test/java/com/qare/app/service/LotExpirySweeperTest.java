@@ -0,0 +1,70 @@
+package com.qare.app.service;
+
+import com.qare.app.config.InMemorySupplyStore;
+import com.qare.app.model.Lot;
+import com.qare.app.model.MedicalSupply;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LotExpirySweeperTest {
+
+    static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    final InMemorySupplyStore store = new InMemorySupplyStore();
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final LotExpirySweeper sweeper = new LotExpirySweeper(store, registry,
+            Clock.fixed(TODAY.atTime(9, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC), 30);
+
+    @Test
+    void sweep_countsExpiredAndExpiringLots_acrossPages_andPublishesThem() {
+        store.create(new MedicalSupply("Gauze", 0, "roll"));
+        for (int i = 0; i < LotExpirySweeper.PAGE_SIZE + 5; i++) {
+            store.receiveLot("Gauze", "L" + i, TODAY.plusDays(i % 60), 1); // days 0..59
+        }
+        store.receiveLot("Gauze", "GONE", TODAY.minusDays(1), 1);
+
+        var sweep = sweeper.sweep();
+
+        long expiring = store.readLots("Gauze").stream()
+                .filter(l -> !l.expiresOn().isBefore(TODAY) && !l.expiresOn().isAfter(TODAY.plusDays(30))).count();
+        assertThat(sweep.expired()).isEqualTo(1);
+        assertThat(sweep.expiring()).isEqualTo(expiring);
+        assertThat(sweep.from()).isEqualTo(TODAY.minusDays(30));
+        assertThat(sweep.through()).isEqualTo(TODAY.plusDays(30));
+        assertThat(sweep.soonest()).hasSize(LotExpirySweeper.LOGGED).first().extracting(Lot::lot).isEqualTo("GONE");
+        assertThat(registry.get("qare.lots.expired").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("qare.lots.expiring").gauge().value()).isEqualTo(expiring);
+    }
+
+    @Test
+    void sweep_withNothingDue_resetsTheGauges() {
+        store.create(new MedicalSupply("Gauze", 0, "roll"));
+        store.receiveLot("Gauze", "L1", TODAY.plusDays(31), 1);
+
+        assertThat(sweeper.sweep()).isEqualTo(new LotExpirySweeper.Sweep(0, 0, TODAY.minusDays(30), TODAY.plusDays(30), List.of()));
+        assertThat(registry.get("qare.lots.expiring").gauge().value()).isZero();
+    }
+
+    @Test
+    void sweep_startsFromThePreviousSweep_soAnExpiredLotIsReportedOnce() {
+        store.create(new MedicalSupply("Gauze", 0, "roll"));
+        store.receiveLot("Gauze", "GONE", TODAY.minusDays(1), 1);
+        store.receiveLot("Gauze", "SOON", TODAY.plusDays(1), 1);
+        store.receiveLot("Gauze", "LONG_GONE", TODAY.minusDays(31), 1);
+
+        assertThat(sweeper.sweep().expired()).isEqualTo(1);
+        var again = sweeper.sweep();
+
+        assertThat(again.from()).isEqualTo(TODAY);
+        assertThat(again.expired()).isZero();
+        assertThat(again.soonest()).extracting(Lot::lot).containsExactly("SOON");
+        assertThat(registry.get("qare.lots.expired").gauge().value()).isZero();
+    }
+}
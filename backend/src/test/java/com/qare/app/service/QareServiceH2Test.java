@@ -0,0 +1,38 @@
+package com.qare.app.service;
+
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.BulkResult;
+import com.qare.app.model.MedicalSupply;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/** QareService through its transactional proxy, on the H2 store. */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:service-h2;DB_CLOSE_DELAY=-1")
+class QareServiceH2Test {
+
+    @Autowired QareService service;
+    @Autowired SupplyStore db;
+
+    @Test
+    void upsertAll_oneBadRowAmongGoodOnes_commitsTheGoodRows_andReportsTheBadOne() {
+        service.add(new MedicalSupply("Bulk-Mask", 1, "box"));
+
+        var failures = service.upsertAll(List.of(
+                new MedicalSupply("Bulk-Gloves", 5, "box"),
+                new MedicalSupply("Bulk-Gauze", -1, "roll"),
+                new MedicalSupply("Bulk-Mask", 7, "box")));
+
+        assertThat(failures).extracting(BulkResult.Failure::index, BulkResult.Failure::name)
+                .containsExactly(tuple(1, "Bulk-Gauze"));
+        assertThat(db.read("Bulk-Gloves")).contains(new MedicalSupply("Bulk-Gloves", 5, "box"));
+        assertThat(db.read("Bulk-Mask")).contains(new MedicalSupply("Bulk-Mask", 7, "box", 1));
+        assertThat(db.read("Bulk-Gauze")).isEmpty();
+        assertThat(service.movements("Bulk-Mask", 10)).hasSize(2); // the failed batch left no ledger rows behind
+    }
+}
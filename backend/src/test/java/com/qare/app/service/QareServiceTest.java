@@ -1,35 +1,83 @@
 package com.qare.app.service;
 
-import com.qare.app.config.DBConfig;
+import com.qare.app.config.SupplyStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.qare.app.model.BulkResult;
+import com.qare.app.model.InventoryStats;
+import com.qare.app.model.LocationStock;
+import com.qare.app.model.LotReceipt;
 import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.StockAdjustments;
+import com.qare.app.model.StockOutlook;
+import com.qare.app.model.SupplyLocations;
+import com.qare.app.model.SupplyPage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @org.junit.jupiter.api.extension.ExtendWith(MockitoExtension.class)
 class QareServiceTest {
 
-    @Mock DBConfig db;
-    @InjectMocks QareService service;
+    @Mock SupplyStore db;
+    SupplySearchIndex index;
+    SupplyChangeFeed feed;
+    final SupplyChangeFeedTest.ManualExecutor executor = new SupplyChangeFeedTest.ManualExecutor();
+    QareService service;
 
     @Captor ArgumentCaptor<MedicalSupply> supplyCaptor;
 
     @BeforeEach
-    void setup() {}
+    void setup() {
+        lenient().when(db.create(any())).thenAnswer(call -> call.getArgument(0));
+        index = new SupplySearchIndex();
+        feed = new SupplyChangeFeed(100, Duration.ZERO, executor);
+        service = serviceWith(new WriteBehindBuffer(db, TransactionOperations.withoutTransaction(),
+                new ObjectMapper(), null, 100));
+    }
+
+    private QareService serviceWith(WriteBehindBuffer writes) {
+        var cache = new SupplyCache(100, Duration.ZERO, new SimpleMeterRegistry());
+        return new QareService(db, cache, index, new DataVersion(), feed, writes,
+                new CatalogSnapshot(db, cache, writes, TransactionOperations.withoutTransaction(), null), statistics(writes),
+                new SupplyReadModel(db, writes, null, Duration.ZERO, new SimpleMeterRegistry()),
+                TransactionOperations.withoutTransaction());
+    }
+
+    private SupplyStatistics statistics(WriteBehindBuffer writes) {
+        return new SupplyStatistics(db, writes, TransactionOperations.withoutTransaction(), new SimpleMeterRegistry(), Clock.systemUTC());
+    }
 
     @Test
     void add_normalizes_and_returns_created() {
@@ -56,12 +104,111 @@ class QareServiceTest {
     }
 
     @Test
-    void readAll_delegates_to_db() {
-        var list = List.of(new MedicalSupply("A", 1, "u"));
-        given(db.readAll()).willReturn(list);
+    void readPage_strips_cursor_and_delegates() {
+        var page = new SupplyPage(List.of(new MedicalSupply("B", 1, "u")), null);
+        given(db.readPage("A", 10)).willReturn(page);
+
+        assertThat(service.readPage("  A ", 10)).isSameAs(page);
+        verify(db).readPage("A", 10);
+    }
+
+    @Test
+    void upsertAll_normalizes_and_batches() {
+        var result = service.upsertAll(List.of(new MedicalSupply(" Gloves ", 5, " box ")));
+
+        assertThat(result).isEmpty();
+        verify(db).upsertAll(List.of(new MedicalSupply("Gloves", 5, "box")));
+        verify(db, never()).upsert(any());
+    }
+
+    @Test
+    void upsertAll_batchFailure_retriesRowByRow_andReportsOffenders() {
+        var good = new MedicalSupply("Gloves", 5, "box");
+        var bad = new MedicalSupply("Mask", 1, "box");
+        willThrow(new DataIntegrityViolationException("batch")).given(db).upsertAll(anyList());
+        given(db.upsert(good)).willReturn(good.withVersion(1));
+        lenient().doThrow(new DataIntegrityViolationException("boom")).when(db).upsert(bad);
+
+        var failures = service.upsertAll(List.of(good, bad));
+
+        verify(db).upsert(good);
+        assertThat(failures).containsExactly(new BulkResult.Failure(1, "Mask", "boom"));
+    }
+
+    @Test
+    void readLowStock_delegates() {
+        var page = new SupplyPage(List.of(new MedicalSupply("Mask", 0, "box")), null);
+        given(db.readLowStock(5, null, 50)).willReturn(page);
+
+        assertThat(service.readLowStock(5, null, 50)).isSameAs(page);
+    }
+
+    @Test
+    void export_delegates_sink_to_db() {
+        Consumer<MedicalSupply> sink = s -> {};
+
+        service.export(sink);
+
+        verify(db).forEach(sink);
+    }
+
+    @Test
+    void readMany_keepsRequestOrder_dedupes_andListsMissingNames() {
+        given(db.readByNames(List.of("Mask", "Ghost", "Gloves"))).willReturn(List.of(
+                new MedicalSupply("Gloves", 1, "box"), new MedicalSupply("Mask", 2, "box")));
+
+        var result = service.readMany(List.of(" Mask ", "Ghost", "Gloves", "Mask"));
+
+        assertThat(result.found()).containsExactly(new MedicalSupply("Mask", 2, "box"), new MedicalSupply("Gloves", 1, "box"));
+        assertThat(result.missing()).containsExactly("Ghost");
+        verify(db, never()).read(any());
+    }
+
+    @Test
+    void outlookAndMovements_normalizeName_andDelegate() {
+        var outlook = StockOutlook.of("Gloves", 10, 1, 7);
+        given(db.readOutlook("Gloves")).willReturn(Optional.of(outlook));
+        given(db.readMovements("Gloves", 5)).willReturn(List.of());
+
+        assertThat(service.outlook(" Gloves ")).contains(outlook);
+        assertThat(service.movements(" Gloves ", 5)).isEmpty();
+        verify(db).readMovements("Gloves", 5);
+    }
+
+    @Test
+    void locationStock_normalizesNames_andTellsMissingFromInsufficient() {
+        var north = new LocationStock("Gloves", "north", 3, 1);
+        given(db.setLocationStock("Gloves", "north", 3)).willReturn(Optional.of(north));
+        given(db.readLocationStock("Gloves")).willReturn(List.of(north));
+        given(db.read("Gloves")).willReturn(Optional.of(new MedicalSupply("Gloves", 1, "box")));
+
+        assertThat(service.setLocationStock(" Gloves ", " north ", 3)).contains(north);
+        assertThat(service.locations("Gloves")).contains(new SupplyLocations("Gloves", 3, List.of(north)));
+        assertThatThrownBy(() -> service.adjustLocationStock("Gloves", "north", -4))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThat(service.adjustLocationStock("Ghost", "north", -4)).isEmpty();
+        assertThat(service.locations("Ghost")).isEmpty();
+    }
+
+    @Test
+    void lots_receiptAndWriteOff_areWritesThatChangeTheDataVersion() {
+        var date = LocalDate.of(2026, 3, 10);
+        var received = new MedicalSupply("Gauze", 5, "roll", 1);
+        given(db.receiveLot("Gauze", "A-1", date, 5)).willReturn(Optional.of(received));
+        given(db.writeOffLot("Gauze", "A-1")).willReturn(Optional.of(new MedicalSupply("Gauze", 0, "roll", 2)));
+        given(db.readLots("Gauze")).willReturn(List.of());
+        given(db.read("Gauze")).willReturn(Optional.of(received));
+        String initial = service.dataVersion();
+
+        assertThat(service.receiveLot(" Gauze ", new LotReceipt("A-1", date, 5))).contains(received);
+        String afterReceipt = service.dataVersion();
+        assertThat(afterReceipt).isNotEqualTo(initial);
+        assertThat(service.writeOffLot("Gauze", "A-1")).get().extracting(MedicalSupply::amount).isEqualTo(0);
+        assertThat(service.dataVersion()).isNotEqualTo(afterReceipt);
+        assertThat(service.writeOffLot("Gauze", "B-2")).isEmpty();
 
-        assertThat(service.readAll()).isSameAs(list);
-        verify(db).readAll();
+        assertThat(service.lots("Gauze")).contains(List.of());
+        assertThat(service.lots("Ghost")).isEmpty();
     }
 
     @Test
@@ -75,26 +222,356 @@ class QareServiceTest {
     }
 
     @Test
-    void update_normalizes_then_returning_boolean() {
-        var input = new MedicalSupply("  Syringe  ", 3, "  box ");
-        given(db.update(any())).willReturn(true);
+    void read_isServedFromCache_untilWriteInvalidates() {
+        given(db.read("Bandage")).willReturn(Optional.of(new MedicalSupply("Bandage", 1, "pack")));
+        given(db.update(any(), eq(0L))).willReturn(Optional.of(new MedicalSupply("Bandage", 2, "pack", 1)));
+
+        service.read("Bandage");
+        service.read(" Bandage ");
+        verify(db, times(1)).read("Bandage");
+
+        service.update(new MedicalSupply("Bandage", 2, "pack"), 0);
+        service.read("Bandage");
+        verify(db, times(2)).read("Bandage");
+    }
+
+    @Test
+    void read_cachesMisses_untilAddInvalidates() {
+        given(db.read("Gauze")).willReturn(Optional.empty());
+
+        assertThat(service.read("Gauze")).isEmpty();
+        assertThat(service.read("Gauze")).isEmpty();
+        verify(db, times(1)).read("Gauze");
+
+        service.add(new MedicalSupply("Gauze", 1, "pack"));
+        service.read("Gauze");
+        verify(db, times(2)).read("Gauze");
+    }
+
+    @Test
+    void read_concurrentMisses_shareOneQuery() throws Exception {
+        try (ExecutorService pool = Executors.newSingleThreadExecutor()) {
+            List<Future<Optional<MedicalSupply>>> joined = new ArrayList<>();
+            willAnswer(inv -> {
+                var thread = new Thread[1];
+                joined.add(pool.submit(() -> {
+                    thread[0] = Thread.currentThread();
+                    return service.read(" Gloves ");
+                }));
+                while (thread[0] == null || thread[0].getState() != Thread.State.WAITING) Thread.onSpinWait();
+                return Optional.of(new MedicalSupply("Gloves", 1, "box"));
+            }).given(db).read("Gloves");
+
+            assertThat(service.read("Gloves")).isPresent();
+            assertThat(joined.getFirst().get()).contains(new MedicalSupply("Gloves", 1, "box"));
+        }
+        verify(db, times(1)).read("Gloves");
+    }
+
+    @Test
+    void warmUp_indexesEveryRow() {
+        willAnswer(inv -> {
+            Consumer<MedicalSupply> sink = inv.getArgument(0);
+            sink.accept(new MedicalSupply("Gloves", 1, "box"));
+            return null;
+        }).given(db).forEach(any());
+
+        service.warmUp();
+
+        assertThat(service.search("glo", 5)).containsExactly("Gloves");
+    }
+
+    @Test
+    void warmUp_prefersACurrentSnapshot_andRecachesHotRows(@TempDir Path dir) {
+        var gloves = new MedicalSupply("Gloves", 1, "box");
+        willAnswer(inv -> {
+            Consumer<MedicalSupply> sink = inv.getArgument(0);
+            sink.accept(gloves);
+            return null;
+        }).given(db).forEach(any());
+        var writes = new WriteBehindBuffer(db, TransactionOperations.withoutTransaction(), new ObjectMapper(), null, 100);
+        var cache = new SupplyCache(100, Duration.ZERO, new SimpleMeterRegistry());
+        cache.prime(gloves);
+        new CatalogSnapshot(db, cache, writes, TransactionOperations.withoutTransaction(), dir.resolve("catalog.bin")).write();
+
+        var restartedCache = new SupplyCache(100, Duration.ZERO, new SimpleMeterRegistry());
+        var restarted = new QareService(db, restartedCache, index, new DataVersion(), feed, writes,
+                new CatalogSnapshot(db, restartedCache, writes, TransactionOperations.withoutTransaction(), dir.resolve("catalog.bin")),
+                statistics(writes), new SupplyReadModel(db, writes, null, Duration.ZERO, new SimpleMeterRegistry()),
+                TransactionOperations.withoutTransaction());
+        restarted.warmUp();
+
+        assertThat(restarted.search("glo", 5)).containsExactly("Gloves");
+        assertThat(restarted.stats().supplies()).isEqualTo(1);
+        assertThat(restarted.read("Gloves")).contains(gloves);
+        verify(db, times(1)).forEach(any()); // only to write the snapshot
+        verify(db, never()).read(any());
+    }
+
+    @Test
+    void search_followsAddsAndDeletes() {
+        given(db.delete("Gloves", 0)).willReturn(true);
+
+        service.add(new MedicalSupply(" Gloves ", 1, "box"));
+        assertThat(service.search("glo", 5)).containsExactly("Gloves");
+
+        service.delete("Gloves", 0);
+        assertThat(service.search("glo", 5)).isEmpty();
+    }
+
+    @Test
+    void stats_followAddsUpdatesAdjustmentsAndDeletes() {
+        given(db.update(any(), anyLong())).willAnswer(inv -> Optional.of(inv.<MedicalSupply>getArgument(0).withVersion(1)));
+        given(db.addToAmount("Gloves", -5)).willReturn(Optional.of(new MedicalSupply("Gloves", 3, "pair", 2)));
+        given(db.delete("Mask", 0)).willReturn(true);
+
+        service.add(new MedicalSupply("Gloves", 20, "box"));
+        service.add(new MedicalSupply("Mask", 7, "box"));
+        service.update(new MedicalSupply("Gloves", 8, " pair "), 0);
+        service.adjustAmount("Gloves", -5);
+
+        var stats = service.stats();
+        assertThat(stats.supplies()).isEqualTo(2);
+        assertThat(stats.units()).containsExactly(
+                entry("box", new InventoryStats.Unit(1, 7)), entry("pair", new InventoryStats.Unit(1, 3)));
+        assertThat(stats.status()).isEqualTo(new InventoryStats.Status(1, 1, 0));
+
+        service.delete("Mask", 0);
+        assertThat(service.stats().units()).containsOnlyKeys("pair");
+        assertThat(service.stats().status()).isEqualTo(new InventoryStats.Status(1, 0, 0));
+    }
+
+    @Test
+    void dataVersion_changesOnSuccessfulWritesOnly() {
+        given(db.update(any(), anyLong())).willReturn(Optional.empty());
+        String initial = service.dataVersion();
 
-        boolean updated = service.update(input);
+        service.update(new MedicalSupply("Nope", 1, "box"), 0);
+        assertThat(service.dataVersion()).isEqualTo(initial);
 
-        assertThat(updated).isTrue();
-        verify(db).update(supplyCaptor.capture());
+        service.add(new MedicalSupply("Gloves", 1, "box"));
+        assertThat(service.dataVersion()).isNotEqualTo(initial);
+    }
+
+    @Test
+    void writes_arePublishedToSubscribers() {
+        var subscriber = new SupplyChangeFeedTest.RecordingEmitter();
+        feed.subscribe(subscriber);
+        given(db.delete("Gloves", SupplyStore.ANY_VERSION)).willReturn(true);
+
+        service.add(new MedicalSupply("Gloves", 1, "box"));
+        executor.runAll();
+        service.delete("Gloves", SupplyStore.ANY_VERSION);
+        executor.runAll();
+
+        assertThat(subscriber.frames).hasSize(2);
+        assertThat(subscriber.frames.get(0)).startsWith("event:created");
+        assertThat(subscriber.frames.get(1)).startsWith("event:deleted");
+    }
+
+    @Test
+    void failedUpdate_isNotPublished() {
+        var subscriber = new SupplyChangeFeedTest.RecordingEmitter();
+        feed.subscribe(subscriber);
+        given(db.update(any(), anyLong())).willReturn(Optional.empty());
+
+        service.update(new MedicalSupply("Nope", 1, "box"), 0);
+        executor.runAll();
+
+        assertThat(subscriber.frames).isEmpty();
+    }
+
+    @Test
+    void update_normalizes_then_returnsRowAtNewVersion() {
+        var input = new MedicalSupply("  Syringe  ", 3, "  box ");
+        var stored = new MedicalSupply("Syringe", 3, "box", 4);
+        given(db.update(any(), eq(3L))).willReturn(Optional.of(stored));
+
+        assertThat(service.update(input, 3)).contains(stored);
+        verify(db).update(supplyCaptor.capture(), eq(3L));
         var passed = supplyCaptor.getValue();
         assertThat(passed.name()).isEqualTo("Syringe");
         assertThat(passed.unitName()).isEqualTo("box");
     }
 
+    @Test
+    void update_staleVersion_throwsConflict() {
+        given(db.update(any(), eq(3L))).willReturn(Optional.empty());
+        given(db.read("Syringe")).willReturn(Optional.of(new MedicalSupply("Syringe", 1, "box", 5)));
+
+        assertThatThrownBy(() -> service.update(new MedicalSupply("Syringe", 3, "box"), 3))
+                .isInstanceOf(VersionConflictException.class);
+    }
+
+    @Test
+    void update_decidesMissingOrConflict_fromTheStore_notTheCache() {
+        given(db.read("Syringe")).willReturn(Optional.of(new MedicalSupply("Syringe", 1, "box", 5)));
+        assertThat(service.read("Syringe")).isPresent(); // now cached
+        given(db.update(any(), anyLong())).willReturn(Optional.empty());
+        given(db.read("Syringe")).willReturn(Optional.empty()); // deleted behind the cache's back
+
+        assertThat(service.update(new MedicalSupply("Syringe", 3, "box"), 5)).isEmpty();
+    }
+
+    @Test
+    void update_missing_isEmpty() {
+        given(db.update(any(), eq(3L))).willReturn(Optional.empty());
+        given(db.read("Nope")).willReturn(Optional.empty());
+
+        assertThat(service.update(new MedicalSupply("Nope", 3, "box"), 3)).isEmpty();
+    }
+
+    @Test
+    void adjustAmount_returnsUpdatedRow() {
+        var after = new MedicalSupply("Gloves", 6, "box");
+        given(db.addToAmount("Gloves", -4)).willReturn(Optional.of(after));
+
+        assertThat(service.adjustAmount(" Gloves ", -4)).contains(after);
+        verify(db, never()).read(any());
+    }
+
+    @Test
+    void adjustAmount_insufficientStock_throws() {
+        given(db.addToAmount("Gloves", -4)).willReturn(Optional.empty());
+        given(db.read("Gloves")).willReturn(Optional.of(new MedicalSupply("Gloves", 3, "box")));
+
+        assertThatThrownBy(() -> service.adjustAmount("Gloves", -4))
+                .isInstanceOf(InsufficientStockException.class);
+    }
+
+    @Test
+    void adjustAmount_missing_isEmpty() {
+        given(db.addToAmount("Nope", 1)).willReturn(Optional.empty());
+        given(db.read("Nope")).willReturn(Optional.empty());
+
+        assertThat(service.adjustAmount("Nope", 1)).isEmpty();
+    }
+
+    @Test
+    void adjustAmounts_sumsDeltasPerName_inNameOrder() {
+        var rows = List.of(new MedicalSupply("Gauze", 3, "roll", 1), new MedicalSupply("Mask", 5, "box", 1));
+        given(db.addToAmounts(new TreeMap<>(Map.of("Gauze", -1, "Mask", -5)))).willReturn(Optional.of(rows));
+
+        assertThat(service.adjustAmounts(List.of(
+                new StockAdjustments.Item(" Mask", -2), new StockAdjustments.Item("Gauze", -1),
+                new StockAdjustments.Item("Mask ", -3)))).contains(rows);
+        verify(db, never()).readByNames(any());
+    }
+
+    @Test
+    void adjustAmounts_namesEverySupplyThatIsShort_orIsEmptyWhenOneIsMissing() {
+        given(db.addToAmounts(any())).willReturn(Optional.empty());
+        given(db.readByNames(any())).willReturn(List.of(
+                new MedicalSupply("Gauze", 0, "roll"), new MedicalSupply("Mask", 9, "box"), new MedicalSupply("Swab", 1, "pack")));
+
+        assertThatThrownBy(() -> service.adjustAmounts(List.of(new StockAdjustments.Item("Gauze", -1),
+                new StockAdjustments.Item("Mask", -2), new StockAdjustments.Item("Swab", -4))))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessage("Insufficient stock for 'Gauze' (delta -1), 'Swab' (delta -4)");
+        assertThat(service.adjustAmounts(List.of(new StockAdjustments.Item("Mask", -1),
+                new StockAdjustments.Item("Nope", 1)))).isEmpty();
+    }
+
     @Test
     void delete_normalizes_name() {
-        given(db.delete("Mask")).willReturn(true);
+        given(db.delete("Mask", 2)).willReturn(true);
 
-        boolean deleted = service.delete("  Mask  ");
+        boolean deleted = service.delete("  Mask  ", 2);
 
         assertThat(deleted).isTrue();
-        verify(db).delete("Mask");
+        verify(db).delete("Mask", 2);
+    }
+
+    @Test
+    void delete_staleVersion_throwsConflict_missing_returnsFalse() {
+        given(db.delete(any(), eq(2L))).willReturn(false);
+        given(db.read("Mask")).willReturn(Optional.of(new MedicalSupply("Mask", 1, "box", 3)));
+        given(db.read("Nope")).willReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.delete("Mask", 2)).isInstanceOf(VersionConflictException.class);
+        assertThat(service.delete("Nope", 2)).isFalse();
+    }
+
+    @Test
+    void writeBehind_update_isAcknowledgedFromBuffer_andReadBack(@TempDir Path wal) {
+        var writes = new WriteBehindBuffer(db, TransactionOperations.withoutTransaction(), new ObjectMapper(), wal, 100);
+        service = serviceWith(writes);
+        var subscriber = new SupplyChangeFeedTest.RecordingEmitter();
+        feed.subscribe(subscriber);
+        given(db.read("Gloves")).willReturn(Optional.of(new MedicalSupply("Gloves", 1, "box")));
+
+        assertThat(service.update(new MedicalSupply(" Gloves ", 8, "box"), 0))
+                .contains(new MedicalSupply("Gloves", 8, "box", 1));
+
+        verify(db, never()).update(any(), anyLong());
+        verify(db, never()).updateAll(any());
+        assertThat(service.read("Gloves")).contains(new MedicalSupply("Gloves", 8, "box", 1));
+        executor.runAll();
+        assertThat(subscriber.frames).singleElement().asString().startsWith("event:updated");
+    }
+
+    @Test
+    void writeBehind_update_missing_isEmpty_withoutBuffering(@TempDir Path wal) {
+        var writes = new WriteBehindBuffer(db, TransactionOperations.withoutTransaction(), new ObjectMapper(), wal, 100);
+        service = serviceWith(writes);
+        given(db.read("Nope")).willReturn(Optional.empty());
+
+        assertThat(service.update(new MedicalSupply("Nope", 1, "box"), SupplyStore.ANY_VERSION)).isEmpty();
+        assertThat(writes.pendingCount()).isZero();
+    }
+
+    @Test
+    void writeBehind_update_checksVersionAgainstBufferedWrite(@TempDir Path wal) {
+        var writes = new WriteBehindBuffer(db, TransactionOperations.withoutTransaction(), new ObjectMapper(), wal, 100);
+        service = serviceWith(writes);
+        given(db.read("Gloves")).willReturn(Optional.of(new MedicalSupply("Gloves", 1, "box")));
+        service.update(new MedicalSupply("Gloves", 8, "box"), 0);
+
+        assertThatThrownBy(() -> service.update(new MedicalSupply("Gloves", 9, "box"), 0))
+                .isInstanceOf(VersionConflictException.class);
+        assertThat(service.update(new MedicalSupply("Gloves", 9, "box"), 1))
+                .contains(new MedicalSupply("Gloves", 9, "box", 2));
+    }
+
+    @Test
+    void writeBehind_readMany_servesBufferedWrites_andQueriesTheRest(@TempDir Path wal) {
+        var writes = new WriteBehindBuffer(db, TransactionOperations.withoutTransaction(), new ObjectMapper(), wal, 100);
+        service = serviceWith(writes);
+        given(db.read("Gloves")).willReturn(Optional.of(new MedicalSupply("Gloves", 1, "box")));
+        given(db.readByNames(List.of("Mask"))).willReturn(List.of(new MedicalSupply("Mask", 2, "box")));
+        service.update(new MedicalSupply("Gloves", 8, "box"), 0);
+
+        assertThat(service.readMany(List.of("Gloves", "Mask")).found())
+                .containsExactly(new MedicalSupply("Gloves", 8, "box", 1), new MedicalSupply("Mask", 2, "box"));
+    }
+
+    @Test
+    void writeBehind_directWrite_flushesBufferedWriteFirst(@TempDir Path wal) {
+        var writes = new WriteBehindBuffer(db, TransactionOperations.withoutTransaction(), new ObjectMapper(), wal, 100);
+        service = serviceWith(writes);
+        given(db.read("Gloves")).willReturn(Optional.of(new MedicalSupply("Gloves", 1, "box")));
+        given(db.addToAmount("Gloves", -2)).willReturn(Optional.of(new MedicalSupply("Gloves", 6, "box", 2)));
+        service.update(new MedicalSupply("Gloves", 8, "box"), 0);
+
+        service.adjustAmount("Gloves", -2);
+
+        var order = inOrder(db);
+        order.verify(db).updateAll(List.of(new MedicalSupply("Gloves", 8, "box", 1)));
+        order.verify(db).addToAmount("Gloves", -2);
+        assertThat(writes.pendingCount()).isZero();
+    }
+
+    @Test
+    void writeBehind_listRead_drainsBufferFirst(@TempDir Path wal) {
+        var writes = new WriteBehindBuffer(db, TransactionOperations.withoutTransaction(), new ObjectMapper(), wal, 100);
+        service = serviceWith(writes);
+        given(db.read("Gloves")).willReturn(Optional.of(new MedicalSupply("Gloves", 1, "box")));
+        service.update(new MedicalSupply("Gloves", 8, "box"), 0);
+
+        service.readPage(null, 10);
+
+        var order = inOrder(db);
+        order.verify(db).updateAll(List.of(new MedicalSupply("Gloves", 8, "box", 1)));
+        order.verify(db).readPage(null, 10);
     }
 }
@@ -0,0 +1,97 @@
+package com.qare.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    final SingleFlight<String, Integer> flight = new SingleFlight<>();
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    volatile boolean failing;
+
+    private Integer slowLoad() {
+        loads.incrementAndGet();
+        loading.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        if (failing) throw new IllegalStateException("db down");
+        return 42;
+    }
+
+    /** Starts a leader blocked in its load, then {@code followers} callers that must join it. */
+    private List<Future<Integer>> pileUp(ExecutorService pool, int followers) throws InterruptedException {
+        List<Thread> waiting = new ArrayList<>();
+        List<Future<Integer>> calls = new ArrayList<>();
+        calls.add(pool.submit(() -> flight.run("k", this::slowLoad)));
+        loading.await();
+        for (int i = 0; i < followers; i++) {
+            calls.add(pool.submit(() -> {
+                synchronized (waiting) { waiting.add(Thread.currentThread()); }
+                return flight.run("k", this::slowLoad);
+            }));
+        }
+        while (true) { // every follower parked on the leader's result
+            synchronized (waiting) {
+                if (waiting.size() == followers && waiting.stream().allMatch(t -> t.getState() == Thread.State.WAITING)) break;
+            }
+            Thread.onSpinWait();
+        }
+        return calls;
+    }
+
+    @Test
+    void concurrentCalls_shareOneLoad() throws Exception {
+        try (ExecutorService pool = Executors.newFixedThreadPool(9)) {
+            var calls = pileUp(pool, 8);
+            release.countDown();
+            for (var call : calls) assertThat(call.get()).isEqualTo(42);
+        }
+        assertThat(loads).hasValue(1);
+
+        assertThat(flight.run("k", () -> 7)).isEqualTo(7); // nothing is kept afterwards
+    }
+
+    @Test
+    void aFailure_reachesEveryWaiter_andIsNotKept() throws Exception {
+        failing = true;
+        try (ExecutorService pool = Executors.newFixedThreadPool(3)) {
+            var calls = pileUp(pool, 2);
+            release.countDown();
+            for (var call : calls) {
+                assertThatThrownBy(call::get).hasCauseInstanceOf(IllegalStateException.class).hasMessageContaining("db down");
+            }
+        }
+        assertThat(loads).hasValue(1);
+
+        assertThat(flight.run("k", () -> 1)).isEqualTo(1);
+    }
+
+    @Test
+    void forget_makesLaterCallersRunTheirOwnLoad() throws Exception {
+        try (ExecutorService pool = Executors.newFixedThreadPool(2)) {
+            var leader = pool.submit(() -> flight.run("k", this::slowLoad));
+            loading.await();
+
+            flight.forget("k");
+            assertThat(flight.run("k", () -> 7)).isEqualTo(7);
+
+            release.countDown();
+            assertThat(leader.get()).isEqualTo(42);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.qare.app.service;
+
+import com.qare.app.model.MedicalSupply;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SupplyCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private static Optional<MedicalSupply> supply(String name) {
+        return Optional.of(new MedicalSupply(name, 1, "box"));
+    }
+
+    @Test
+    void get_loadsOnce_thenHits() {
+        var cache = new SupplyCache(10, Duration.ZERO, registry);
+        var loads = new AtomicInteger();
+
+        cache.get("Mask", () -> { loads.incrementAndGet(); return supply("Mask"); });
+        var second = cache.get("Mask", () -> { loads.incrementAndGet(); return supply("Mask"); });
+
+        assertThat(second).isEqualTo(supply("Mask"));
+        assertThat(loads).hasValue(1);
+        assertThat(registry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void exceedingMaxSize_evictsLeastRecentlyUsed() {
+        var cache = new SupplyCache(2, Duration.ZERO, registry);
+        cache.get("A", () -> supply("A"));
+        cache.get("B", () -> supply("B"));
+        cache.get("A", () -> supply("A")); // A is now most recent
+        cache.get("C", () -> supply("C"));
+
+        var loads = new AtomicInteger();
+        cache.get("A", () -> { loads.incrementAndGet(); return supply("A"); });
+        cache.get("B", () -> { loads.incrementAndGet(); return supply("B"); });
+
+        assertThat(loads).hasValue(1); // only B had been evicted
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(registry.get("cache.evictions").functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void segmentedCache_staysWithinMaxSize_andCountsEveryEviction() {
+        var cache = new SupplyCache(1000, Duration.ZERO, registry); // several segments
+        for (int i = 0; i < 3000; i++) cache.get("S" + i, () -> supply("S"));
+
+        assertThat(cache.size()).isEqualTo(1000);
+        assertThat(registry.get("cache.evictions").functionCounter().count()).isEqualTo(2000);
+        cache.invalidateAll();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void expiredEntry_isReloaded() throws InterruptedException {
+        var cache = new SupplyCache(10, Duration.ofMillis(1), registry);
+        var loads = new AtomicInteger();
+
+        cache.get("Mask", () -> { loads.incrementAndGet(); return supply("Mask"); });
+        Thread.sleep(5);
+        cache.get("Mask", () -> { loads.incrementAndGet(); return supply("Mask"); });
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void loadRacingWithInvalidate_isNotCached() {
+        var cache = new SupplyCache(10, Duration.ZERO, registry);
+
+        cache.get("Mask", () -> {
+            cache.invalidate("Mask"); // a write commits while the stale value is in flight
+            return supply("Mask");
+        });
+
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,108 @@
+package com.qare.app.service;
+
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.SupplyEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SupplyChangeFeedTest {
+
+    /** Runs drains only when asked, to stand in for a client that is slow to read. */
+    static class ManualExecutor extends AbstractExecutorService {
+        final List<Runnable> queued = new ArrayList<>();
+        @Override public void execute(Runnable command) { queued.add(command); }
+        void runAll() { while (!queued.isEmpty()) queued.remove(0).run(); }
+        @Override public void shutdown() {}
+        @Override public List<Runnable> shutdownNow() { return List.of(); }
+        @Override public boolean isShutdown() { return false; }
+        @Override public boolean isTerminated() { return false; }
+        @Override public boolean awaitTermination(long timeout, TimeUnit unit) { return true; }
+    }
+
+    /** Records the rendered SSE frames instead of writing to a response. */
+    static class RecordingEmitter extends SseEmitter {
+        final List<String> frames = new ArrayList<>();
+        boolean broken;
+        @Override public void send(SseEventBuilder builder) throws IOException {
+            if (broken) throw new IOException("client went away");
+            StringBuilder frame = new StringBuilder();
+            builder.build().forEach(d -> frame.append(d.getData()));
+            frames.add(frame.toString());
+        }
+    }
+
+    final ManualExecutor executor = new ManualExecutor();
+    final SupplyChangeFeed feed = new SupplyChangeFeed(2, Duration.ZERO, executor);
+
+    @AfterEach
+    void tearDown() {
+        feed.shutdown();
+    }
+
+    private static SupplyEvent updated(String name, int amount) {
+        return new SupplyEvent(SupplyEvent.Type.UPDATED, name, new MedicalSupply(name, amount, "box"));
+    }
+
+    @Test
+    void publish_deliversEventToEverySubscriber() {
+        var a = new RecordingEmitter();
+        var b = new RecordingEmitter();
+        feed.subscribe(a);
+        feed.subscribe(b);
+
+        feed.publish(updated("Gloves", 5));
+        executor.runAll();
+
+        assertThat(a.frames).singleElement().asString().startsWith("event:updated");
+        assertThat(b.frames).hasSize(1);
+    }
+
+    @Test
+    void rapidUpdatesToSameName_areCoalescedToLatest() {
+        var slow = new RecordingEmitter();
+        feed.subscribe(slow);
+
+        feed.publish(updated("Gloves", 5));
+        feed.publish(updated("Gloves", 4));
+        feed.publish(updated("Gloves", 3));
+        executor.runAll();
+
+        assertThat(slow.frames).hasSize(1);
+        assertThat(slow.frames.get(0)).contains("amount=3");
+    }
+
+    @Test
+    void overflowingBuffer_collapsesToSingleResync() {
+        var slow = new RecordingEmitter();
+        feed.subscribe(slow);
+
+        feed.publish(updated("A", 1));
+        feed.publish(updated("B", 1));
+        feed.publish(updated("C", 1)); // buffer size is 2
+        executor.runAll();
+
+        assertThat(slow.frames).singleElement().asString().startsWith("event:" + SupplyChangeFeed.RESYNC);
+    }
+
+    @Test
+    void failedSend_dropsSubscriber() {
+        var gone = new RecordingEmitter();
+        gone.broken = true;
+        feed.subscribe(gone);
+
+        feed.publish(updated("Gloves", 5));
+        executor.runAll();
+
+        assertThat(feed.subscriberCount()).isZero();
+    }
+}
@@ -0,0 +1,152 @@
+package com.qare.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qare.app.config.InMemorySupplyStore;
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.MedicalSupply;
+import com.qare.app.model.SupplyPage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+class SupplyReadModelTest {
+
+    Runnable duringRefresh = () -> {};
+    final InMemorySupplyStore store = new InMemorySupplyStore() {
+        @Override public List<MedicalSupply> readByNames(Collection<String> names) {
+            duringRefresh.run();
+            return super.readByNames(names);
+        }
+    };
+    final SupplyChangeFeedTest.ManualExecutor applier = new SupplyChangeFeedTest.ManualExecutor();
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final WriteBehindBuffer writes = new WriteBehindBuffer(store, TransactionOperations.withoutTransaction(),
+            new ObjectMapper(), null, 100);
+    SupplyReadModel model = new SupplyReadModel(store, writes, applier, Duration.ofHours(1), registry);
+
+    @BeforeEach
+    void seed() {
+        store.create(new MedicalSupply("Gauze", 3, "roll"));
+        store.create(new MedicalSupply("Gloves", 1, "box"));
+        store.create(new MedicalSupply("Mask", 2, "pack"));
+    }
+
+    private static <T> T noQuery() {
+        return fail("read went to the database");
+    }
+
+    private double fallbacks() {
+        return registry.get("qare.read.model.fallbacks").counter().count();
+    }
+
+    @Test
+    void beforeLoad_everyReadFallsBack() {
+        assertThat(model.read("Gloves", () -> Optional.of(new MedicalSupply("Gloves", 9, "box")))).get()
+                .extracting(MedicalSupply::amount).isEqualTo(9);
+        assertThat(model.readPage(null, 10, () -> new SupplyPage(List.of(), null)).items()).isEmpty();
+        assertThat(fallbacks()).isEqualTo(2);
+    }
+
+    @Test
+    void afterLoad_readsAreServedFromTheSnapshot() {
+        model.load(all(store));
+        store.addToAmount("Gloves", 5); // not reported to the model: it must not be seen
+
+        assertThat(model.read("Gloves", SupplyReadModelTest::noQuery)).contains(new MedicalSupply("Gloves", 1, "box"));
+        assertThat(model.read("Nope", SupplyReadModelTest::noQuery)).isEmpty();
+        assertThat(model.readPage(null, 10, SupplyReadModelTest::noQuery).items()).extracting(MedicalSupply::name)
+                .containsExactly("Gauze", "Gloves", "Mask");
+        var page = model.readPage(null, 2, SupplyReadModelTest::noQuery);
+        assertThat(page.items()).extracting(MedicalSupply::name).containsExactly("Gauze", "Gloves");
+        assertThat(page.nextCursor()).isEqualTo("Gloves");
+        assertThat(model.readPage("Gloves", 2, SupplyReadModelTest::noQuery))
+                .isEqualTo(new SupplyPage(List.of(new MedicalSupply("Mask", 2, "pack")), null));
+        assertThat(fallbacks()).isZero();
+    }
+
+    @Test
+    void committedWrites_areVisibleAtOnce_andThenAppliedFromTheStore() {
+        model.load(all(store));
+        var bandage = new MedicalSupply("Bandage", 4, "roll");
+        store.create(bandage);
+        model.written(bandage);
+        store.delete("Gloves", SupplyStore.ANY_VERSION);
+        model.removed("Gloves");
+        var mask = store.update(new MedicalSupply("Mask", 8, "pack"), SupplyStore.ANY_VERSION).orElseThrow();
+        model.written(mask);
+
+        assertThat(model.read("Gloves", SupplyReadModelTest::noQuery)).isEmpty();
+        assertThat(model.readPage(null, 10, SupplyReadModelTest::noQuery).items()).containsExactly(
+                bandage, new MedicalSupply("Gauze", 3, "roll"), mask);
+        assertThat(model.readPage("Bandage", 1, SupplyReadModelTest::noQuery).items())
+                .containsExactly(new MedicalSupply("Gauze", 3, "roll"));
+        assertThat(registry.get("qare.read.model.pending").gauge().value()).isEqualTo(3);
+
+        applier.runAll();
+
+        assertThat(registry.get("qare.read.model.pending").gauge().value()).isZero();
+        assertThat(registry.get("qare.read.model.lag").timer().count()).isEqualTo(1);
+        assertThat(model.readPage(null, 10, SupplyReadModelTest::noQuery).items()).isEqualTo(all(store));
+    }
+
+    @Test
+    void aWriteDuringTheRefresh_staysMarked() {
+        model.load(all(store));
+        store.addToAmount("Gloves", 1).ifPresent(model::written);
+        duringRefresh = () -> {
+            duringRefresh = () -> {};
+            store.addToAmount("Gloves", 1).ifPresent(model::written);
+        };
+
+        applier.runAll();
+
+        assertThat(model.read("Gloves", SupplyReadModelTest::noQuery)).get()
+                .extracting(MedicalSupply::amount).isEqualTo(3);
+        assertThat(registry.get("qare.read.model.pending").gauge().value()).isZero(); // the second pass caught up
+    }
+
+    @Test
+    void aStaleModel_fallsBack_andRetriesTheRefresh() {
+        model = new SupplyReadModel(store, writes, applier, Duration.ZERO, registry);
+        model.load(all(store));
+        duringRefresh = () -> { throw new IllegalStateException("database down"); };
+        store.addToAmount("Gloves", 4).ifPresent(model::written);
+        applier.runAll();
+
+        assertThat(model.readPage(null, 10, () -> new SupplyPage(List.of(), null)).items()).isEmpty();
+        assertThat(fallbacks()).isEqualTo(1);
+        assertThat(applier.queued).hasSize(1);
+
+        duringRefresh = () -> {};
+        applier.runAll();
+        assertThat(model.read("Gloves", SupplyReadModelTest::noQuery)).get()
+                .extracting(MedicalSupply::amount).isEqualTo(5);
+    }
+
+    @Test
+    void disabled_alwaysFallsBack_withoutCountingIt() {
+        model = new SupplyReadModel(store, writes, null, Duration.ofHours(1), registry);
+        model.load(all(store));
+        model.written(new MedicalSupply("Gloves", 5, "box", 1));
+
+        assertThat(model.read("Gloves", Optional::empty)).isEmpty();
+        assertThat(fallbacks()).isZero();
+    }
+
+    /** Every row in name order, through the store's streaming read. */
+    private static List<MedicalSupply> all(SupplyStore store) {
+        List<MedicalSupply> rows = new ArrayList<>();
+        store.forEach(rows::add);
+        return rows;
+    }
+}
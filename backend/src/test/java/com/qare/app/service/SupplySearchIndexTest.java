@@ -0,0 +1,83 @@
+package com.qare.app.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SupplySearchIndexTest {
+
+    SupplySearchIndex index;
+
+    @BeforeEach
+    void setup() {
+        index = new SupplySearchIndex();
+        index.add("Gloves");
+        index.add("Glucose strips");
+        index.add("Gauze");
+        index.add("Syringe");
+    }
+
+    @Test
+    void prefix_isCaseInsensitive_andSortedByName() {
+        assertThat(index.search("gl", 10)).startsWith("Gloves", "Glucose strips");
+    }
+
+    @Test
+    void typo_isMatchedByTrigrams() {
+        assertThat(index.search("syrnge", 5)).contains("Syringe");
+        assertThat(index.search("gluves", 5).get(0)).isEqualTo("Gloves");
+    }
+
+    @Test
+    void unrelatedQuery_returnsNothing() {
+        assertThat(index.search("thermometer", 5)).isEmpty();
+    }
+
+    @Test
+    void addAll_matchesOneByOneAdds_andMergesWithExistingNames() {
+        var bulk = new SupplySearchIndex();
+        bulk.addAll(List.of("Gloves", "Glucose strips"));
+        bulk.addAll(List.of("Gauze", "Syringe", "Gloves"));
+
+        assertThat(bulk.size()).isEqualTo(index.size());
+        for (String q : List.of("gl", "syrnge", "gluves", "g", "gauz")) {
+            assertThat(bulk.search(q, 10)).as(q).isEqualTo(index.search(q, 10));
+        }
+        bulk.remove("Gloves");
+        assertThat(bulk.search("glov", 5)).isEmpty();
+    }
+
+    @Test
+    void limit_capsResults() {
+        assertThat(index.search("g", 2)).hasSize(2);
+    }
+
+    @Test
+    void remove_dropsNameFromPrefixAndFuzzyResults() {
+        index.remove("Gloves");
+
+        assertThat(index.search("glo", 5)).doesNotContain("Gloves");
+        assertThat(index.search("gluves", 5)).doesNotContain("Gloves");
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void add_isIdempotent() {
+        index.add("Gloves");
+        assertThat(index.size()).isEqualTo(4);
+    }
+
+    @Test
+    void typo_findsBestMatch_whenCommonTrigramsExceedTheCandidateCap() {
+        List<String> crowd = new ArrayList<>();
+        for (int i = 0; i < 2 * SupplySearchIndex.MAX_CANDIDATES; i++) crowd.add("Saline " + i);
+        index.addAll(crowd);
+
+        assertThat(index.search("syrnge", 1)).containsExactly("Syringe");
+        assertThat(index.search("saline 1234x", 1)).containsExactly("Saline 1234");
+    }
+}
@@ -0,0 +1,99 @@
+package com.qare.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qare.app.config.InMemorySupplyStore;
+import com.qare.app.model.InventoryStats;
+import com.qare.app.model.MedicalSupply;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class SupplyStatisticsTest {
+
+    static final Instant NOW = Instant.parse("2026-03-02T10:00:00Z");
+
+    Runnable duringRead = () -> {};
+    final InMemorySupplyStore store = new InMemorySupplyStore() {
+        @Override public void forEach(Consumer<MedicalSupply> sink) {
+            duringRead.run();
+            super.forEach(sink);
+        }
+    };
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final SupplyStatistics stats = new SupplyStatistics(store,
+            new WriteBehindBuffer(store, TransactionOperations.withoutTransaction(), new ObjectMapper(), null, 100),
+            TransactionOperations.withoutTransaction(), registry, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void counts_bucketByStatusColour_andUnit() {
+        stats.written(new MedicalSupply("Gauze", 4, "roll"));
+        stats.written(new MedicalSupply("Gloves", 5, "box"));
+        stats.written(new MedicalSupply("Mask", 10, "box"));
+        stats.written(new MedicalSupply("Syringe", 11, "box"));
+
+        var s = stats.snapshot();
+        assertThat(s.supplies()).isEqualTo(4);
+        assertThat(s.units()).containsExactly(
+                entry("box", new InventoryStats.Unit(3, 26)), entry("roll", new InventoryStats.Unit(1, 4)));
+        assertThat(s.status()).isEqualTo(new InventoryStats.Status(1, 2, 1));
+        assertThat(s.reconciledAt()).isNull();
+    }
+
+    @Test
+    void aWrite_replacesThatSupplysContribution_andAnOlderOneIsIgnored() {
+        stats.written(new MedicalSupply("Gloves", 20, "box"));
+        stats.written(new MedicalSupply("Gloves", 3, "pair", 2));
+        stats.written(new MedicalSupply("Gloves", 8, "box", 1)); // arrived late
+
+        var s = stats.snapshot();
+        assertThat(s.supplies()).isEqualTo(1);
+        assertThat(s.units()).containsExactly(entry("pair", new InventoryStats.Unit(1, 3)));
+        assertThat(s.status()).isEqualTo(new InventoryStats.Status(1, 0, 0));
+
+        stats.removed("Gloves");
+        stats.written(new MedicalSupply("Gloves", 6, "box")); // re-created at version 0
+        assertThat(stats.snapshot().units()).containsExactly(entry("box", new InventoryStats.Unit(1, 6)));
+    }
+
+    @Test
+    void reconcile_correctsDrift_andCountsCorrections() {
+        store.create(new MedicalSupply("Gloves", 20, "box"));
+        store.create(new MedicalSupply("Mask", 7, "box"));
+        stats.written(new MedicalSupply("Mask", 7, "box"));
+        stats.written(new MedicalSupply("Gone", 1, "roll")); // never committed
+
+        assertThat(stats.reconcile()).isEqualTo(2);
+
+        var s = stats.snapshot();
+        assertThat(s.supplies()).isEqualTo(2);
+        assertThat(s.units()).containsExactly(entry("box", new InventoryStats.Unit(2, 27)));
+        assertThat(s.status()).isEqualTo(new InventoryStats.Status(0, 1, 1));
+        assertThat(s.reconciledAt()).isEqualTo(NOW);
+        assertThat(registry.get("qare.stats.corrections").counter().count()).isEqualTo(2);
+        assertThat(stats.reconcile()).isZero();
+    }
+
+    @Test
+    void reconcile_keepsWritesThatLandWhileItReads() {
+        store.create(new MedicalSupply("Mask", 7, "box"));
+        stats.written(new MedicalSupply("Mask", 7, "box"));
+        duringRead = () -> {
+            stats.removed("Mask");                            // committed after the read's snapshot
+            stats.written(new MedicalSupply("Gloves", 2, "box")); // likewise, not in the table yet
+        };
+
+        assertThat(stats.reconcile()).isZero();
+
+        var s = stats.snapshot();
+        assertThat(s.supplies()).isEqualTo(1);
+        assertThat(s.units()).containsExactly(entry("box", new InventoryStats.Unit(1, 2)));
+    }
+}
@@ -0,0 +1,272 @@
+package com.qare.app.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qare.app.config.InMemorySupplyStore;
+import com.qare.app.config.SupplyStore;
+import com.qare.app.model.MedicalSupply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class WriteBehindBufferTest {
+
+    @TempDir Path wal;
+    final ObjectMapper json = new ObjectMapper();
+    final InMemorySupplyStore store = new InMemorySupplyStore();
+
+    @BeforeEach
+    void seed() {
+        store.create(new MedicalSupply("Gloves", 1, "box"));
+        store.create(new MedicalSupply("Mask", 1, "box"));
+    }
+
+    private WriteBehindBuffer buffer(SupplyStore target, int maxBatch) {
+        return new WriteBehindBuffer(target, TransactionOperations.withoutTransaction(), json, wal, maxBatch);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(wal)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    void put_coalescesPerName_andFlushWritesLatestOnce() {
+        SupplyStore spy = spy(store);
+        var writes = buffer(spy, 100);
+
+        writes.putIfVersion(new MedicalSupply("Gloves", 5, "box"), SupplyStore.ANY_VERSION);
+        writes.putIfVersion(new MedicalSupply("Gloves", 6, "box"), SupplyStore.ANY_VERSION);
+        writes.putIfVersion(new MedicalSupply("Mask", 9, "box"), SupplyStore.ANY_VERSION);
+
+        assertThat(writes.peek("Gloves")).contains(new MedicalSupply("Gloves", 6, "box", 2));
+        assertThat(store.read("Gloves")).contains(new MedicalSupply("Gloves", 1, "box"));
+
+        writes.flush();
+
+        verify(spy, times(1)).updateAll(List.of(
+                new MedicalSupply("Gloves", 6, "box", 2),
+                new MedicalSupply("Mask", 9, "box", 1)));
+        assertThat(store.read("Gloves")).contains(new MedicalSupply("Gloves", 6, "box", 2));
+        assertThat(writes.peek("Gloves")).isEmpty();
+    }
+
+    @Test
+    void put_fillingBatch_flushesImmediately() {
+        var writes = buffer(store, 2);
+
+        writes.putIfVersion(new MedicalSupply("Gloves", 5, "box"), SupplyStore.ANY_VERSION);
+        writes.putIfVersion(new MedicalSupply("Mask", 7, "box"), SupplyStore.ANY_VERSION);
+
+        assertThat(writes.pendingCount()).isZero();
+        assertThat(store.read("Mask")).contains(new MedicalSupply("Mask", 7, "box", 1));
+    }
+
+    @Test
+    void putIfVersion_checksAgainstLatestWrite_andLogsNothingOnMismatch() throws IOException {
+        var writes = buffer(store, 100);
+
+        assertThat(writes.putIfVersion(new MedicalSupply("Gloves", 5, "box"), 0))
+                .contains(new MedicalSupply("Gloves", 5, "box", 1));
+        long logged = Files.size(segments().getFirst());
+
+        assertThat(writes.putIfVersion(new MedicalSupply("Gloves", 6, "box"), 0)).isEmpty();
+        assertThat(writes.putIfVersion(new MedicalSupply("Nope", 6, "box"), SupplyStore.ANY_VERSION)).isEmpty();
+        assertThat(Files.size(segments().getFirst())).isEqualTo(logged);
+        assertThat(writes.putIfVersion(new MedicalSupply("Gloves", 6, "box"), 1))
+                .contains(new MedicalSupply("Gloves", 6, "box", 2));
+    }
+
+    @Test
+    void put_rejectsInvalidRow_beforeLogging() throws IOException {
+        var writes = buffer(store, 100);
+
+        assertThatThrownBy(() -> writes.putIfVersion(new MedicalSupply("Gloves", -1, "box"), SupplyStore.ANY_VERSION))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(writes.pendingCount()).isZero();
+        assertThat(Files.size(segments().getFirst())).isZero();
+    }
+
+    @Test
+    void flush_deletesCommittedSegments() throws IOException {
+        var writes = buffer(store, 100);
+        writes.putIfVersion(new MedicalSupply("Gloves", 5, "box"), SupplyStore.ANY_VERSION);
+
+        writes.flush();
+
+        assertThat(segments()).hasSize(1); // only the fresh, empty active segment
+        assertThat(Files.size(segments().getFirst())).isZero();
+    }
+
+    @Test
+    void failedFlush_keepsWritesVisible_andRetriesWithNewerWritesWinning() {
+        SupplyStore failing = spy(store);
+        doThrow(new DataAccessResourceFailureException("db down")).doCallRealMethod().when(failing).updateAll(anyList());
+        var writes = buffer(failing, 100);
+        writes.putIfVersion(new MedicalSupply("Gloves", 5, "box"), SupplyStore.ANY_VERSION);
+        writes.putIfVersion(new MedicalSupply("Mask", 5, "box"), SupplyStore.ANY_VERSION);
+
+        assertThatThrownBy(writes::flush).isInstanceOf(DataAccessResourceFailureException.class);
+        writes.putIfVersion(new MedicalSupply("Mask", 6, "box"), SupplyStore.ANY_VERSION);
+
+        assertThat(writes.peek("Gloves")).contains(new MedicalSupply("Gloves", 5, "box", 1));
+        writes.flush();
+        assertThat(all(store)).containsExactly(
+                new MedicalSupply("Gloves", 5, "box", 1),
+                new MedicalSupply("Mask", 6, "box", 2));
+    }
+
+    @Test
+    void unflushedWrites_areReplayedOnRestart() throws IOException {
+        var crashed = buffer(store, 100);
+        crashed.putIfVersion(new MedicalSupply("Gloves", 5, "box"), SupplyStore.ANY_VERSION);
+        crashed.putIfVersion(new MedicalSupply("Gloves", 7, "pair"), SupplyStore.ANY_VERSION);
+        // torn tail from a crash mid-append
+        Files.writeString(segments().getLast(), "{\"name\":\"Mask\",\"amo", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        var restarted = buffer(store, 100);
+
+        assertThat(all(store)).containsExactly(
+                new MedicalSupply("Gloves", 7, "pair", 2),
+                new MedicalSupply("Mask", 1, "box"));
+        assertThat(restarted.pendingCount()).isZero();
+        assertThat(segments()).hasSize(1);
+    }
+
+    @Test
+    void leftoverLog_isReplayedEvenWhenWriteBehindIsTurnedOff() throws IOException {
+        buffer(store, 100).putIfVersion(new MedicalSupply("Mask", 3, "box"), SupplyStore.ANY_VERSION);
+
+        var off = new WriteBehindBuffer(store, mock(PlatformTransactionManager.class), json,
+                false, wal, 100, Duration.ofSeconds(1));
+
+        assertThat(off.enabled()).isFalse();
+        assertThat(store.read("Mask")).contains(new MedicalSupply("Mask", 3, "box", 1));
+        assertThat(segments()).isEmpty();
+    }
+
+    @Test
+    void segmentLeftBehindAfterItsCommit_neverTakesARowBack() throws IOException {
+        var writes = buffer(store, 100);
+        writes.putIfVersion(new MedicalSupply("Gloves", 5, "box"), SupplyStore.ANY_VERSION);
+        Path segment = segments().getFirst();
+        byte[] logged = Files.readAllBytes(segment);
+        writes.flush();
+        store.addToAmount("Gloves", 2);
+        Files.write(segment, logged); // as if its delete had failed, or a crash came first
+
+        buffer(store, 100);
+
+        assertThat(store.read("Gloves")).contains(new MedicalSupply("Gloves", 7, "box", 2));
+    }
+
+    @Test
+    void exclusive_flushesOnlyWhenNameIsBuffered_thenRunsWrite() {
+        SupplyStore spy = spy(store);
+        var writes = buffer(spy, 100);
+        writes.putIfVersion(new MedicalSupply("Gloves", 5, "box"), SupplyStore.ANY_VERSION);
+
+        writes.exclusive(List.of("Mask"), () -> spy.addToAmount("Mask", 1));
+        verify(spy, never()).updateAll(anyList());
+
+        assertThat(writes.exclusive(List.of("Gloves"), () -> spy.addToAmount("Gloves", 1)))
+                .contains(new MedicalSupply("Gloves", 6, "box", 2));
+        var order = inOrder(spy);
+        order.verify(spy).updateAll(List.of(new MedicalSupply("Gloves", 5, "box", 1)));
+        order.verify(spy).addToAmount("Gloves", 1);
+    }
+
+    @Test
+    void exclusive_holdsNoLockWhileItWrites_andWritesToItsNamesWaitForIt() throws Exception {
+        var writes = buffer(store, 100);
+        var writing = new CountDownLatch(1);
+        var finish = new CountDownLatch(1);
+        try (ExecutorService pool = Executors.newFixedThreadPool(2)) {
+            var exclusive = pool.submit(() -> writes.exclusive(List.of("Gloves"), () -> {
+                writing.countDown();
+                await(finish);
+                return store.addToAmount("Gloves", 1);
+            }));
+            writing.await();
+
+            assertThat(writes.peek("Gloves")).isEmpty();
+            assertThat(writes.putIfVersion(new MedicalSupply("Mask", 4, "box"), SupplyStore.ANY_VERSION))
+                    .contains(new MedicalSupply("Mask", 4, "box", 1));
+            var waiting = pool.submit(() -> writes.putIfVersion(new MedicalSupply("Gloves", 9, "box"), 1));
+            Thread.sleep(50);
+            assertThat(waiting).isNotDone();
+
+            finish.countDown();
+            assertThat(exclusive.get()).contains(new MedicalSupply("Gloves", 2, "box", 1));
+            assertThat(waiting.get()).contains(new MedicalSupply("Gloves", 9, "box", 2)); // checked against the exclusive write
+        }
+    }
+
+    @Test
+    void concurrentPuts_eachGetTheirOwnVersion_andAreAllLogged() throws Exception {
+        var writes = buffer(store, 1000);
+        List<Future<Optional<MedicalSupply>>> puts = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 200; i++) {
+                int amount = i;
+                puts.add(pool.submit(() -> writes.putIfVersion(new MedicalSupply("Gloves", amount, "box"), SupplyStore.ANY_VERSION)));
+            }
+        }
+        Set<Long> versions = new HashSet<>();
+        for (var put : puts) versions.add(put.get().orElseThrow().version());
+        assertThat(versions).hasSize(200).allMatch(v -> v >= 1 && v <= 200);
+
+        buffer(store, 1000); // a restart replays the log
+        assertThat(store.read("Gloves")).get().extracting(MedicalSupply::version).isEqualTo(200L);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void disabled_buffersNothing() {
+        var writes = new WriteBehindBuffer(store, TransactionOperations.withoutTransaction(), json, null, 100);
+
+        assertThat(writes.enabled()).isFalse();
+        writes.drain();
+        assertThat(writes.exclusive(List.of("Gloves"), () -> "ran")).isEqualTo("ran");
+        assertThat(writes.peek("Gloves")).isEmpty();
+    }
+
+    /** Every row in name order, through the store's streaming read. */
+    private static List<MedicalSupply> all(SupplyStore store) {
+        List<MedicalSupply> rows = new ArrayList<>();
+        store.forEach(rows::add);
+        return rows;
+    }
+}
@@ -1,11 +1,20 @@
-import type { Supply } from '../model/supply_model'
+import type { Supply, SupplyEvent, SupplyPage } from '../model/supply_model'
 
-export async function getAll(): Promise<Supply[]> {
-  const r = await fetch('/api/supplies')
+export async function getPage(after?: string | null, limit = 100): Promise<SupplyPage> {
+  const params = new URLSearchParams({ limit: String(limit) })
+  if (after) params.set('after', after)
+  const r = await fetch(`/api/supplies?${params}`)
   if (!r.ok) throw new Error('Failed to load supplies')
   return r.json()
 }
 
+export async function searchNames(q: string, limit = 10): Promise<string[]> {
+  const params = new URLSearchParams({ q, limit: String(limit) })
+  const r = await fetch(`/api/supplies/search?${params}`)
+  if (!r.ok) throw new Error('Search failed')
+  return r.json()
+}
+
 export async function getOne(name: string): Promise<Supply | null> {
   const r = await fetch(`/api/supplies/${encodeURIComponent(name)}`)
   if (r.status === 404) return null
@@ -29,12 +38,19 @@ export async function createOne(s: Supply): Promise<Supply> {
   return r.json()
 }
 
-export async function updateOne(s: Supply): Promise<Supply> {
+/** If-Match for the version last read. Without one the write is refused here, never sent as '*'. */
+function ifMatch(name: string, version?: number): string {
+  if (version === undefined) throw new Error(`${name} has no known version; reload and try again`)
+  return `"${version}"`
+}
+
+export async function updateOne(s: Supply, version = s.version): Promise<Supply> {
   const r = await fetch(`/api/supplies/${encodeURIComponent(s.name)}`, {
     method: 'PUT',
-    headers: { 'Content-Type': 'application/json' },
+    headers: { 'Content-Type': 'application/json', 'If-Match': ifMatch(s.name, version) },
     body: JSON.stringify(s),
   })
+  if (r.status === 412) throw new Error(`${s.name} was changed by someone else; reload and try again`)
   if (!r.ok) {
     const txt = await r.text()
     throw new Error(`Update failed: ${r.status} ${txt}`)
@@ -42,10 +58,25 @@ export async function updateOne(s: Supply): Promise<Supply> {
   return r.json()
 }
 
-export async function removeOne(name: string): Promise<void> {
-  const r = await fetch(`/api/supplies/${encodeURIComponent(name)}`, { method: 'DELETE' })
+export async function removeOne(name: string, version?: number): Promise<void> {
+  const r = await fetch(`/api/supplies/${encodeURIComponent(name)}`, {
+    method: 'DELETE',
+    headers: { 'If-Match': ifMatch(name, version) },
+  })
+  if (r.status === 412) throw new Error(`${name} was changed by someone else; reload and try again`)
   if (!r.ok && r.status !== 204 && r.status !== 404) {
     const txt = await r.text()
     throw new Error(`Delete failed: ${r.status} ${txt}`)
   }
 }
+
+/** Subscribes to committed changes; returns a function that closes the stream. */
+export function subscribe(onEvent: (e: SupplyEvent) => void, onResync: () => void): () => void {
+  const source = new EventSource('/api/supplies/stream')
+  const handle = (m: MessageEvent) => onEvent(JSON.parse(m.data))
+  source.addEventListener('created', handle)
+  source.addEventListener('updated', handle)
+  source.addEventListener('deleted', handle)
+  source.addEventListener('resync', onResync)
+  return () => source.close()
+}
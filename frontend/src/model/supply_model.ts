@@ -2,4 +2,17 @@ export type Supply = {
   name: string
   amount: number
   unitName: string
+  /** Row version; the server's ETag for this supply. Absent on forms that create one. */
+  version?: number
+}
+
+export type SupplyPage = {
+  items: Supply[]
+  nextCursor: string | null
+}
+
+export type SupplyEvent = {
+  type: 'CREATED' | 'UPDATED' | 'DELETED'
+  name: string
+  supply: Supply | null
 }
@@ -1,6 +1,6 @@
 import { useEffect, useState } from 'react'
 import type { Supply } from '../../model/supply_model'
-import { getAll, createOne, updateOne, removeOne } from '../../controller/supplies_client'
+import { getPage, getOne, createOne, updateOne, removeOne } from '../../controller/supplies_client'
 import SupplyForm from '../components/supplyForm_view'
 import SuppliesTable from '../components/supplyTable_view'
 
@@ -9,11 +9,14 @@ export default function Admin() {
   const [selected, setSelected] = useState<Supply | null>(null)
   const [loading, setLoading] = useState(true)
   const [error, setError] = useState<string | null>(null)
+  const [cursor, setCursor] = useState<string | null>(null)
 
   const load = async () => {
     setLoading(true); setError(null)
     try {
-      setItems(await getAll())
+      const page = await getPage()
+      setItems(page.items)
+      setCursor(page.nextCursor)
     } catch (e: any) {
       setError(e.message ?? 'Failed to load')
     } finally {
@@ -21,20 +24,36 @@ export default function Admin() {
     }
   }
 
+  const loadMore = async () => {
+    if (!cursor) return
+    try {
+      const page = await getPage(cursor)
+      setItems(prev => [...prev, ...page.items])
+      setCursor(page.nextCursor)
+    } catch (e: any) {
+      setError(e.message ?? 'Failed to load')
+    }
+  }
+
   useEffect(() => { load() }, [])
 
+  // the row on screen, or, for a name on a page not loaded yet, the row as stored now
+  const current = async (name: string) => items.find(i => i.name === name) ?? await getOne(name)
+
   const upsert = async (s: Supply) => {
-    const exists = items.some(i => i.name === s.name)
-    if (exists) await updateOne(s)
-    else await createOne(s)
+    const existing = await current(s.name)
+    const saved = existing ? await updateOne(s, existing.version) : await createOne(s)
+    setItems(prev => prev.some(i => i.name === saved.name)
+      ? prev.map(i => (i.name === saved.name ? saved : i))
+      : [...prev, saved])
     setSelected(null)
-    await load()
   }
 
   const remove = async (name: string) => {
-    await removeOne(name)
+    const existing = await current(name)
+    if (existing) await removeOne(name, existing.version)
+    setItems(prev => prev.filter(i => i.name !== name))
     if (selected?.name === name) setSelected(null)
-    await load()
   }
 
   if (loading) return <p>Loading…</p>
@@ -52,6 +71,7 @@ export default function Admin() {
         onEdit={setSelected}
         onDelete={remove}
       />
+      {cursor && <button onClick={loadMore}>Load more</button>}
     </section>
   )
 }
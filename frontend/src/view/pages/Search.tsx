@@ -1,6 +1,6 @@
-import { useState } from 'react'
+import { useEffect, useState } from 'react'
 import type { Supply } from '../../model/supply_model' // adjust import if needed
-import { getOne } from '../../controller/supplies_client'
+import { getOne, searchNames } from '../../controller/supplies_client'
 import SuppliesTable from '../components/supplyTable_view'
 
 export default function Search() {
@@ -9,6 +9,17 @@ export default function Search() {
   const [loading, setLoading] = useState(false)
   const [error, setError] = useState<string | null>(null)
   const [searched, setSearched] = useState(false)
+  const [suggestions, setSuggestions] = useState<string[]>([])
+
+  useEffect(() => {
+    const q = query.trim()
+    if (!q) { setSuggestions([]); return }
+    let cancelled = false
+    searchNames(q)
+      .then(names => { if (!cancelled) setSuggestions(names) })
+      .catch(() => { if (!cancelled) setSuggestions([]) })
+    return () => { cancelled = true }
+  }, [query])
 
   const onSearch = async (e: React.FormEvent) => {
     e.preventDefault()
@@ -38,7 +49,11 @@ export default function Search() {
           onChange={e => setQuery(e.target.value)}
           style={{ flex: 1, padding: 8 }}
           aria-label="Search by name"
+          list="supply-suggestions"
         />
+        <datalist id="supply-suggestions">
+          {suggestions.map(n => <option key={n} value={n} />)}
+        </datalist>
         <button type="submit">Search</button>
       </form>
 
@@ -1,17 +1,20 @@
 import { useEffect, useState } from 'react'
 import type { Supply } from '../../model/supply_model'
-import { getAll } from '../../controller/supplies_client'
+import { getPage, subscribe } from '../../controller/supplies_client'
 import SuppliesTable from '../components/supplyTable_view'
 
 export default function Store() {
   const [items, setItems] = useState<Supply[]>([])
   const [loading, setLoading] = useState(true)
   const [error, setError] = useState<string | null>(null)
+  const [cursor, setCursor] = useState<string | null>(null)
 
   const load = async () => {
     setLoading(true); setError(null)
     try {
-      setItems(await getAll())
+      const page = await getPage()
+      setItems(page.items)
+      setCursor(page.nextCursor)
     } catch (e: any) {
       setError(e.message ?? 'Failed to load')
     } finally {
@@ -19,14 +22,33 @@ export default function Store() {
     }
   }
 
+  const loadMore = async () => {
+    if (!cursor) return
+    try {
+      const page = await getPage(cursor)
+      setItems(prev => [...prev, ...page.items])
+      setCursor(page.nextCursor)
+    } catch (e: any) {
+      setError(e.message ?? 'Failed to load')
+    }
+  }
+
   useEffect(() => { load() }, [])
 
+  // apply live changes to the rows already on screen; new names show up on reload
+  useEffect(() => subscribe(e => {
+    setItems(prev => e.type === 'DELETED'
+      ? prev.filter(i => i.name !== e.name)
+      : prev.map(i => (i.name === e.name && e.supply ? e.supply : i)))
+  }, load), [])
+
   if (loading) return <p>Loading…</p>
   if (error) return <p style={{ color: 'crimson' }}>{error}</p>
   return (
     <section>
       <h1>Store</h1>
       <SuppliesTable items={items} readonly />
+      {cursor && <button onClick={loadMore}>Load more</button>}
     </section>
   )
 }